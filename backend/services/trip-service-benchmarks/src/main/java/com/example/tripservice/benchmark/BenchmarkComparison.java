@@ -0,0 +1,81 @@
+package com.example.tripservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次 JMH 运行结果（-rf json 输出）
+ *
+ * 按"基准名 + 参数"逐项输出基线、当前值与变化百分比；
+ * 任一基准变慢超过阈值（默认 10%，-Dbench.threshold=0.1）且超出误差范围时以非零状态退出，可用于 CI。
+ *
+ * 用法：java -cp benchmarks.jar com.example.tripservice.benchmark.BenchmarkComparison baseline.json current.json
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("用法: BenchmarkComparison <baseline.json> <current.json>");
+            System.exit(2);
+        }
+        double threshold = Double.parseDouble(System.getProperty("bench.threshold", "0.1"));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(new File(args[0])));
+        Map<String, JsonNode> current = index(objectMapper.readTree(new File(args[1])));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode after = entry.getValue().path("primaryMetric");
+            JsonNode before = baseline.containsKey(entry.getKey())
+                    ? baseline.get(entry.getKey()).path("primaryMetric")
+                    : null;
+            String unit = after.path("scoreUnit").asText();
+            double score = after.path("score").asDouble();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-", score, "new", unit);
+                continue;
+            }
+
+            double base = before.path("score").asDouble();
+            double change = (score - base) / base;
+            // 吞吐量模式分数越大越好，其余模式（平均时间、采样）越小越好
+            boolean higherIsBetter = unit.endsWith("/s") || unit.endsWith("/ms") || unit.endsWith("/us")
+                    || unit.endsWith("/ns") || unit.endsWith("/min");
+            double worse = higherIsBetter ? -change : change;
+            double noise = before.path("scoreError").asDouble(0) + after.path("scoreError").asDouble(0);
+            boolean regressed = worse > threshold && Math.abs(score - base) > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), base, score,
+                    change * 100, unit, regressed ? "  <-- 退化" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf("%d 个基准退化超过 %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> indexed = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.example.tripservice.", ""));
+            result.path("params").fields()
+                    .forEachRemaining(param -> key.append(' ').append(param.getKey()).append('=')
+                            .append(param.getValue().asText()));
+            indexed.put(key.toString(), result);
+        }
+        return indexed;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.Trip;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 基准测试数据
+ * 固定随机种子，保证不同提交之间的测试数据完全一致，结果可以直接对比
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] TYPES = { "hotel", "attraction", "restaurant", "attraction", "transport",
+            "attraction", "restaurant", "other" };
+
+    private static final String[] PLACES = { "西湖风景区", "灵隐寺", "河坊街", "西溪国家湿地公园", "雷峰塔",
+            "中国茶叶博物馆", "南宋御街", "楼外楼", "知味观", "龙井村", "九溪烟树", "良渚古城遗址公园" };
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Trip trip(int days) {
+        Trip trip = new Trip();
+        trip.setId(4242L);
+        trip.setUserId(42L);
+        trip.setTitle("杭州" + days + "日深度游");
+        trip.setDestination("杭州");
+        trip.setStartDate(LocalDate.of(2026, 5, 1));
+        trip.setEndDate(LocalDate.of(2026, 5, days));
+        trip.setParticipants(2);
+        trip.setBudget(BigDecimal.valueOf(8000));
+        trip.setStatus("generated");
+        trip.setCreatedAt(LocalDateTime.of(2026, 4, 1, 10, 0));
+        return trip;
+    }
+
+    /**
+     * 按 dayIndex、startTime 排序的行程项，坐标为数据库中的 JSON 字符串格式
+     */
+    public static List<ItineraryItem> items(int days, int itemsPerDay) {
+        Random random = new Random(42);
+        List<ItineraryItem> items = new ArrayList<>();
+        long id = 1;
+        for (int day = 1; day <= days; day++) {
+            for (int i = 0; i < itemsPerDay; i++) {
+                ItineraryItem item = new ItineraryItem();
+                item.setId(id++);
+                item.setTripId(4242L);
+                item.setDayIndex(day);
+                item.setStartTime(LocalTime.of(8 + i, 0));
+                item.setEndTime(LocalTime.of(8 + i, 50));
+                item.setType(TYPES[i % TYPES.length]);
+                String place = PLACES[random.nextInt(PLACES.length)];
+                item.setTitle(place);
+                item.setLocation("浙江省杭州市西湖区" + place);
+                item.setDescription("游览" + place + "，感受江南水乡的历史文化与自然风光，建议预留充足时间拍照。");
+                item.setNotes("节假日人多，建议提前预约");
+                item.setEstimatedCost(BigDecimal.valueOf(50 + random.nextInt(300)));
+                item.setCoordinates(String.format(Locale.ROOT, "{\"lng\":%.6f,\"lat\":%.6f}",
+                        120.05 + random.nextDouble() * 0.25, 30.15 + random.nextDouble() * 0.20));
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 模拟大模型返回的行程 JSON（约 6000 token）
+     */
+    public static String llmPlanJson(int days, int itemsPerDay) {
+        StringBuilder json = new StringBuilder(16_384);
+        json.append("{\n  \"title\": \"杭州").append(days).append("日深度游\",\n  \"destination\": \"杭州\",\n  \"days\": [\n");
+        for (ItineraryItem item : items(days, itemsPerDay)) {
+            boolean firstOfDay = item.getStartTime().getHour() == 8;
+            if (firstOfDay) {
+                if (item.getDayIndex() > 1) {
+                    json.append("\n      ]\n    },\n");
+                }
+                json.append("    {\n      \"dayIndex\": ").append(item.getDayIndex()).append(",\n      \"items\": [\n");
+            } else {
+                json.append(",\n");
+            }
+            json.append("        {\n")
+                    .append("          \"startTime\": \"").append(item.getStartTime()).append("\",\n")
+                    .append("          \"endTime\": \"").append(item.getEndTime()).append("\",\n")
+                    .append("          \"title\": \"").append(item.getTitle()).append("\",\n")
+                    .append("          \"type\": \"").append(item.getType()).append("\",\n")
+                    .append("          \"location\": \"").append(item.getLocation()).append("\",\n")
+                    .append("          \"description\": \"").append(item.getDescription()).append("\",\n")
+                    .append("          \"estimatedCost\": ").append(item.getEstimatedCost()).append(".0,\n")
+                    .append("          \"notes\": \"").append(item.getNotes()).append("\"\n")
+                    .append("        }");
+        }
+        json.append("\n      ]\n    }\n  ],\n")
+                .append("  \"budgetBreakdown\": {\n")
+                .append("    \"transport\": 1000.0,\n    \"accommodation\": 2400.0,\n    \"food\": 1500.0,\n")
+                .append("    \"attractions\": 800.0,\n    \"other\": 300.0\n  }\n}");
+        return json.toString();
+    }
+
+    /**
+     * 与 {@link #llmPlanJson} 内容相同的紧凑格式行程，见 CompactPlanParser
+     */
+    public static String llmPlanCompact(int days, int itemsPerDay) {
+        StringBuilder text = new StringBuilder(8_192);
+        text.append("T|杭州").append(days).append("日深度游|杭州\n");
+        for (ItineraryItem item : items(days, itemsPerDay)) {
+            if (item.getStartTime().getHour() == 8) {
+                text.append("D|").append(item.getDayIndex()).append('\n');
+            }
+            text.append("I|").append(item.getStartTime()).append('|').append(item.getEndTime()).append('|')
+                    .append(item.getType().charAt(0)).append('|').append(item.getTitle()).append('|')
+                    .append(item.getLocation()).append('|').append(item.getEstimatedCost()).append('|')
+                    .append(item.getDescription()).append('|').append(item.getNotes()).append('\n');
+        }
+        text.append("B|1000|2400|1500|800|300\nEND");
+        return text.toString();
+    }
+
+    public static CreateTripRequest createTripRequest() {
+        CreateTripRequest request = new CreateTripRequest();
+        request.setDestination("杭州");
+        request.setStartDate(LocalDate.of(2026, 5, 1));
+        request.setEndDate(LocalDate.of(2026, 5, 5));
+        request.setParticipants(2);
+        request.setBudget(BigDecimal.valueOf(8000));
+        request.setPreferences("美食,历史文化,徒步");
+        request.setRawInput("五一假期想和朋友去杭州玩五天，喜欢吃本地菜，想去西湖和灵隐寺，不想太赶，预算八千左右");
+        return request;
+    }
+
+    /**
+     * 为字段注入的 Spring bean 设置依赖
+     */
+    public static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 取生产代码中非公开方法的句柄，基准测试不放进生产包、也不为此放宽生产代码的可见性
+     *
+     * 句柄应保存在 static final 字段中，由 JIT 当作常量内联，调用开销与直接调用相当。
+     */
+    public static MethodHandle method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                    .unreflect(type.getDeclaredMethod(name, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.config.JwtAuthenticationFilter;
+import com.example.tripservice.service.TokenRevocationService;
+import com.example.tripservice.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求的 JWT 认证开销
+ *
+ * legacyTwoParsers：原控制器写法，validateToken + getUserIdFromToken，每次新建解析器、验签两次
+ * reusableParser：复用解析器，验签一次
+ * cachedFilter：JwtAuthenticationFilter 的缓存命中路径（SHA-256 摘要 + 缓存查找 + 吊销检查）
+ * revocationCheck：未吊销令牌的吊销检查（布隆过滤器未命中，不访问数据库）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthBenchmark {
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+    private TokenRevocationService tokenRevocationService;
+    private SecretKey key;
+    private String token;
+    private String jti;
+
+    @Setup
+    public void setup() throws Exception {
+        jwtUtil = new JwtUtil();
+        // 未注入 repository：过滤器为空，吊销检查全部在内存中完成
+        tokenRevocationService = new TokenRevocationService();
+        filter = new JwtAuthenticationFilter(jwtUtil, tokenRevocationService, 10_000);
+        token = jwtUtil.generateToken(42L, "bench@example.com");
+        jti = jwtUtil.parseClaims(token).getId();
+
+        // 旧写法需要与 JwtUtil 相同的签名密钥
+        Field keyField = JwtUtil.class.getDeclaredField("key");
+        keyField.setAccessible(true);
+        key = (SecretKey) keyField.get(jwtUtil);
+    }
+
+    @Benchmark
+    public Long legacyTwoParsers() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        return Long.parseLong(claims.getSubject());
+    }
+
+    @Benchmark
+    public Long reusableParser() {
+        return Long.parseLong(jwtUtil.parseClaims(token).getSubject());
+    }
+
+    @Benchmark
+    public Long cachedFilter() {
+        return filter.resolveUserId(token);
+    }
+
+    @Benchmark
+    public boolean revocationCheck() {
+        return tokenRevocationService.isRevoked(jti);
+    }
+}
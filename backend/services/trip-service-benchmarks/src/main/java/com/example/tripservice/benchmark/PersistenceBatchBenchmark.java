@@ -0,0 +1,123 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.Trip;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 行程持久化批量写入基准
+ * 每次操作在一个事务中保存 1 个行程 + 25 个行程项，统计数据库往返次数。
+ *
+ * 需要一个可丢弃的本地 PostgreSQL（会自动建表），例如：
+ * java -jar benchmarks.jar PersistenceBatch -jvmArgsAppend \
+ *      "-Dbench.jdbc.url=jdbc:postgresql://localhost:5432/bench -Dbench.jdbc.user=postgres -Dbench.jdbc.password=postgres"
+ *
+ * 期望结果：25 个行程项合并为 1 个批次（reWriteBatchedInserts 下为 1 条多值 INSERT），
+ * 即每次操作约 2 次往返（行程批次 + 行程项批次，序列取值每 50 次操作才发生一次）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBatchBenchmark {
+
+    static final LongAdder STATEMENTS = new LongAdder();
+    static final LongAdder BATCHES = new LongAdder();
+    static final LongAdder OPERATIONS = new LongAdder();
+
+    @Param({ "25" })
+    private int items;
+
+    @Param({ "50" })
+    private int batchSize;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Trip.class)
+                .addAnnotatedClass(ItineraryItem.class)
+                .setProperty("hibernate.connection.url",
+                        System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/bench"))
+                .setProperty("hibernate.connection.username", System.getProperty("bench.jdbc.user", "postgres"))
+                .setProperty("hibernate.connection.password", System.getProperty("bench.jdbc.password", "postgres"))
+                .setProperty("hibernate.connection.reWriteBatchedInserts", "true")
+                .setProperty("hibernate.hbm2ddl.auto", "update")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(batchSize))
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty("hibernate.order_updates", "true")
+                .setProperty("hibernate.session.events.auto", CountingListener.class.getName());
+        sessionFactory = configuration.buildSessionFactory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long operations = Math.max(1, OPERATIONS.sum());
+        System.out.printf("%n每次操作平均: 单条语句 %.2f 次, 批次 %.2f 次, 往返合计 %.2f 次%n",
+                (double) STATEMENTS.sum() / operations, (double) BATCHES.sum() / operations,
+                (double) (STATEMENTS.sum() + BATCHES.sum()) / operations);
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Long persistTrip() {
+        Long tripId = sessionFactory.fromTransaction(session -> {
+            Trip trip = new Trip();
+            trip.setUserId(1L);
+            trip.setTitle("基准行程");
+            trip.setDestination("杭州");
+            trip.setStartDate(LocalDate.of(2025, 5, 1));
+            trip.setEndDate(LocalDate.of(2025, 5, 5));
+            trip.setParticipants(2);
+            trip.setBudget(BigDecimal.valueOf(5000));
+            trip.setStatus("generated");
+            session.persist(trip);
+
+            for (int i = 0; i < items; i++) {
+                ItineraryItem item = new ItineraryItem();
+                item.setTripId(trip.getId());
+                item.setDayIndex(i / 5 + 1);
+                item.setStartTime(LocalTime.of(8 + (i % 5) * 2, 0));
+                item.setEndTime(LocalTime.of(9 + (i % 5) * 2, 30));
+                item.setTitle("景点 " + i);
+                item.setType("attraction");
+                item.setLocation("西湖区");
+                item.setDescription("描述");
+                item.setEstimatedCost(BigDecimal.valueOf(100));
+                session.persist(item);
+            }
+            return trip.getId();
+        });
+
+        OPERATIONS.increment();
+        return tripId;
+    }
+
+    /**
+     * 统计单条语句执行与批次执行次数
+     */
+    public static class CountingListener extends BaseSessionEventListener {
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            STATEMENTS.increment();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            BATCHES.increment();
+        }
+    }
+}
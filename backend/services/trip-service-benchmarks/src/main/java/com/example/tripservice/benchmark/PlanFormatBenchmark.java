@@ -0,0 +1,156 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.service.QwenService;
+import com.example.tripservice.service.TripService;
+import com.example.tripservice.util.CompactPlanParser;
+import com.example.tripservice.util.PartialPlanParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行程输出格式对比：JSON 与紧凑行格式（qwen.plan-format）
+ *
+ * 两种格式内容完全相同（7 天 × 8 项）。基准测量从模型输出文本解析到 ItineraryItem 的耗时，
+ * 两种格式都按生产中的实际路径测量：紧凑格式在 QwenService 中先转换为行程 JSON 字符串（缓存、模板与续写只处理 JSON），
+ * 再与 JSON 格式一样由 TripService readTree 后逐项转换，所以紧凑格式的解析耗时不会低于 JSON 格式。
+ * compactParserOnly 只测紧凑格式解析器本身，用于拆分转换开销。
+ * Setup 中打印两种格式的输出 token 估算与按每 token 耗时推算的端到端生成时间。
+ * 生成耗时远大于解析耗时，端到端差异几乎全部来自输出 token 数。
+ *
+ * token 数为近似估算（中文约 1.4 字/token，ASCII 字母约 4 字符/token、数字约 3 位/token，
+ * 标点与连续空白各 1 token），只用于两种格式之间的相对比较。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class PlanFormatBenchmark {
+
+    private static final MethodHandle PARSE_ITINERARY_ITEM = BenchmarkFixtures.method(TripService.class,
+            "parseItineraryItem", JsonNode.class, Long.class, int.class);
+    private static final MethodHandle TO_DAYS = BenchmarkFixtures.method(QwenService.class,
+            "toDays", List.class);
+    private static final MethodHandle TO_BUDGET = BenchmarkFixtures.method(QwenService.class,
+            "toBudget", double[].class);
+    private static final MethodHandle STITCH = BenchmarkFixtures.method(QwenService.class,
+            "stitch", PartialPlanParser.Prefix.class, JsonNode.class);
+
+    @Param({ "7" })
+    private int days;
+
+    @Param({ "8" })
+    private int itemsPerDay;
+
+    // 推算端到端时间用的每个输出 token 耗时
+    @Param({ "10" })
+    private double msPerToken;
+
+    private TripService tripService;
+    private QwenService qwenService;
+    private ObjectMapper objectMapper;
+    private String planJson;
+    private String planCompact;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        tripService = new TripService();
+        qwenService = new QwenService();
+        BenchmarkFixtures.inject(qwenService, "objectMapper", objectMapper);
+        planJson = BenchmarkFixtures.llmPlanJson(days, itemsPerDay);
+        planCompact = BenchmarkFixtures.llmPlanCompact(days, itemsPerDay);
+
+        int jsonTokens = estimateTokens(planJson);
+        int compactTokens = estimateTokens(planCompact);
+        System.out.printf(Locale.ROOT, "%n输出字符数: JSON %d, 紧凑 %d%n", planJson.length(), planCompact.length());
+        System.out.printf(Locale.ROOT, "输出 token 估算: JSON %d, 紧凑 %d（减少 %.0f%%）%n", jsonTokens, compactTokens,
+                100.0 * (jsonTokens - compactTokens) / jsonTokens);
+        System.out.printf(Locale.ROOT, "按 %.0fms/token 推算生成耗时: JSON %.1fs, 紧凑 %.1fs%n", msPerToken,
+                jsonTokens * msPerToken / 1000, compactTokens * msPerToken / 1000);
+    }
+
+    /**
+     * JSON 格式：readTree 后逐项转换，见 TripService.parseItems
+     */
+    @Benchmark
+    public List<ItineraryItem> parseJson() throws Throwable {
+        return toItems(planJson);
+    }
+
+    /**
+     * 紧凑格式：解析后转换为行程 JSON 字符串（见 QwenService.requestTripPlan），再走与 JSON 格式相同的路径
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<ItineraryItem> parseCompact() throws Throwable {
+        CompactPlanParser.Plan plan = CompactPlanParser.parse(planCompact);
+        List<JsonNode> days = (List<JsonNode>) TO_DAYS.invokeExact(qwenService, plan.items());
+        JsonNode budget = (JsonNode) TO_BUDGET.invokeExact(qwenService, plan.budget());
+        String json = (String) STITCH.invokeExact(qwenService,
+                new PartialPlanParser.Prefix(plan.title(), plan.destination(), days), budget);
+        return toItems(json);
+    }
+
+    /**
+     * 只测紧凑格式解析器，不含转换为 JSON 与 TripService 中的再次解析
+     */
+    @Benchmark
+    public List<ItineraryItem> compactParserOnly() {
+        return CompactPlanParser.parse(planCompact).items();
+    }
+
+    private List<ItineraryItem> toItems(String json) throws Throwable {
+        JsonNode plan = objectMapper.readTree(json);
+        List<ItineraryItem> items = new ArrayList<>();
+        for (JsonNode day : plan.path("days")) {
+            int dayIndex = day.path("dayIndex").asInt();
+            for (JsonNode item : day.path("items")) {
+                items.add((ItineraryItem) PARSE_ITINERARY_ITEM.invokeExact(tripService, item, (Long) null, dayIndex));
+            }
+        }
+        return items;
+    }
+
+    static int estimateTokens(String text) {
+        double tokens = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                tokens += 1;
+            } else if (c < 128 && Character.isLetter(c)) {
+                while (i < text.length() && text.charAt(i) < 128 && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                tokens += Math.ceil((i - start) / 4.0);
+            } else if (c < 128 && Character.isDigit(c)) {
+                while (i < text.length() && text.charAt(i) < 128 && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += Math.ceil((i - start) / 3.0);
+            } else if (c < 128) {
+                i++;
+                tokens += 1;
+            } else {
+                i++;
+                tokens += 1 / 1.4;
+            }
+        }
+        return (int) Math.round(tokens);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.util.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器请求路径开销
+ * 8 个线程并发，分别测试大量用户（低冲突）与单个热点用户（同一个桶上 CAS 竞争）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({ "10000" })
+    private int users;
+
+    private RateLimiter limiter;
+
+    @Setup
+    public void setup() {
+        // 足够宽松，测量的是取令牌本身而不是拒绝路径
+        limiter = new RateLimiter(1_000_000_000, 1, TimeUnit.SECONDS, 1_000_000);
+    }
+
+    @Benchmark
+    public RateLimiter.Decision manyUsers() {
+        return limiter.tryAcquire(ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public RateLimiter.Decision hotUser() {
+        return limiter.tryAcquire(42L);
+    }
+}
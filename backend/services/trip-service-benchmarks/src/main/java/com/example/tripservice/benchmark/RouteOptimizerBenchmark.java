@@ -0,0 +1,93 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.service.RouteOptimizationService;
+import com.example.tripservice.util.GeoUtils;
+import com.example.tripservice.util.RouteOptimizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单日路线优化基准
+ * 目标：10 个点的单日行程求解远低于 1ms
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteOptimizerBenchmark {
+
+    @Param({ "10" })
+    private int stops;
+
+    private double[] lng;
+    private double[] lat;
+    private double[] dist;
+    private List<ItineraryItem> dayItems;
+    private RouteOptimizationService service;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        lng = new double[stops];
+        lat = new double[stops];
+        // 杭州市区约 20km 范围内的随机点
+        for (int i = 0; i < stops; i++) {
+            lng[i] = 120.05 + random.nextDouble() * 0.25;
+            lat[i] = 30.15 + random.nextDouble() * 0.20;
+        }
+        dist = GeoUtils.distanceMatrix(lng, lat);
+
+        service = new RouteOptimizationService();
+        dayItems = new ArrayList<>();
+        for (int i = 0; i < stops; i++) {
+            ItineraryItem item = new ItineraryItem();
+            item.setDayIndex(1);
+            item.setStartTime(LocalTime.of(8 + i, 0));
+            item.setEndTime(LocalTime.of(8 + i, 50));
+            // 首尾为住宿，中间为景点
+            item.setType(i == 0 || i == stops - 1 ? "hotel" : "attraction");
+            item.setCoordinates(String.format(Locale.ROOT, "{\"lng\":%.6f,\"lat\":%.6f}", lng[i], lat[i]));
+            dayItems.add(item);
+        }
+    }
+
+    @Benchmark
+    public int[] solveFixedEnds() {
+        return RouteOptimizer.solve(dist, stops, true, true);
+    }
+
+    @Benchmark
+    public int[] solveOpenPath() {
+        return RouteOptimizer.solve(dist, stops, false, false);
+    }
+
+    @Benchmark
+    public double[] buildMatrixAndSolve() {
+        double[] matrix = GeoUtils.distanceMatrix(lng, lat);
+        RouteOptimizer.solve(matrix, stops, true, true);
+        return matrix;
+    }
+
+    /**
+     * 包含坐标解析与时段重排的完整单日优化
+     * 每次调用前恢复原始时段，保证每次都从同一初始顺序开始
+     */
+    @Benchmark
+    public Object optimizeDay() {
+        for (int i = 0; i < stops; i++) {
+            ItineraryItem item = dayItems.get(i);
+            item.setStartTime(LocalTime.of(8 + i, 0));
+            item.setEndTime(LocalTime.of(8 + i, 50));
+        }
+        return service.optimizeDay(dayItems);
+    }
+}
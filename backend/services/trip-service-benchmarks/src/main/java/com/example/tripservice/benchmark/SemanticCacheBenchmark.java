@@ -0,0 +1,77 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.util.HnswIndex;
+import com.example.tripservice.util.NgramEmbedder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 语义缓存查找基准
+ * 目标：100 万条索引下单次查找（向量化 + HNSW 近邻搜索）低于 1ms
+ *
+ * 索引用合成的口语化行程描述构建（20 个城市 × 5 种说法 × 15 种偏好，附随机编号避免完全重复），
+ * 100 万条的构建在 Setup 中完成，单线程需要数分钟。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+@State(Scope.Benchmark)
+public class SemanticCacheBenchmark {
+
+    private static final String[] CITIES = { "杭州", "苏州", "北京", "上海", "成都", "重庆", "西安", "厦门", "三亚", "大理",
+            "丽江", "青岛", "广州", "深圳", "南京", "武汉", "长沙", "桂林", "昆明", "哈尔滨" };
+    private static final String[] LIKES = { "美食", "本地菜", "博物馆", "爬山", "购物", "动漫", "古镇", "海边", "夜景", "拍照",
+            "咖啡", "博物馆和古建筑", "亲子乐园", "温泉", "徒步" };
+    private static final String[] PHRASES = { "想去%s玩%s天，喜欢%s", "%s%s日游，%s", "带孩子去%s玩%s天，想体验%s",
+            "%s%s天，主要是%s，不想太累", "和朋友去%s待%s天，%s为主" };
+    private static final String[] NUMBERS = { "一", "两", "三", "四", "五", "六", "七" };
+    private static final int QUERIES = 1024;
+
+    @Param({ "100000", "1000000" })
+    private int entries;
+
+    private NgramEmbedder embedder;
+    private HnswIndex index;
+    private String[] queryTexts;
+    private float[][] queryVectors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        embedder = new NgramEmbedder(128);
+        index = new HnswIndex(128, 16, 64, entries);
+        for (int i = 0; i < entries; i++) {
+            index.add(embedder.embed(text(random)));
+        }
+        queryTexts = new String[QUERIES];
+        queryVectors = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queryTexts[i] = text(random);
+            queryVectors[i] = embedder.embed(queryTexts[i]);
+        }
+    }
+
+    private static String text(Random random) {
+        return String.format(PHRASES[random.nextInt(PHRASES.length)], CITIES[random.nextInt(CITIES.length)],
+                NUMBERS[random.nextInt(NUMBERS.length)], LIKES[random.nextInt(LIKES.length)])
+                + "，" + LIKES[random.nextInt(LIKES.length)] + random.nextInt(100_000);
+    }
+
+    @Benchmark
+    public HnswIndex.Neighbours search() {
+        return index.search(queryVectors[next++ & (QUERIES - 1)], 8, 32);
+    }
+
+    /**
+     * SemanticPromptCache.find 的完整查找：归一化、向量化与近邻搜索
+     */
+    @Benchmark
+    public HnswIndex.Neighbours embedAndSearch() {
+        return index.search(embedder.embed(queryTexts[next++ & (QUERIES - 1)]), 8, 32);
+    }
+}
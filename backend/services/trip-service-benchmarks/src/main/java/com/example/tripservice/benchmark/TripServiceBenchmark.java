@@ -0,0 +1,120 @@
+package com.example.tripservice.benchmark;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.dto.ItineraryItemDto;
+import com.example.tripservice.dto.TripResponse;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.Trip;
+import com.example.tripservice.service.AmapGeocodingService;
+import com.example.tripservice.service.QwenService;
+import com.example.tripservice.service.TravelTimeService;
+import com.example.tripservice.service.TripService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TripService 请求路径上的纯 CPU 热点
+ *
+ * 非公开的辅助方法通过 {@link BenchmarkFixtures#method} 取得的句柄调用，不启动 Spring 容器、不访问数据库与外部 API。
+ * 默认 7 天 × 8 项，对应大模型一次生成约 6000 token 的行程 JSON。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class TripServiceBenchmark {
+
+    private static final MethodHandle TO_DTO = BenchmarkFixtures.method(TripService.class, "toDto",
+            ItineraryItem.class);
+    private static final MethodHandle BUILD_DETAILED_TRIP_RESPONSE = BenchmarkFixtures.method(TripService.class,
+            "buildDetailedTripResponse", Trip.class, List.class);
+    private static final MethodHandle CALCULATE_CATEGORY_TOTAL = BenchmarkFixtures.method(TripService.class,
+            "calculateCategoryTotal", List.class, String.class);
+    private static final MethodHandle BUILD_PROMPT = BenchmarkFixtures.method(TripService.class, "buildPrompt",
+            CreateTripRequest.class);
+    private static final MethodHandle BUILD_SYSTEM_PROMPT = BenchmarkFixtures.method(QwenService.class,
+            "buildSystemPrompt");
+
+    @Param({ "7" })
+    private int days;
+
+    @Param({ "8" })
+    private int itemsPerDay;
+
+    private TripService tripService;
+    private QwenService qwenService;
+    private ObjectMapper objectMapper;
+
+    private Trip trip;
+    private List<ItineraryItem> items;
+    private ItineraryItem item;
+    private String planJson;
+    private CreateTripRequest request;
+    private TripResponse response;
+
+    @Setup
+    public void setup() throws Throwable {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        TravelTimeService travelTimeService = new TravelTimeService(
+                new AmapGeocodingService(objectMapper, new SimpleMeterRegistry()), objectMapper, 20_000, 200, 60);
+        BenchmarkFixtures.inject(travelTimeService, "speedKmh", 25.0);
+        BenchmarkFixtures.inject(travelTimeService, "detourFactor", 1.4);
+        BenchmarkFixtures.inject(travelTimeService, "overheadMinutes", 5);
+        BenchmarkFixtures.inject(travelTimeService, "coordinateScale", 1000);
+
+        tripService = new TripService();
+        BenchmarkFixtures.inject(tripService, "travelTimeService", travelTimeService);
+        BenchmarkFixtures.inject(tripService, "objectMapper", objectMapper);
+        qwenService = new QwenService();
+
+        trip = BenchmarkFixtures.trip(days);
+        items = BenchmarkFixtures.items(days, itemsPerDay);
+        item = items.get(0);
+        planJson = BenchmarkFixtures.llmPlanJson(days, itemsPerDay);
+        request = BenchmarkFixtures.createTripRequest();
+        response = (TripResponse) BUILD_DETAILED_TRIP_RESPONSE.invokeExact(tripService, trip, items);
+    }
+
+    @Benchmark
+    public ItineraryItemDto toDto() throws Throwable {
+        return (ItineraryItemDto) TO_DTO.invokeExact(tripService, item);
+    }
+
+    @Benchmark
+    public TripResponse buildDetailedTripResponse() throws Throwable {
+        return (TripResponse) BUILD_DETAILED_TRIP_RESPONSE.invokeExact(tripService, trip, items);
+    }
+
+    @Benchmark
+    public BigDecimal calculateCategoryTotal() throws Throwable {
+        return (BigDecimal) CALCULATE_CATEGORY_TOTAL.invokeExact(tripService, items, "attraction");
+    }
+
+    @Benchmark
+    public JsonNode readPlanJson() throws Exception {
+        return objectMapper.readTree(planJson);
+    }
+
+    @Benchmark
+    public void buildPrompts(Blackhole blackhole) throws Throwable {
+        blackhole.consume((String) BUILD_SYSTEM_PROMPT.invokeExact(qwenService));
+        blackhole.consume((String) BUILD_PROMPT.invokeExact(tripService, request));
+    }
+
+    @Benchmark
+    public String serializeTripResponse() throws Exception {
+        return objectMapper.writeValueAsString(response);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.tripservice.loadtest;
+
+import java.util.Random;
+
+/**
+ * 桩服务的响应延迟分布
+ *
+ * 配置格式：
+ * <ul>
+ *   <li>{@code fixed:200} 固定 200ms</li>
+ *   <li>{@code uniform:20:80} 20~80ms 均匀分布</li>
+ *   <li>{@code lognormal:4000:0.5} 对数正态分布，中位数 4000ms、σ=0.5（大模型生成耗时的长尾近似）</li>
+ * </ul>
+ */
+public final class LatencyDistribution {
+
+    private final String spec;
+    private final String kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, String kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new LatencyDistribution(spec, parts[0], Double.parseDouble(parts[1]), 0);
+                case "uniform":
+                case "lognormal":
+                    return new LatencyDistribution(spec, parts[0],
+                            Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // 落到下面统一报错
+        }
+        throw new IllegalArgumentException("无效的延迟分布: " + spec
+                + "（支持 fixed:ms / uniform:min:max / lognormal:median:sigma）");
+    }
+
+    public long sampleMillis(Random random) {
+        switch (kind) {
+            case "uniform":
+                return (long) (a + random.nextDouble() * (b - a));
+            case "lognormal":
+                return (long) (a * Math.exp(b * random.nextGaussian()));
+            default:
+                return (long) a;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
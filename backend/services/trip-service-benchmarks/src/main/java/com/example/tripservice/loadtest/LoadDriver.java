@@ -0,0 +1,265 @@
+package com.example.tripservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 端到端压测驱动
+ *
+ * 每个虚拟用户按脚本执行若干个会话：注册 → 登录 → 生成行程 → 列表 → 详情 → 修改行程 → 修改行程项 → 删除，
+ * 结束后按接口输出吞吐量与延迟分位数。配合 {@link StubServer} 可完全离线运行。
+ *
+ * 参数（系统属性）：
+ * <ul>
+ *   <li>load.base-url：trip-service 地址，默认 http://localhost:8081/api/v1</li>
+ *   <li>load.users：并发虚拟用户数，默认 10</li>
+ *   <li>load.sessions：每个用户的会话数，默认 3</li>
+ *   <li>load.think-ms：步骤间的思考时间，默认 0</li>
+ *   <li>load.trip-days：生成行程的天数，默认 3</li>
+ *   <li>load.report：同时写出 JSON 报告的路径，可选</li>
+ * </ul>
+ *
+ * 注意：生成接口默认限流为每用户每小时 20 次（突发 5 次），每个虚拟用户的会话数超过突发容量时会出现 429。
+ */
+public final class LoadDriver {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger failedSessions = new AtomicInteger();
+
+    private final String baseUrl;
+    private final int thinkMillis;
+    private final int tripDays;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    LoadDriver(String baseUrl, int thinkMillis, int tripDays) {
+        this.baseUrl = baseUrl;
+        this.thinkMillis = thinkMillis;
+        this.tripDays = tripDays;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("load.base-url", "http://localhost:8081/api/v1");
+        int users = Integer.getInteger("load.users", 10);
+        int sessions = Integer.getInteger("load.sessions", 3);
+        LoadDriver driver = new LoadDriver(baseUrl, Integer.getInteger("load.think-ms", 0),
+                Integer.getInteger("load.trip-days", 3));
+
+        System.out.printf("压测开始: %s，%d 个虚拟用户 × %d 个会话%n", baseUrl, users, sessions);
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        long start = System.nanoTime();
+        for (int user = 0; user < users; user++) {
+            int userIndex = user;
+            executor.submit(() -> {
+                for (int session = 0; session < sessions; session++) {
+                    driver.runSession(userIndex, session);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.DAYS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        driver.printReport(elapsedSeconds, users * sessions);
+        String report = System.getProperty("load.report");
+        if (report != null) {
+            driver.writeReport(new File(report), elapsedSeconds);
+        }
+    }
+
+    /**
+     * 执行一个会话，任一步骤失败则放弃后续步骤
+     */
+    void runSession(int user, int session) {
+        try {
+            String email = "load-" + runId + "-" + user + "-" + session + "@example.com";
+            ObjectNode credentials = objectMapper.createObjectNode();
+            credentials.put("email", email);
+            credentials.put("password", "load-test-password");
+            ObjectNode register = credentials.deepCopy();
+            register.put("displayName", "load" + user);
+            call("POST /auth/register", "POST", "/auth/register", register, null);
+            think();
+
+            JsonNode login = call("POST /auth/login", "POST", "/auth/login", credentials, null);
+            String token = login.path("token").asText();
+            think();
+
+            Random random = new Random(user * 1000L + session);
+            LocalDate startDate = LocalDate.of(2026, 5, 1).plusDays(random.nextInt(60));
+            ObjectNode createTrip = objectMapper.createObjectNode();
+            createTrip.put("destination", new String[] { "杭州", "成都", "西安", "厦门" }[random.nextInt(4)]);
+            createTrip.put("startDate", startDate.toString());
+            createTrip.put("endDate", startDate.plusDays(tripDays - 1).toString());
+            createTrip.put("participants", 1 + random.nextInt(4));
+            createTrip.put("budget", 3000 + random.nextInt(10) * 1000);
+            createTrip.put("preferences", "美食,历史文化");
+            JsonNode trip = call("POST /trips", "POST", "/trips", createTrip, token);
+            long tripId = trip.path("id").asLong();
+            think();
+
+            call("GET /trips", "GET", "/trips", null, token);
+            think();
+
+            call("GET /trips/{id}", "GET", "/trips/" + tripId, null, token);
+            think();
+
+            ObjectNode updateTrip = objectMapper.createObjectNode();
+            updateTrip.put("title", "压测行程 " + user + "-" + session);
+            call("PUT /trips/{id}", "PUT", "/trips/" + tripId, updateTrip, token);
+            think();
+
+            ObjectNode updateItem = objectMapper.createObjectNode();
+            updateItem.put("notes", "压测修改");
+            call("PUT /trips/{id}/itinerary/{index}", "PUT", "/trips/" + tripId + "/itinerary/0", updateItem, token);
+            think();
+
+            call("DELETE /trips/{id}", "DELETE", "/trips/" + tripId, null, token);
+        } catch (Exception e) {
+            failedSessions.incrementAndGet();
+        }
+    }
+
+    private JsonNode call(String endpoint, String method, String path, JsonNode body, String token)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMinutes(3))
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        request.method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            endpointStats.record(System.nanoTime() - start, 0);
+            throw e;
+        }
+        endpointStats.record(System.nanoTime() - start, response.statusCode());
+
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(endpoint + " 返回 " + response.statusCode());
+        }
+        return response.body().isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkMillis > 0) {
+            Thread.sleep(thinkMillis);
+        }
+    }
+
+    private void printReport(double elapsedSeconds, int totalSessions) {
+        System.out.printf("%n耗时 %.1fs，会话 %d 个，失败 %d 个%n%n", elapsedSeconds, totalSessions, failedSessions.get());
+        System.out.printf("%-36s %7s %7s %9s %9s %9s %9s %9s  %s%n",
+                "接口", "请求数", "错误数", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)", "状态码");
+        new TreeMap<>(stats).forEach((endpoint, endpointStats) -> {
+            long[] sorted = endpointStats.sortedLatencies();
+            System.out.printf("%-36s %7d %7d %9.2f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                    endpoint, sorted.length, endpointStats.errors(), sorted.length / elapsedSeconds,
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.90),
+                    percentileMillis(sorted, 0.99), percentileMillis(sorted, 1.0), endpointStats.statusCounts());
+        });
+    }
+
+    private void writeReport(File file, double elapsedSeconds) throws Exception {
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("failedSessions", failedSessions.get());
+        ArrayNode endpoints = report.putArray("endpoints");
+        new TreeMap<>(stats).forEach((endpoint, endpointStats) -> {
+            long[] sorted = endpointStats.sortedLatencies();
+            ObjectNode node = endpoints.addObject();
+            node.put("endpoint", endpoint);
+            node.put("count", sorted.length);
+            node.put("errors", endpointStats.errors());
+            node.put("throughput", sorted.length / elapsedSeconds);
+            node.put("p50Ms", percentileMillis(sorted, 0.50));
+            node.put("p90Ms", percentileMillis(sorted, 0.90));
+            node.put("p99Ms", percentileMillis(sorted, 0.99));
+            node.put("maxMs", percentileMillis(sorted, 1.0));
+            endpointStats.statusCounts().forEach(node.putObject("statusCounts")::put);
+        });
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.println("报告已写入 " + file.getAbsolutePath());
+    }
+
+    /**
+     * 最近秩法计算分位数
+     */
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1e6;
+    }
+
+    /**
+     * 单个接口的延迟样本与状态码分布（状态码 0 表示连接失败或超时）
+     */
+    private static final class EndpointStats {
+
+        private long[] latencies = new long[256];
+        private int size;
+        private int errors;
+        private final Map<Integer, Integer> statusCounts = new LinkedHashMap<>();
+
+        synchronized void record(long nanos, int status) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+            statusCounts.merge(status, 1, Integer::sum);
+            if (status == 0 || status >= 400) {
+                errors++;
+            }
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+
+        synchronized Map<String, Integer> statusCounts() {
+            Map<String, Integer> copy = new TreeMap<>();
+            statusCounts.forEach((status, count) -> copy.put(String.valueOf(status), count));
+            return copy;
+        }
+    }
+}
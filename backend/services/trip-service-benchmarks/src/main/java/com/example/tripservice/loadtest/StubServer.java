@@ -0,0 +1,623 @@
+package com.example.tripservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 通义千问（DashScope）与高德 Web 服务的本地桩服务
+ *
+ * 压测时把 trip-service 的 QWEN_API_URL / AMAP_API_BASE_URL 指向本服务，不消耗真实配额，可完全离线运行。
+ *
+ * <ul>
+ *   <li>POST /api/v1/services/aigc/text-generation/generation：按提示词中的日期生成合法行程 JSON，
+ *       紧凑格式的系统提示词返回紧凑行格式；重新生成某一天、替换行程项的提示词返回单天行程项或单个行程项；逐日并行生成的骨架与单天提示词分别返回骨架与单天 JSON，截断后的续写提示词只返回剩余的天；支持延迟分布、按输出长度增加的延迟（stub.qwen.ms-per-char）、
+ *       错误率（429/500）、截断（finish_reason=length）以及流式（X-DashScope-SSE: enable）</li>
+ *   <li>GET /v3/geocode/geo、/v3/direction/driving：按地址/坐标确定性地返回结果，
+ *       同一 key 超过 QPS 限制时与真实接口一样返回 CUQPS_HAS_EXCEEDED_THE_LIMIT</li>
+ *   <li>GET /__stats：各接口的请求、注入错误、限流与回放命中计数</li>
+ * </ul>
+ *
+ * stub.mode=record 时把请求转发到真实上游并保存响应（含耗时），stub.mode=replay 时按请求内容回放，
+ * 未录制的请求回退到合成响应并计入 replayMisses。
+ *
+ * 用法：java -cp benchmarks.jar -Dstub.port=18090 com.example.tripservice.loadtest.StubServer
+ */
+public final class StubServer {
+
+    static final String QWEN_PATH = "/api/v1/services/aigc/text-generation/generation";
+    static final String GEOCODE_PATH = "/v3/geocode/geo";
+    static final String DRIVING_PATH = "/v3/direction/driving";
+
+    private static final Pattern DESTINATION = Pattern.compile("目的地：(\\S+)");
+    private static final Pattern START_DATE = Pattern.compile("出发日期：(\\d{4}-\\d{2}-\\d{2})");
+    private static final Pattern END_DATE = Pattern.compile("返回日期：(\\d{4}-\\d{2}-\\d{2})");
+    // 逐日并行生成的骨架与单天提示词，见 trip-service 的 ParallelTripPlanner
+    private static final String SKELETON_MARKER = "逐日规划（行程骨架）";
+    private static final Pattern SINGLE_DAY = Pattern.compile("本次只生成第 (\\d+) 天");
+    // 截断后的续写提示词，见 trip-service 的 QwenService.buildContinuationPrompt
+    // 紧凑行格式的系统提示词，见 trip-service 的 QwenService.buildCompactSystemPrompt
+    private static final String COMPACT_MARKER = "使用以下紧凑行格式输出";
+    // 局部重新生成的提示词，见 trip-service 的 ItineraryRegenerationService
+    private static final Pattern REGENERATE_DAY = Pattern.compile("需要重新安排：第 (\\d+) 天");
+    private static final String REPLACE_ITEM_MARKER = "需要替换：";
+    private static final Pattern CONTINUE_FROM = Pattern.compile("请从第 (\\d+) 天开始继续生成");
+
+    private static final String[][] SLOTS = {
+            { "09:00", "11:00", "attraction", "景区" },
+            { "11:30", "12:30", "restaurant", "餐厅" },
+            { "13:30", "16:00", "attraction", "博物馆" },
+            { "18:00", "19:30", "restaurant", "夜市" },
+            { "20:30", "21:00", "hotel", "酒店" },
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient upstreamClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final String mode;
+    private final Path tapeDir;
+    private final String qwenUpstream;
+    private final String amapUpstream;
+    private final LatencyDistribution qwenLatency;
+    private final double qwenErrorRate;
+    private final double qwenTruncateRate;
+    private final double qwenMsPerChar;
+    private final LatencyDistribution amapLatency;
+    private final double amapErrorRate;
+    private final int amapQps;
+
+    // 每个高德 key 最近一秒内的请求时刻
+    private final Map<String, Deque<Long>> amapWindows = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    StubServer() {
+        this.mode = System.getProperty("stub.mode", "synthetic");
+        this.tapeDir = Paths.get(System.getProperty("stub.tapes", "target/stub-tapes"));
+        this.qwenUpstream = System.getProperty("stub.qwen.upstream", "https://dashscope.aliyuncs.com");
+        this.amapUpstream = System.getProperty("stub.amap.upstream", "https://restapi.amap.com");
+        this.qwenLatency = LatencyDistribution.parse(System.getProperty("stub.qwen.latency", "lognormal:4000:0.5"));
+        this.qwenErrorRate = Double.parseDouble(System.getProperty("stub.qwen.error-rate", "0"));
+        this.qwenTruncateRate = Double.parseDouble(System.getProperty("stub.qwen.truncate-rate", "0"));
+        this.qwenMsPerChar = Double.parseDouble(System.getProperty("stub.qwen.ms-per-char", "0"));
+        this.amapLatency = LatencyDistribution.parse(System.getProperty("stub.amap.latency", "uniform:20:80"));
+        this.amapErrorRate = Double.parseDouble(System.getProperty("stub.amap.error-rate", "0"));
+        this.amapQps = Integer.getInteger("stub.amap.qps", 3);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.getInteger("stub.port", 18090);
+        StubServer stub = new StubServer();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 256);
+        server.createContext(QWEN_PATH, exchange -> stub.dispatch(exchange, "qwen"));
+        server.createContext(GEOCODE_PATH, exchange -> stub.dispatch(exchange, "geocode"));
+        server.createContext(DRIVING_PATH, exchange -> stub.dispatch(exchange, "driving"));
+        server.createContext("/__stats", stub::stats);
+        // 处理线程会按延迟分布睡眠，使用无界线程池，避免桩服务本身成为瓶颈
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        System.out.printf("桩服务已启动: http://localhost:%d 模式=%s 千问延迟=%s+%.2fms/字 错误率=%.2f 截断率=%.2f "
+                        + "高德延迟=%s 错误率=%.2f QPS=%d%n",
+                port, stub.mode, stub.qwenLatency, stub.qwenMsPerChar, stub.qwenErrorRate, stub.qwenTruncateRate,
+                stub.amapLatency, stub.amapErrorRate, stub.amapQps);
+        System.out.printf("trip-service 配置: QWEN_API_URL=http://localhost:%d%s AMAP_API_BASE_URL=http://localhost:%d%n",
+                port, QWEN_PATH, port);
+    }
+
+    private void dispatch(HttpExchange exchange, String service) throws IOException {
+        try {
+            count(service + ".requests");
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String query = exchange.getRequestURI().getRawQuery();
+
+            if ("record".equals(mode)) {
+                record(exchange, service, query, body);
+                return;
+            }
+            if ("replay".equals(mode) && replay(exchange, service, query, body)) {
+                return;
+            }
+
+            if ("qwen".equals(service)) {
+                handleQwen(exchange, body);
+            } else {
+                handleAmap(exchange, service, parseQuery(query));
+            }
+        } catch (Exception e) {
+            count(service + ".failures");
+            send(exchange, 500, "application/json", "{\"code\":\"StubError\",\"message\":\"" + e + "\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- 通义千问
+
+    private void handleQwen(HttpExchange exchange, String body) throws Exception {
+        Random random = ThreadLocalRandom.current();
+        long latency = qwenLatency.sampleMillis(random);
+
+        if (random.nextDouble() < qwenErrorRate) {
+            count("qwen.injectedErrors");
+            Thread.sleep(latency / 10);
+            if (random.nextBoolean()) {
+                send(exchange, 429, "application/json", "{\"code\":\"Throttling.RateQuota\","
+                        + "\"message\":\"Requests rate limit exceeded, please try again later.\","
+                        + "\"request_id\":\"" + UUID.randomUUID() + "\"}");
+            } else {
+                send(exchange, 500, "application/json", "{\"code\":\"InternalError\","
+                        + "\"message\":\"An internal error has occured, please try again later.\","
+                        + "\"request_id\":\"" + UUID.randomUUID() + "\"}");
+            }
+            return;
+        }
+
+        JsonNode request = objectMapper.readTree(body);
+        String prompt = request.path("input").path("prompt").asText();
+        String content = syntheticContent(prompt);
+        // 输出越长生成越久，与真实模型逐 token 输出一致
+        latency += (long) (content.length() * qwenMsPerChar);
+        String finishReason = "stop";
+        if (random.nextDouble() < qwenTruncateRate) {
+            count("qwen.truncated");
+            content = content.substring(0, (int) (content.length() * (0.5 + random.nextDouble() * 0.45)));
+            finishReason = "length";
+        }
+
+        String sse = exchange.getRequestHeaders().getFirst("X-DashScope-SSE");
+        boolean incremental = request.path("parameters").path("incremental_output").asBoolean(false);
+        if ("enable".equalsIgnoreCase(sse)) {
+            count("qwen.streamed");
+            streamQwen(exchange, prompt, content, finishReason, incremental, latency);
+        } else {
+            Thread.sleep(latency);
+            send(exchange, 200, "application/json",
+                    objectMapper.writeValueAsString(qwenResponse(prompt, content, finishReason)));
+        }
+    }
+
+    /**
+     * 以 SSE 分块返回，首块约在总延迟的 10% 时到达，其余均匀分布
+     * 与 DashScope 一致：默认每块携带累计内容，incremental_output=true 时只携带增量
+     */
+    private void streamQwen(HttpExchange exchange, String prompt, String content, String finishReason,
+            boolean incremental, long latency) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+
+        int chunkSize = 64;
+        int chunks = Math.max(1, (content.length() + chunkSize - 1) / chunkSize);
+        long firstChunkDelay = latency / 10;
+        long interval = (latency - firstChunkDelay) / chunks;
+        Thread.sleep(firstChunkDelay);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < chunks; i++) {
+                int end = Math.min(content.length(), (i + 1) * chunkSize);
+                String piece = incremental ? content.substring(i * chunkSize, end) : content.substring(0, end);
+                boolean last = i == chunks - 1;
+                ObjectNode event = qwenResponse(prompt, piece, last ? finishReason : "null");
+                String frame = "id:" + (i + 1) + "\nevent:result\n:HTTP_STATUS/200\ndata:"
+                        + objectMapper.writeValueAsString(event) + "\n\n";
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (!last) {
+                    Thread.sleep(interval);
+                }
+            }
+        }
+    }
+
+    private ObjectNode qwenResponse(String prompt, String content, String finishReason) {
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode choice = response.putObject("output").putArray("choices").addObject();
+        choice.put("finish_reason", finishReason);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        // 粗略按 1 个汉字约 1 token 估算
+        ObjectNode usage = response.putObject("usage");
+        usage.put("input_tokens", prompt.length());
+        usage.put("output_tokens", content.length() / 2);
+        usage.put("total_tokens", prompt.length() + content.length() / 2);
+        response.put("request_id", UUID.randomUUID().toString());
+        return response;
+    }
+
+    /**
+     * 按提示词类型生成内容：行程骨架、单天行程或完整行程
+     */
+    String syntheticContent(String prompt) throws IOException {
+        if (prompt.contains(SKELETON_MARKER)) {
+            return syntheticSkeleton(prompt);
+        }
+        Matcher singleDay = SINGLE_DAY.matcher(prompt);
+        if (singleDay.find()) {
+            int day = Integer.parseInt(singleDay.group(1));
+            ObjectNode dayNode = objectMapper.createObjectNode();
+            dayNode.put("dayIndex", day);
+            addItems(dayNode.putArray("items"), match(DESTINATION, prompt, "杭州"), new Random(prompt.hashCode()),
+                    day, new double[5]);
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(dayNode);
+        }
+        Matcher regenerateDay = REGENERATE_DAY.matcher(prompt);
+        if (regenerateDay.find()) {
+            ObjectNode dayNode = objectMapper.createObjectNode();
+            addItems(dayNode.putArray("items"), match(DESTINATION, prompt, "杭州"), new Random(prompt.hashCode()),
+                    Integer.parseInt(regenerateDay.group(1)), new double[5]);
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(dayNode);
+        }
+        if (prompt.contains(REPLACE_ITEM_MARKER)) {
+            ArrayNode items = objectMapper.createArrayNode();
+            Random random = new Random(prompt.hashCode());
+            addItems(items, match(DESTINATION, prompt, "杭州"), random, 100 + random.nextInt(900), new double[5]);
+            ObjectNode item = (ObjectNode) items.get(random.nextInt(items.size()));
+            item.remove("startTime");
+            item.remove("endTime");
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(item);
+        }
+        Matcher continueFrom = CONTINUE_FROM.matcher(prompt);
+        if (continueFrom.find()) {
+            return syntheticContinuation(prompt, Integer.parseInt(continueFrom.group(1)));
+        }
+        String plan = syntheticPlan(prompt);
+        return prompt.contains(COMPACT_MARKER) ? compactPlan(plan) : plan;
+    }
+
+    /**
+     * 把合成的 JSON 行程改写为紧凑行格式，内容不变
+     */
+    private String compactPlan(String planJson) throws IOException {
+        JsonNode plan = objectMapper.readTree(planJson);
+        StringBuilder text = new StringBuilder();
+        text.append("T|").append(plan.path("title").asText()).append('|')
+                .append(plan.path("destination").asText()).append('\n');
+        for (JsonNode day : plan.path("days")) {
+            text.append("D|").append(day.path("dayIndex").asInt()).append('\n');
+            for (JsonNode item : day.path("items")) {
+                text.append("I|").append(item.path("startTime").asText()).append('|')
+                        .append(item.path("endTime").asText()).append('|')
+                        .append(item.path("type").asText().charAt(0)).append('|')
+                        .append(item.path("title").asText()).append('|')
+                        .append(item.path("location").asText()).append('|')
+                        .append(item.path("estimatedCost").asInt()).append('|')
+                        .append(item.path("description").asText()).append('|')
+                        .append(item.path("notes").asText()).append('\n');
+            }
+        }
+        JsonNode budget = plan.path("budgetBreakdown");
+        text.append("B|").append(budget.path("transport").asInt()).append('|')
+                .append(budget.path("accommodation").asInt()).append('|').append(budget.path("food").asInt())
+                .append('|').append(budget.path("attractions").asInt()).append('|')
+                .append(budget.path("other").asInt()).append("\nEND");
+        return text.toString();
+    }
+
+    /**
+     * 续写：只返回从指定天开始的剩余天与整体预算
+     */
+    private String syntheticContinuation(String prompt, int fromDay) throws IOException {
+        String destination = match(DESTINATION, prompt, "杭州");
+        int days = days(prompt);
+        Random random = new Random(prompt.hashCode());
+        ObjectNode tail = objectMapper.createObjectNode();
+        ArrayNode dayNodes = tail.putArray("days");
+        double[] totals = new double[5];
+        for (int day = fromDay; day <= days; day++) {
+            ObjectNode dayNode = dayNodes.addObject();
+            dayNode.put("dayIndex", day);
+            addItems(dayNode.putArray("items"), destination, random, day, totals);
+        }
+        putBudget(tail, days, totals);
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(tail);
+    }
+
+    /**
+     * 按提示词中的目的地与日期生成符合系统提示词格式的行程，同一提示词结果相同
+     */
+    String syntheticPlan(String prompt) throws IOException {
+        String destination = match(DESTINATION, prompt, "杭州");
+        int days = days(prompt);
+
+        Random random = new Random(prompt.hashCode());
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.put("title", destination + days + "日游");
+        plan.put("destination", destination);
+        ArrayNode dayNodes = plan.putArray("days");
+        double[] totals = new double[5];
+        for (int day = 1; day <= days; day++) {
+            ObjectNode dayNode = dayNodes.addObject();
+            dayNode.put("dayIndex", day);
+            addItems(dayNode.putArray("items"), destination, random, day, totals);
+        }
+        putBudget(plan, days, totals);
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(plan);
+    }
+
+    private String syntheticSkeleton(String prompt) throws IOException {
+        String destination = match(DESTINATION, prompt, "杭州");
+        int days = days(prompt);
+        ObjectNode skeleton = objectMapper.createObjectNode();
+        skeleton.put("title", destination + days + "日游");
+        skeleton.put("destination", destination);
+        ArrayNode dayNodes = skeleton.putArray("days");
+        for (int day = 1; day <= days; day++) {
+            ObjectNode dayNode = dayNodes.addObject();
+            dayNode.put("dayIndex", day);
+            dayNode.put("area", destination + "第" + day + "片区");
+            dayNode.put("theme", "城市漫游第" + day + "站");
+        }
+        // 骨架只给出整体预算，按平均每天的活动费用估算
+        putBudget(skeleton, days, new double[] { 0, 300.0 * days, 400.0 * days, 500.0 * days, 0 });
+        return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(skeleton);
+    }
+
+    private int days(String prompt) {
+        String start = match(START_DATE, prompt, null);
+        String end = match(END_DATE, prompt, null);
+        if (start == null || end == null) {
+            return 3;
+        }
+        return (int) Math.max(1, Math.min(14,
+                ChronoUnit.DAYS.between(LocalDate.parse(start), LocalDate.parse(end)) + 1));
+    }
+
+    /**
+     * 一天的活动，景点名带上天数，避免不同天生成同名景点
+     */
+    private void addItems(ArrayNode items, String destination, Random random, int day, double[] totals) {
+        for (String[] slot : SLOTS) {
+            double cost = 20 + random.nextInt(40) * 10;
+            ObjectNode item = items.addObject();
+            item.put("startTime", slot[0]);
+            item.put("endTime", slot[1]);
+            item.put("title", destination + slot[3] + day + "-" + (random.nextInt(20) + 1) + "号");
+            item.put("type", slot[2]);
+            item.put("location", destination + "市中心区" + slot[3] + "路" + (random.nextInt(200) + 1) + "号");
+            item.put("description", "体验" + destination + "当地特色" + slot[3] + "，感受城市的历史与生活气息");
+            item.put("estimatedCost", cost);
+            item.put("notes", "建议提前预约");
+            totals["attraction".equals(slot[2]) ? 3 : "restaurant".equals(slot[2]) ? 2 : 1] += cost;
+        }
+    }
+
+    private void putBudget(ObjectNode plan, int days, double[] totals) {
+        ObjectNode budget = plan.putObject("budgetBreakdown");
+        budget.put("transport", 200.0 * days);
+        budget.put("accommodation", totals[1]);
+        budget.put("food", totals[2]);
+        budget.put("attractions", totals[3]);
+        budget.put("other", 100.0);
+    }
+
+    // ---------------------------------------------------------------- 高德
+
+    private void handleAmap(HttpExchange exchange, String service, Map<String, String> query) throws Exception {
+        Random random = ThreadLocalRandom.current();
+        Thread.sleep(amapLatency.sampleMillis(random));
+
+        if (!tryAcquireAmap(query.getOrDefault("key", ""))) {
+            count(service + ".qpsExceeded");
+            send(exchange, 200, "application/json",
+                    "{\"status\":\"0\",\"info\":\"CUQPS_HAS_EXCEEDED_THE_LIMIT\",\"infocode\":\"10021\"}");
+            return;
+        }
+        if (random.nextDouble() < amapErrorRate) {
+            count(service + ".injectedErrors");
+            send(exchange, 200, "application/json",
+                    "{\"status\":\"0\",\"info\":\"UNKNOWN_ERROR\",\"infocode\":\"20003\"}");
+            return;
+        }
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("status", "1");
+        response.put("info", "OK");
+        response.put("infocode", "10000");
+        if ("geocode".equals(service)) {
+            String address = query.getOrDefault("address", "");
+            // 以地址哈希确定坐标，落在约 20km 见方的范围内
+            int hash = address.hashCode() * 0x9E3779B9;
+            double lng = 120.10 + ((hash & 0xFFFF) / 65535.0) * 0.2;
+            double lat = 30.15 + (((hash >>> 16) & 0xFFFF) / 65535.0) * 0.2;
+            response.put("count", "1");
+            ObjectNode geocode = response.putArray("geocodes").addObject();
+            geocode.put("formatted_address", address);
+            geocode.put("location", String.format(Locale.ROOT, "%.6f,%.6f", lng, lat));
+        } else {
+            double[] from = parseLngLat(query.get("origin"));
+            double[] to = parseLngLat(query.get("destination"));
+            double meters = haversineMeters(from, to) * 1.3;
+            ObjectNode path = response.putObject("route").putArray("paths").addObject();
+            path.put("distance", String.valueOf((long) meters));
+            // 市区平均车速约 30km/h
+            path.put("duration", String.valueOf((long) (meters / (30_000.0 / 3600))));
+        }
+        send(exchange, 200, "application/json", objectMapper.writeValueAsString(response));
+    }
+
+    private boolean tryAcquireAmap(String key) {
+        Deque<Long> window = amapWindows.computeIfAbsent(key, k -> new ArrayDeque<>());
+        long now = System.nanoTime();
+        synchronized (window) {
+            while (!window.isEmpty() && now - window.peekFirst() >= 1_000_000_000L) {
+                window.pollFirst();
+            }
+            if (window.size() >= amapQps) {
+                return false;
+            }
+            window.addLast(now);
+            return true;
+        }
+    }
+
+    private static double[] parseLngLat(String value) {
+        if (value == null || !value.contains(",")) {
+            return new double[] { 0, 0 };
+        }
+        String[] parts = value.split(",");
+        return new double[] { Double.parseDouble(parts[0]), Double.parseDouble(parts[1]) };
+    }
+
+    private static double haversineMeters(double[] a, double[] b) {
+        double dLat = Math.toRadians(b[1] - a[1]);
+        double dLng = Math.toRadians(b[0] - a[0]);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(a[1])) * Math.cos(Math.toRadians(b[1]))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * 6_371_000 * Math.asin(Math.sqrt(h));
+    }
+
+    // ---------------------------------------------------------------- 录制与回放
+
+    /**
+     * 转发到真实上游并保存响应
+     */
+    private void record(HttpExchange exchange, String service, String query, String body) throws Exception {
+        String upstream = ("qwen".equals(service) ? qwenUpstream : amapUpstream)
+                + exchange.getRequestURI().getRawPath() + (query != null ? "?" + query : "");
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(upstream))
+                .timeout(Duration.ofMinutes(3));
+        for (String header : new String[] { "Authorization", "Content-Type", "X-DashScope-SSE" }) {
+            String value = exchange.getRequestHeaders().getFirst(header);
+            if (value != null) {
+                request.header(header, value);
+            }
+        }
+        request.method(exchange.getRequestMethod(), body.isEmpty()
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body));
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = upstreamClient.send(request.build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        long latencyMs = (System.nanoTime() - start) / 1_000_000;
+        String contentType = response.headers().firstValue("Content-Type").orElse("application/json");
+
+        ObjectNode tape = objectMapper.createObjectNode();
+        tape.put("status", response.statusCode());
+        tape.put("contentType", contentType);
+        tape.put("latencyMs", latencyMs);
+        tape.put("body", response.body());
+        Path file = tapeFile(service, query, body);
+        Files.createDirectories(file.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), tape);
+        count(service + ".recorded");
+
+        send(exchange, response.statusCode(), contentType, response.body());
+    }
+
+    /**
+     * 按请求内容回放录制的响应，并按录制时的耗时延迟返回
+     *
+     * @return 是否命中
+     */
+    private boolean replay(HttpExchange exchange, String service, String query, String body) throws Exception {
+        Path file = tapeFile(service, query, body);
+        if (!Files.exists(file)) {
+            count(service + ".replayMisses");
+            return false;
+        }
+        JsonNode tape = objectMapper.readTree(file.toFile());
+        Thread.sleep(tape.path("latencyMs").asLong());
+        send(exchange, tape.path("status").asInt(200), tape.path("contentType").asText("application/json"),
+                tape.path("body").asText());
+        count(service + ".replayed");
+        return true;
+    }
+
+    /**
+     * 录制文件按请求内容的 SHA-256 命名；高德的 key 参数不参与计算，录制与回放可使用不同的 key
+     */
+    private Path tapeFile(String service, String query, String body) throws NoSuchAlgorithmException {
+        StringBuilder canonical = new StringBuilder();
+        Map<String, String> params = new TreeMap<>(parseQuery(query));
+        params.remove("key");
+        params.forEach((name, value) -> canonical.append(name).append('=').append(value).append('&'));
+        canonical.append('\n').append(body);
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+        return tapeDir.resolve(service).resolve(HexFormat.of().formatHex(digest) + ".json");
+    }
+
+    // ---------------------------------------------------------------- 工具
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, Long> snapshot = new TreeMap<>();
+            counters.forEach((name, value) -> snapshot.put(name, value.get()));
+            send(exchange, 200, "application/json", objectMapper.writeValueAsString(snapshot));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void count(String name) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String match(Pattern pattern, String text, String fallback) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : fallback;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.tripservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据库迁移配置
+ *
+ * 构建镜像时的 CDS 训练运行（-Dspring.context.exit=onRefresh）只需完成容器刷新以记录加载的类，
+ * 此时没有可用的数据库，跳过迁移。AOT 构建下 spring.flyway.enabled 在构建期已固定，无法在运行时关闭。
+ */
+@Configuration
+public class FlywayConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlywayConfig.class);
+
+    @Value("${spring.context.exit:}")
+    private String contextExit;
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        boolean trainingRun = "onRefresh".equals(contextExit);
+        return flyway -> {
+            if (trainingRun) {
+                logger.info("CDS 训练运行，跳过数据库迁移");
+                return;
+            }
+            flyway.migrate();
+        };
+    }
+}
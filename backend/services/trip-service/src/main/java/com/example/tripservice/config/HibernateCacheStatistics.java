@@ -0,0 +1,71 @@
+package com.example.tripservice.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate 二级缓存统计
+ * 定期输出各缓存区域的命中率，需开启 hibernate.generate_statistics
+ */
+@Component
+public class HibernateCacheStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(HibernateCacheStatistics.class);
+
+    private final Statistics statistics;
+
+    @Value("${spring.jpa.properties.hibernate.generate_statistics:false}")
+    private boolean enabled;
+
+    public HibernateCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * 获取各缓存区域的统计
+     *
+     * @return 区域名 -> {hits, misses, puts, hitRate}
+     */
+    public Map<String, Map<String, Object>> getRegionStatistics() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            long hits = regionStats.getHitCount();
+            long misses = regionStats.getMissCount();
+            long total = hits + misses;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("puts", regionStats.getPutCount());
+            stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+            result.put(region, stats);
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${hibernate-cache.stats-log-interval-ms:300000}",
+            initialDelayString = "${hibernate-cache.stats-log-interval-ms:300000}")
+    public void logStatistics() {
+        if (!enabled) {
+            return;
+        }
+        getRegionStatistics().forEach((region, stats) -> logger.info(
+                "二级缓存区域 {}: 命中 {}, 未命中 {}, 写入 {}, 命中率 {}",
+                region, stats.get("hits"), stats.get("misses"), stats.get("puts"),
+                String.format("%.1f%%", (double) stats.get("hitRate") * 100)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.logging.LogContext;
+import com.example.tripservice.service.TokenRevocationService;
+import com.example.tripservice.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 认证过滤器
+ *
+ * 每个请求只解析一次 Bearer token，校验通过后把用户 ID 作为 principal 放入 SecurityContext，
+ * 控制器通过 @AuthenticationPrincipal Long userId 获取；用户 ID 同时放入日志上下文（MDC），请求结束时清除。
+ *
+ * 校验通过的 token 按 SHA-256 摘要缓存到过期时刻，同一 token 的后续请求不再重复验签。
+ * 校验失败的 token 不缓存，由 {@link JwtAuthenticationEntryPoint} 返回 401。
+ * 缓存命中后仍会检查吊销状态（{@link TokenRevocationService}，通常只是一次布隆过滤器查询）。
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    static final String ERROR_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".error";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, TokenRevocationService tokenRevocationService,
+            long maxCachedTokens) {
+        this.jwtUtil = jwtUtil;
+        this.tokenRevocationService = tokenRevocationService;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remainingMillis = value.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && !authHeader.isEmpty()) {
+            String token = authHeader.startsWith(BEARER_PREFIX)
+                    ? authHeader.substring(BEARER_PREFIX.length())
+                    : authHeader;
+
+            Long userId = resolveUserId(token);
+            if (userId != null) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(userId, null, Collections.emptyList());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+                MDC.put(LogContext.USER_ID, userId.toString());
+            } else {
+                request.setAttribute(ERROR_ATTRIBUTE, "无效的访问令牌");
+            }
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(LogContext.USER_ID);
+        }
+    }
+
+    /**
+     * 解析 token 中的用户 ID，优先读缓存
+     *
+     * @return 用户 ID，token 无效、已过期或已吊销时返回 null
+     */
+    public Long resolveUserId(String token) {
+        String key = JwtUtil.tokenDigest(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(key);
+        if (verified == null) {
+            try {
+                Claims claims = jwtUtil.parseClaims(token);
+                long expiresAtMillis = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0L;
+                verified = new VerifiedToken(Long.parseLong(claims.getSubject()),
+                        JwtUtil.revocationId(claims, key), expiresAtMillis);
+                if (expiresAtMillis > 0) {
+                    verifiedTokens.put(key, verified);
+                }
+            } catch (JwtException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        if (tokenRevocationService.isRevoked(verified.jti())) {
+            return null;
+        }
+        return verified.userId();
+    }
+
+    private record VerifiedToken(Long userId, String jti, long expiresAtMillis) {
+    }
+}
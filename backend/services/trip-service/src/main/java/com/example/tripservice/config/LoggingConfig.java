@@ -0,0 +1,18 @@
+package com.example.tripservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 行程接口的日志上下文
+ */
+@Configuration
+public class LoggingConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(@NonNull InterceptorRegistry registry) {
+        registry.addInterceptor(new LoggingContextInterceptor()).addPathPatterns("/api/v1/trips/**", "/api/v1/trips");
+    }
+}
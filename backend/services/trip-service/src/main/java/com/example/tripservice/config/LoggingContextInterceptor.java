@@ -0,0 +1,32 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.logging.LogContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * 把路径中的行程 ID 放入日志上下文（MDC），请求结束时清除
+ * 用户 ID 由 {@link JwtAuthenticationFilter} 放入；新建行程的 ID 由 TripService 在保存后放入。
+ */
+public class LoggingContextInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map<?, ?> pathVariables && pathVariables.get("id") instanceof String tripId) {
+            MDC.put(LogContext.TRIP_ID, tripId);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        MDC.remove(LogContext.TRIP_ID);
+    }
+}
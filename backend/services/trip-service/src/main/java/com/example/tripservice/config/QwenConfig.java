@@ -20,6 +20,10 @@ public class QwenConfig {
     @Value("${qwen.model:qwen-turbo}")
     private String model;
 
+    // 单次调用的超时，超时后取消 HTTP 请求并释放隔舱许可
+    @Value("${qwen.api.timeout-ms:120000}")
+    private long timeoutMs;
+
     @Bean
     public WebClient qwenWebClient() {
         return WebClient.builder()
@@ -40,4 +44,8 @@ public class QwenConfig {
     public String getModel() {
         return model;
     }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
 }
@@ -0,0 +1,81 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.util.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行程接口按用户限流
+ *
+ * generate：生成行程，每次调用消耗一次大模型调用与高德配额，最严格
+ * write：其他修改操作
+ * read：查询
+ *
+ * rate-limit.enabled 在注册拦截器时读取，而不是用 @ConditionalOnProperty：startup 构建的 AOT 会在构建期固定条件结果。
+ */
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    public static final String GENERATE = "generate";
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.policies.generate.limit:20}")
+    private int generateLimit;
+
+    @Value("${rate-limit.policies.generate.period-seconds:3600}")
+    private long generatePeriodSeconds;
+
+    @Value("${rate-limit.policies.generate.burst:5}")
+    private int generateBurst;
+
+    @Value("${rate-limit.policies.write.limit:120}")
+    private int writeLimit;
+
+    @Value("${rate-limit.policies.write.period-seconds:60}")
+    private long writePeriodSeconds;
+
+    @Value("${rate-limit.policies.write.burst:30}")
+    private int writeBurst;
+
+    @Value("${rate-limit.policies.read.limit:600}")
+    private int readLimit;
+
+    @Value("${rate-limit.policies.read.period-seconds:60}")
+    private long readPeriodSeconds;
+
+    @Value("${rate-limit.policies.read.burst:100}")
+    private int readBurst;
+
+    private final MeterRegistry meterRegistry;
+
+    public RateLimitConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor() {
+        return new RateLimitInterceptor(Map.of(
+                GENERATE, new RateLimiter(generateLimit, generatePeriodSeconds, TimeUnit.SECONDS, generateBurst),
+                RateLimitInterceptor.WRITE, new RateLimiter(writeLimit, writePeriodSeconds, TimeUnit.SECONDS, writeBurst),
+                RateLimitInterceptor.READ, new RateLimiter(readLimit, readPeriodSeconds, TimeUnit.SECONDS, readBurst)),
+                meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(@NonNull InterceptorRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        registry.addInterceptor(rateLimitInterceptor()).addPathPatterns("/api/v1/trips/**", "/api/v1/trips");
+    }
+}
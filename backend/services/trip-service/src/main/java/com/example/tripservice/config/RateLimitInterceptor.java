@@ -0,0 +1,104 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.util.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按用户限流
+ *
+ * 以 JWT 中的用户 ID 为键，按接口策略取令牌；响应带 RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset，
+ * 被拒绝时返回 429 与 Retry-After。未认证的请求由 Spring Security 处理，这里直接放行。
+ *
+ * RateLimit-Limit 是每个周期的配额（平均速率），RateLimit-Remaining 是当前桶内可立即使用的令牌数（不超过突发容量），
+ * 周期与突发容量写在 RateLimit-Policy 中，如 {@code 600;w=60;burst=100;comment="read"}。
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    static final String READ = "read";
+    static final String WRITE = "write";
+
+    private final Map<String, RateLimiter> limiters;
+    private final Map<String, Counter> rejectedCounters = new HashMap<>();
+    private final Map<String, String> policyHeaders = new HashMap<>();
+
+    public RateLimitInterceptor(Map<String, RateLimiter> limiters, MeterRegistry meterRegistry) {
+        this.limiters = limiters;
+        for (String policy : limiters.keySet()) {
+            rejectedCounters.put(policy, Counter.builder("rate.limit.rejected")
+                    .tag("policy", policy)
+                    .register(meterRegistry));
+            RateLimiter limiter = limiters.get(policy);
+            policyHeaders.put(policy, limiter.limit() + ";w=" + limiter.windowSeconds()
+                    + ";burst=" + limiter.capacity() + ";comment=\"" + policy + "\"");
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Long userId)) {
+            return true;
+        }
+
+        String policy = resolvePolicy(request, handler);
+        RateLimiter limiter = limiters.get(policy);
+        if (limiter == null) {
+            return true;
+        }
+
+        RateLimiter.Decision decision = limiter.tryAcquire(userId);
+        response.setHeader("RateLimit-Limit", String.valueOf(limiter.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(decision.resetNanos())));
+        response.setHeader("RateLimit-Policy", policyHeaders.get(policy));
+        if (decision.allowed()) {
+            return true;
+        }
+
+        rejectedCounters.get(policy).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(toSeconds(decision.retryAfterNanos())));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"请求过于频繁，请稍后重试\"}");
+        return false;
+    }
+
+    /**
+     * 清理补满的空闲令牌桶，避免不活跃用户长期占用内存
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        limiters.values().forEach(RateLimiter::evictIdle);
+    }
+
+    private String resolvePolicy(HttpServletRequest request, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+            if (rateLimited != null) {
+                return rateLimited.value();
+            }
+        }
+        return "GET".equals(request.getMethod()) ? READ : WRITE;
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
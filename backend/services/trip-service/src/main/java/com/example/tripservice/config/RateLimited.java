@@ -0,0 +1,17 @@
+package com.example.tripservice.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定接口使用的限流策略（见 rate-limit.policies）
+ * 未标注的接口按请求方法选择：GET 使用 read，其余使用 write
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    String value();
+}
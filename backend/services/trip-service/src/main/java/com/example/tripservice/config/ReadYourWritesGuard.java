@@ -0,0 +1,122 @@
+package com.example.tripservice.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 读己之写保护
+ *
+ * 只读副本存在复制延迟，用户刚写入的行程可能还没有同步过去。
+ * 写事务提交后读取主库当前的 WAL 位置（LSN），通过响应头 {@value #HEADER} 交给客户端，
+ * 客户端在之后的请求中原样带回。只读查询只路由到已回放到该位置的副本，没有这样的副本时走主库。
+ * 位置由客户端携带，负载均衡把后续请求转到其他实例时同样生效；判断依据是副本实际的回放进度，不是固定时间窗口。
+ *
+ * 用法：写事务中调用 {@link #recordWrite()}；只读查询开始前调用 {@link #pin()}，结束后关闭返回的 {@link Pin}。
+ * 未配置只读副本时两者都直接返回，不查询 LSN、不设置响应头。
+ */
+@Component
+public class ReadYourWritesGuard {
+
+    public static final String HEADER = "X-Write-LSN";
+
+    private static final String WRITTEN_LSN = ReadYourWritesGuard.class.getName() + ".WRITTEN_LSN";
+
+    private static final ThreadLocal<Long> REQUIRED_LSN = new ThreadLocal<>();
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    public ReadYourWritesGuard(ReplicaRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * 记录当前请求的写入；在事务中调用时在提交后读取 LSN
+     * 不在 HTTP 请求线程中调用时没有客户端可以携带位置，直接忽略
+     */
+    public void recordWrite() {
+        ServletRequestAttributes attributes = currentAttributes();
+        if (!routingDataSource.hasReplicas() || attributes == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(attributes);
+                }
+            });
+        } else {
+            publish(attributes);
+        }
+    }
+
+    /**
+     * 客户端带回的位置或本请求中写入的位置存在时，当前线程的只读查询只使用已回放到该位置的副本
+     */
+    public Pin pin() {
+        ServletRequestAttributes attributes = currentAttributes();
+        if (!routingDataSource.hasReplicas() || attributes == null) {
+            return Pin.NONE;
+        }
+        long required = Math.max(
+                ReplicaRoutingDataSource.parseLsn(attributes.getRequest().getHeader(HEADER)),
+                attributes.getRequest().getAttribute(WRITTEN_LSN) instanceof Long lsn ? lsn : -1);
+        if (required < 0) {
+            return Pin.NONE;
+        }
+        REQUIRED_LSN.set(required);
+        return REQUIRED_LSN::remove;
+    }
+
+    /**
+     * 当前线程只读查询要求副本至少回放到的位置，没有要求时为 null
+     */
+    public static Long requiredLsn() {
+        return REQUIRED_LSN.get();
+    }
+
+    /**
+     * 刷新各副本的回放位置；位置只会落后于实际值，路由判断偏保守
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.replay-poll-interval-ms:200}")
+    public void refreshReplayPositions() {
+        routingDataSource.refreshReplayPositions();
+    }
+
+    private void publish(ServletRequestAttributes attributes) {
+        long lsn = routingDataSource.currentPrimaryLsn();
+        if (lsn < 0) {
+            return;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        request.setAttribute(WRITTEN_LSN, lsn);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            response.setHeader(HEADER, ReplicaRoutingDataSource.formatLsn(lsn));
+        }
+    }
+
+    private static ServletRequestAttributes currentAttributes() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes : null;
+    }
+
+    /**
+     * 副本位置要求，用 try-with-resources 释放
+     */
+    @FunctionalInterface
+    public interface Pin extends AutoCloseable {
+
+        Pin NONE = () -> {
+        };
+
+        @Override
+        void close();
+    }
+}
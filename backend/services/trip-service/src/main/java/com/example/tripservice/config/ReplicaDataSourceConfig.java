@@ -0,0 +1,92 @@
+package com.example.tripservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本数据源配置
+ * 始终注册；datasource.replicas.urls 为空时路由数据源没有副本，所有连接都取自主库。
+ * 不用 @ConditionalOnExpression 按配置切换：startup 构建的 AOT 会在构建期固定条件结果，部署时修改副本地址不生效。
+ *
+ * 主库与每个副本各自一个 Hikari 连接池，池名分别为 primary、replica-0、replica-1…，
+ * 连接池指标以 hikaricp.connections.* 导出到 Micrometer（pool 标签为池名），同时注册 JMX MBean。
+ * Flyway 迁移固定使用主库连接池。
+ */
+@Configuration
+public class ReplicaDataSourceConfig {
+
+    @Value("${datasource.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${datasource.replicas.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${datasource.replicas.maximum-pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replicas.connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMs;
+
+    /**
+     * 主库连接池，沿用 spring.datasource.* 与 spring.datasource.hikari.* 配置
+     */
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        dataSource.setRegisterMbeans(true);
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+            DataSourceProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        List<String> urls = replicaUrls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i));
+            replica.setDriverClassName(properties.getDriverClassName());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeoutMs);
+            replica.setReadOnly(true);
+            replica.setRegisterMbeans(true);
+            // 副本池不是 bean，不会被自动绑定 hikaricp.connections.* 指标
+            meterRegistry.ifAvailable(registry ->
+                    replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+    }
+
+    /**
+     * JPA 与事务管理器使用的数据源：延迟获取连接，等只读标记设置后再路由
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.tripservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离路由数据源
+ *
+ * 只读事务（@Transactional(readOnly = true)）轮询分发到只读副本，其余请求走主库。
+ * 以下情况只读事务也回退到主库：
+ * 1. 没有配置副本
+ * 2. {@link ReadYourWritesGuard} 要求的写入位置（LSN）还没有副本回放到
+ * 3. 副本获取连接失败（副本宕机或连接池耗尽）
+ *
+ * 各副本的回放位置（pg_last_wal_replay_lsn）定期刷新后保存在内存中，路由时不额外查询；
+ * 刷新失败的副本位置记为未知，不接收有位置要求的查询。
+ *
+ * 事务的只读标记在开启事务之后才设置，必须由 LazyConnectionDataSourceProxy 包装，
+ * 推迟到执行第一条语句时再决定路由。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final AtomicLongArray replayLsn;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder pinnedToPrimary = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replayLsn = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            replayLsn.set(i, -1);
+        }
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+        Long required = ReadYourWritesGuard.requiredLsn();
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = Math.floorMod(start + i, replicas.size());
+            if (required == null || replayLsn.get(index) >= required) {
+                replicaRoutes.increment();
+                return index;
+            }
+        }
+        pinnedToPrimary.increment();
+        return PRIMARY;
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * 主库当前的 WAL 写入位置，在写事务提交后调用；查询失败返回 -1
+     */
+    public long currentPrimaryLsn() {
+        try (Connection connection = primary.getConnection()) {
+            return queryLsn(connection, "SELECT pg_current_wal_lsn()::text");
+        } catch (SQLException e) {
+            logger.warn("读取主库 WAL 位置失败: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 刷新各副本的回放位置
+     */
+    public void refreshReplayPositions() {
+        for (int i = 0; i < replicas.size(); i++) {
+            try (Connection connection = replicas.get(i).getConnection()) {
+                replayLsn.set(i, queryLsn(connection, "SELECT pg_last_wal_replay_lsn()::text"));
+            } catch (SQLException e) {
+                replayLsn.set(i, -1);
+                logger.debug("读取副本 {} 回放位置失败: {}", i, e.getMessage());
+            }
+        }
+    }
+
+    private static long queryLsn(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? parseLsn(resultSet.getString(1)) : -1;
+        }
+    }
+
+    /**
+     * 解析 PostgreSQL 的 LSN 文本（如 16/B374D848），格式错误或为空返回 -1
+     */
+    static long parseLsn(String text) {
+        if (text == null) {
+            return -1;
+        }
+        int slash = text.indexOf('/');
+        if (slash <= 0 || slash == text.length() - 1 || slash > 8 || text.length() - slash - 1 > 8) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(text, 0, slash, 16) << 32 | Long.parseLong(text, slash + 1, text.length(), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String formatLsn(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                throw e;
+            }
+            // 副本不可用时只读查询回退到主库
+            replicaFailures.increment();
+            logger.warn("只读副本获取连接失败，回退到主库: {}", e.getMessage());
+            return getResolvedDefaultDataSource().getConnection();
+        }
+    }
+
+    /**
+     * 路由统计
+     *
+     * @return primary / replica / pinnedToPrimary / replicaFailures 的累计次数
+     */
+    public Map<String, Long> getRoutingStatistics() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("primary", primaryRoutes.sum());
+        stats.put("replica", replicaRoutes.sum());
+        stats.put("pinnedToPrimary", pinnedToPrimary.sum());
+        stats.put("replicaFailures", replicaFailures.sum());
+        return stats;
+    }
+
+    /**
+     * 关闭副本连接池；主库连接池作为独立 bean 由 Spring 关闭
+     */
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
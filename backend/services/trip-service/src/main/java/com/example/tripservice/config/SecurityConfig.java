@@ -1,5 +1,9 @@
 package com.example.tripservice.config;
 
+import com.example.tripservice.service.TokenRevocationService;
+import com.example.tripservice.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,27 +12,59 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    @Value("${jwt.claims-cache.max-entries:10000}")
+    private long maxCachedTokens;
+
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    // 未单独配置时管理端点与业务接口共用端口
+    @Value("${management.server.port:${server.port:8080}}")
+    private int managementPort;
+
+    /**
+     * 调高 strength 后，已有用户在下次登录时自动升级哈希（见 PasswordHashingService）
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtUtil jwtUtil,
+            TokenRevocationService tokenRevocationService, ObjectMapper objectMapper) throws Exception {
+        // 过滤器不注册为 bean，避免被 Spring Boot 重复加入 Servlet 过滤器链
+        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtUtil, tokenRevocationService, maxCachedTokens);
+
         http
             .csrf(csrf -> csrf.disable())
-            .sessionManagement(session -> 
+            .sessionManagement(session ->
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/v1/auth/**", "/api/v1/health", "/api/v1/trips/**", "/api/v1/config/**").permitAll()
+                // 独立的管理端口不对外发布，只有集群内的 Prometheus 与探针能访问
+                .requestMatchers(request -> managementPort != serverPort && request.getLocalPort() == managementPort)
+                    .permitAll()
+                // 管理接口自行校验 X-Admin-Token
+                .requestMatchers("/api/v1/auth/**", "/api/v1/health", "/api/v1/config/**", "/error",
+                    "/api/v1/admin/**").permitAll()
+                // 业务端口上只开放健康检查与应用信息，指标会泄露接口路径、用户量与内部依赖
+                .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/info").permitAll()
+                .requestMatchers("/actuator/**").denyAll()
                 .anyRequest().authenticated()
-            );
-        
+            )
+            .exceptionHandling(exceptions ->
+                exceptions.authenticationEntryPoint(new JwtAuthenticationEntryPoint(objectMapper)))
+            .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+
         return http.build();
     }
 }
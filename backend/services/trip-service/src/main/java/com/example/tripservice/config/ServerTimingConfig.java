@@ -0,0 +1,34 @@
+package com.example.tripservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 行程接口的 Server-Timing 响应头与采样耗时日志
+ *
+ * 过滤器始终注册，server-timing.enabled 为 false 时不加入过滤器链；
+ * 不用 @ConditionalOnProperty，startup 构建的 AOT 会在构建期固定条件结果。
+ */
+@Configuration
+public class ServerTimingConfig {
+
+    @Value("${server-timing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${server-timing.log-sample-rate:0.01}")
+    private double logSampleRate;
+
+    @Bean
+    public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter() {
+        FilterRegistrationBean<ServerTimingFilter> registration =
+                new FilterRegistrationBean<>(new ServerTimingFilter(logSampleRate));
+        registration.addUrlPatterns("/api/v1/trips", "/api/v1/trips/*");
+        // 最先执行，total 包含认证、限流等其他过滤器的耗时
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.util.RequestTimings;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 请求耗时分解
+ *
+ * 在请求线程上激活 {@link RequestTimings}，由 {@link ServerTimingResponseAdvice} 在写出响应体前
+ * 写入 Server-Timing 响应头（浏览器开发者工具的 Timing 面板可直接查看）；
+ * 按采样率为请求输出一行 key=value 结构化日志，采样率为 0 时不产生任何日志开销。
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private final double logSampleRate;
+
+    public ServerTimingFilter(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.begin();
+        try {
+            // 允许跨域页面通过 PerformanceResourceTiming.serverTiming 读取
+            response.setHeader("Timing-Allow-Origin", "*");
+            filterChain.doFilter(request, response);
+        } finally {
+            if (logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+                logger.info("method={} path={} status={} {}", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), timings.toLogFields());
+            }
+            timings.end();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tripservice.config;
+
+import com.example.tripservice.util.RequestTimings;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 在响应体写出（响应提交）前写入 Server-Timing 响应头
+ * 此时服务层事务已提交，db 包含提交时的 flush 耗时。
+ */
+@ControllerAdvice
+public class ServerTimingResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(@NonNull MethodParameter returnType,
+            @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, @NonNull MethodParameter returnType,
+            @NonNull MediaType selectedContentType,
+            @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            @NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            response.getHeaders().set("Server-Timing", timings.toServerTiming());
+        }
+        return body;
+    }
+}
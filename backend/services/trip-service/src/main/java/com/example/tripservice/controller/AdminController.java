@@ -0,0 +1,67 @@
+package com.example.tripservice.controller;
+
+import com.example.tripservice.service.FlightRecordingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * 运维管理接口
+ * 不使用用户 JWT，而是校验 X-Admin-Token 请求头；未配置 admin.token 时接口不可用。
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private FlightRecordingService flightRecordingService;
+
+    @Value("${admin.token:}")
+    private String adminToken;
+
+    /**
+     * 导出最近 N 分钟的 JFR 录制，用 JDK Mission Control 打开
+     */
+    @GetMapping("/jfr")
+    public ResponseEntity<?> dumpFlightRecording(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(defaultValue = "10") int minutes) throws IOException {
+        if (adminToken == null || adminToken.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "管理接口未启用"));
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "无权访问管理接口"));
+        }
+        if (!flightRecordingService.isRunning()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", "JFR 持续录制未开启"));
+        }
+
+        InputStream recording = flightRecordingService.openStream(Duration.ofMinutes(Math.max(1, minutes)));
+        String fileName = "trip-service-" + LocalDateTime.now().format(FILE_TIME) + ".jfr";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new InputStreamResource(recording));
+    }
+}
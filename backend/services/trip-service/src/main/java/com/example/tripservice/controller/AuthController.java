@@ -2,6 +2,7 @@ package com.example.tripservice.controller;
 
 import com.example.tripservice.dto.*;
 import com.example.tripservice.service.AuthService;
+import com.example.tripservice.service.PasswordHashingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +21,9 @@ public class AuthController {
             AuthResponse response = authService.register(request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
+            if (PasswordHashingService.BUSY_MESSAGE.equals(e.getMessage())) {
+                return tooManyRequests();
+            }
             ErrorResponse error = new ErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST.value());
             return ResponseEntity.badRequest().body(error);
         }
@@ -31,8 +35,35 @@ public class AuthController {
             AuthResponse response = authService.login(request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
+            if (PasswordHashingService.BUSY_MESSAGE.equals(e.getMessage())) {
+                return tooManyRequests();
+            }
             ErrorResponse error = new ErrorResponse(e.getMessage(), HttpStatus.UNAUTHORIZED.value());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
     }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader == null || authHeader.isEmpty()) {
+            ErrorResponse error = new ErrorResponse("缺少访问令牌", HttpStatus.UNAUTHORIZED.value());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        try {
+            authService.logout(authHeader.replace("Bearer ", ""));
+            return ResponseEntity.ok().build();
+        } catch (RuntimeException e) {
+            ErrorResponse error = new ErrorResponse(e.getMessage(), HttpStatus.UNAUTHORIZED.value());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+    }
+
+    // 密码哈希线程池已满：快速失败，客户端稍后重试
+    private ResponseEntity<?> tooManyRequests() {
+        ErrorResponse error = new ErrorResponse(PasswordHashingService.BUSY_MESSAGE,
+                HttpStatus.TOO_MANY_REQUESTS.value());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", "1")
+                .body(error);
+    }
 }
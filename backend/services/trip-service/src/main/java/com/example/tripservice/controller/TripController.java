@@ -1,14 +1,18 @@
 package com.example.tripservice.controller;
 
+import com.example.tripservice.config.RateLimitConfig;
+import com.example.tripservice.config.RateLimited;
+import com.example.tripservice.dto.BatchDeleteRequest;
 import com.example.tripservice.dto.CreateTripRequest;
 import com.example.tripservice.dto.TripResponse;
+import com.example.tripservice.service.ItineraryRegenerationService;
 import com.example.tripservice.service.TripService;
-import com.example.tripservice.util.JwtUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -26,7 +30,7 @@ public class TripController {
     private TripService tripService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private ItineraryRegenerationService itineraryRegenerationService;
 
     /**
      * 健康检查
@@ -40,31 +44,15 @@ public class TripController {
      * 创建并生成行程
      */
     @PostMapping("/api/v1/trips")
+    @RateLimited(RateLimitConfig.GENERATE)
     public ResponseEntity<?> createTrip(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @RequestBody CreateTripRequest request) {
         try {
+            // 用户 ID 已在日志上下文中
             logger.info("收到创建行程请求: destination={}, startDate={}, endDate={}",
                     request.getDestination(), request.getStartDate(), request.getEndDate());
 
-            // 检查 Authorization header
-            if (authHeader == null || authHeader.isEmpty()) {
-                logger.warn("缺少 Authorization header");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            // 验证 JWT 并获取用户 ID
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                logger.warn("无效的 JWT token");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-            logger.info("用户 {} 创建行程", userId);
-
             // 调用服务生成行程
             TripResponse response = tripService.createAndGenerateTrip(userId, request);
 
@@ -82,22 +70,8 @@ public class TripController {
      * 获取用户的所有行程
      */
     @GetMapping("/api/v1/trips")
-    public ResponseEntity<?> getUserTrips(
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> getUserTrips(@AuthenticationPrincipal Long userId) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             List<TripResponse> trips = tripService.getUserTrips(userId);
 
             return ResponseEntity.ok(trips);
@@ -114,22 +88,9 @@ public class TripController {
      */
     @GetMapping("/api/v1/trips/{id}")
     public ResponseEntity<?> getTripDetail(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             TripResponse trip = tripService.getTripDetail(id, userId);
 
             return ResponseEntity.ok(trip);
@@ -153,22 +114,9 @@ public class TripController {
      */
     @DeleteMapping("/api/v1/trips/{id}")
     public ResponseEntity<?> deleteTrip(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             tripService.deleteTrip(id, userId);
 
             return ResponseEntity.ok().build();
@@ -187,28 +135,35 @@ public class TripController {
         }
     }
 
+    /**
+     * 批量删除行程
+     * 请求体：{"ids": [1, 2, 3]}，只删除属于当前用户的行程
+     */
+    @PostMapping("/api/v1/trips/batch-delete")
+    public ResponseEntity<?> deleteTrips(
+            @AuthenticationPrincipal Long userId,
+            @RequestBody BatchDeleteRequest request) {
+        try {
+            int deleted = tripService.deleteTrips(request.getIds(), userId);
+
+            return ResponseEntity.ok(Map.of("deleted", deleted));
+
+        } catch (RuntimeException e) {
+            logger.error("批量删除行程失败", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "批量删除行程失败：" + e.getMessage()));
+        }
+    }
+
     /**
      * 更新行程信息
      */
     @PutMapping("/api/v1/trips/{id}")
     public ResponseEntity<?> updateTrip(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id,
             @RequestBody TripResponse updateData) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             TripResponse updated = tripService.updateTrip(id, userId, updateData);
 
             return ResponseEntity.ok(updated);
@@ -232,24 +187,11 @@ public class TripController {
      */
     @PutMapping("/api/v1/trips/{id}/itinerary/{itemIndex}")
     public ResponseEntity<?> updateItineraryItem(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id,
             @PathVariable int itemIndex,
             @RequestBody Map<String, Object> updateData) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             TripResponse updated = tripService.updateItineraryItem(id, userId, itemIndex, updateData);
 
             return ResponseEntity.ok(updated);
@@ -273,23 +215,10 @@ public class TripController {
      */
     @PostMapping("/api/v1/trips/{id}/itinerary")
     public ResponseEntity<?> addItineraryItem(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id,
             @RequestBody Map<String, Object> itemData) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
-            }
-
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
-            }
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-
             TripResponse updated = tripService.addItineraryItem(id, userId, itemData);
 
             return ResponseEntity.ok(updated);
@@ -313,29 +242,103 @@ public class TripController {
      */
     @DeleteMapping("/api/v1/trips/{id}/itinerary/{itemIndex}")
     public ResponseEntity<?> deleteItineraryItem(
-            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @AuthenticationPrincipal Long userId,
             @PathVariable Long id,
             @PathVariable int itemIndex) {
         try {
-            if (authHeader == null || authHeader.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "缺少访问令牌"));
+            TripResponse updated = tripService.deleteItineraryItem(id, userId, itemIndex);
+
+            return ResponseEntity.ok(updated);
+
+        } catch (RuntimeException e) {
+            logger.error("删除行程项失败", e);
+            if (e.getMessage().contains("不存在") || e.getMessage().contains("索引")) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", e.getMessage()));
+            } else if (e.getMessage().contains("无权")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", e.getMessage()));
             }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "删除行程项失败：" + e.getMessage()));
+        }
+    }
 
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "无效的访问令牌"));
+    /**
+     * 优化某一天的行程路线顺序
+     */
+    @PostMapping("/api/v1/trips/{id}/days/{dayIndex}/optimize")
+    public ResponseEntity<?> optimizeDay(
+            @AuthenticationPrincipal Long userId,
+            @PathVariable Long id,
+            @PathVariable int dayIndex) {
+        try {
+            TripResponse updated = tripService.optimizeDay(id, userId, dayIndex);
+
+            return ResponseEntity.ok(updated);
+
+        } catch (RuntimeException e) {
+            logger.error("优化行程路线失败", e);
+            if (e.getMessage().contains("不存在")) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", e.getMessage()));
+            } else if (e.getMessage().contains("无权")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", e.getMessage()));
             }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "优化行程路线失败：" + e.getMessage()));
+        }
+    }
 
-            Long userId = jwtUtil.getUserIdFromToken(token);
+    /**
+     * 重新生成某一天，请求体可带 {"hint": "..."} 说明对新方案的要求
+     */
+    @PostMapping("/api/v1/trips/{id}/days/{dayIndex}/regenerate")
+    @RateLimited(RateLimitConfig.GENERATE)
+    public ResponseEntity<?> regenerateDay(
+            @AuthenticationPrincipal Long userId,
+            @PathVariable Long id,
+            @PathVariable int dayIndex,
+            @RequestBody(required = false) Map<String, String> body) {
+        try {
+            TripResponse updated = itineraryRegenerationService.regenerateDay(id, userId, dayIndex,
+                    body != null ? body.get("hint") : null);
 
-            TripResponse updated = tripService.deleteItineraryItem(id, userId, itemIndex);
+            return ResponseEntity.ok(updated);
+
+        } catch (RuntimeException e) {
+            logger.error("重新生成行程失败", e);
+            if (e.getMessage().contains("不存在")) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", e.getMessage()));
+            } else if (e.getMessage().contains("无权")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", e.getMessage()));
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "重新生成行程失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 为行程项换一个备选，请求体可带 {"hint": "..."}
+     */
+    @PostMapping("/api/v1/trips/{id}/itinerary/{itemIndex}/alternative")
+    @RateLimited(RateLimitConfig.GENERATE)
+    public ResponseEntity<?> suggestAlternative(
+            @AuthenticationPrincipal Long userId,
+            @PathVariable Long id,
+            @PathVariable int itemIndex,
+            @RequestBody(required = false) Map<String, String> body) {
+        try {
+            TripResponse updated = itineraryRegenerationService.suggestAlternative(id, userId, itemIndex,
+                    body != null ? body.get("hint") : null);
 
             return ResponseEntity.ok(updated);
 
         } catch (RuntimeException e) {
-            logger.error("删除行程项失败", e);
+            logger.error("替换行程项失败", e);
             if (e.getMessage().contains("不存在") || e.getMessage().contains("索引")) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(Map.of("error", e.getMessage()));
@@ -344,7 +347,33 @@ public class TripController {
                         .body(Map.of("error", e.getMessage()));
             }
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "删除行程项失败：" + e.getMessage()));
+                    .body(Map.of("error", "替换行程项失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 优化整个行程的路线顺序
+     */
+    @PostMapping("/api/v1/trips/{id}/optimize")
+    public ResponseEntity<?> optimizeTrip(
+            @AuthenticationPrincipal Long userId,
+            @PathVariable Long id) {
+        try {
+            TripResponse updated = tripService.optimizeTrip(id, userId);
+
+            return ResponseEntity.ok(updated);
+
+        } catch (RuntimeException e) {
+            logger.error("优化行程路线失败", e);
+            if (e.getMessage().contains("不存在")) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", e.getMessage()));
+            } else if (e.getMessage().contains("无权")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", e.getMessage()));
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "优化行程路线失败：" + e.getMessage()));
         }
     }
 }
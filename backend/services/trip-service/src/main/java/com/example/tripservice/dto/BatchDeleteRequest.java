@@ -0,0 +1,16 @@
+package com.example.tripservice.dto;
+
+import java.util.List;
+
+public class BatchDeleteRequest {
+    private List<Long> ids;
+    
+    // Getters and Setters
+    public List<Long> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+}
@@ -15,6 +15,7 @@ public class ItineraryItemDto {
     private BigDecimal estimatedCost;
     private String notes;
     private Coordinates coordinates;
+    private TravelLeg travelFromPrevious;
     
     // 坐标内部类
     public static class Coordinates {
@@ -45,6 +46,46 @@ public class ItineraryItemDto {
         }
     }
     
+    // 与同一天上一个行程项之间的交通估算
+    public static class TravelLeg {
+        private Integer durationMinutes;
+        private Integer distanceMeters;
+        private String source; // local, amap
+        private Boolean feasible; // 上一项结束时间 + 交通耗时是否早于本项开始时间
+        
+        public Integer getDurationMinutes() {
+            return durationMinutes;
+        }
+        
+        public void setDurationMinutes(Integer durationMinutes) {
+            this.durationMinutes = durationMinutes;
+        }
+        
+        public Integer getDistanceMeters() {
+            return distanceMeters;
+        }
+        
+        public void setDistanceMeters(Integer distanceMeters) {
+            this.distanceMeters = distanceMeters;
+        }
+        
+        public String getSource() {
+            return source;
+        }
+        
+        public void setSource(String source) {
+            this.source = source;
+        }
+        
+        public Boolean getFeasible() {
+            return feasible;
+        }
+        
+        public void setFeasible(Boolean feasible) {
+            this.feasible = feasible;
+        }
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -133,4 +174,12 @@ public class ItineraryItemDto {
     public void setCoordinates(Coordinates coordinates) {
         this.coordinates = coordinates;
     }
+    
+    public TravelLeg getTravelFromPrevious() {
+        return travelFromPrevious;
+    }
+    
+    public void setTravelFromPrevious(TravelLeg travelFromPrevious) {
+        this.travelFromPrevious = travelFromPrevious;
+    }
 }
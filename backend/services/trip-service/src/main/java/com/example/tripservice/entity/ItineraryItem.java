@@ -9,7 +9,8 @@ import java.time.LocalTime;
 public class ItineraryItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "itinerary_items_seq")
+    @SequenceGenerator(name = "itinerary_items_seq", sequenceName = "itinerary_items_seq", allocationSize = 50) // pooled 优化器，支持批量插入
     private Long id;
     
     @Column(nullable = false)
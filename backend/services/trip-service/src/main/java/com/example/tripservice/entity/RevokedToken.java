@@ -0,0 +1,65 @@
+package com.example.tripservice.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 已吊销的访问令牌
+ * 以 jti 为主键；令牌过期后记录不再需要，由后台定期清理
+ */
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+    @Id
+    @Column(length = 64)
+    private String jti;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (revokedAt == null) {
+            revokedAt = LocalDateTime.now();
+        }
+    }
+
+    // Getters and Setters
+    public String getJti() {
+        return jti;
+    }
+
+    public void setJti(String jti) {
+        this.jti = jti;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(LocalDateTime revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
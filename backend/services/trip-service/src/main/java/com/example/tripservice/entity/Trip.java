@@ -1,16 +1,21 @@
 package com.example.tripservice.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "trips")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "trips")
 public class Trip {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trips_seq")
+    @SequenceGenerator(name = "trips_seq", sequenceName = "trips_seq", allocationSize = 50) // pooled 优化器，支持批量插入
     private Long id;
     
     @Column(nullable = false)
@@ -47,6 +52,8 @@ public class Trip {
     
     private LocalDateTime updatedAt;
     
+    private LocalDateTime deletedAt; // 软删除时间，非空表示等待后台清理
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -165,4 +172,12 @@ public class Trip {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+    
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
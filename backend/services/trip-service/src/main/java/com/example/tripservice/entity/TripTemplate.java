@@ -0,0 +1,91 @@
+package com.example.tripservice.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 行程模板
+ * 以归一化行程形态（shape）的 SHA-256 摘要为主键，plan 为按人均费用保存的逐日行程 JSON
+ */
+@Entity
+@Table(name = "trip_templates")
+public class TripTemplate {
+    @Id
+    @Column(name = "template_key", length = 64)
+    private String templateKey;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String shape;
+
+    @Column(nullable = false)
+    private String destination;
+
+    @Column(nullable = false)
+    private Integer days;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String plan;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Getters and Setters
+    public String getTemplateKey() {
+        return templateKey;
+    }
+
+    public void setTemplateKey(String templateKey) {
+        this.templateKey = templateKey;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public void setShape(String shape) {
+        this.shape = shape;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Integer getDays() {
+        return days;
+    }
+
+    public void setDays(Integer days) {
+        this.days = days;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
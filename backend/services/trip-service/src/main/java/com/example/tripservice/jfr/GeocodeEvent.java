@@ -0,0 +1,32 @@
+package com.example.tripservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 一次高德地理编码调用，区分限流锁等待与 HTTP 耗时
+ */
+@Name("com.example.tripservice.Geocode")
+@Label("Geocode")
+@Description("高德地理编码调用，持续时间 = 限流等待 + HTTP 请求 + 解析")
+@Category({ "Trip Service", "External" })
+public class GeocodeEvent extends Event {
+
+    @Label("Address")
+    public String address;
+
+    @Label("Rate Limit Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long rateLimitWait;
+
+    @Label("HTTP Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long httpTime;
+
+    @Label("Found")
+    public boolean found;
+}
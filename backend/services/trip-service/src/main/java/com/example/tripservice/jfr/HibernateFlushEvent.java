@@ -0,0 +1,23 @@
+package com.example.tripservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次 Hibernate Session flush（含批量 INSERT/UPDATE 的执行）
+ */
+@Name("com.example.tripservice.HibernateFlush")
+@Label("Hibernate Flush")
+@Description("Hibernate Session flush，包括事务提交前的自动 flush")
+@Category({ "Trip Service", "Persistence" })
+public class HibernateFlushEvent extends Event {
+
+    @Label("Entities")
+    public int entityCount;
+
+    @Label("Collections")
+    public int collectionCount;
+}
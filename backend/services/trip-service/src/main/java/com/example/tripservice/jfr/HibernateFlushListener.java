@@ -0,0 +1,40 @@
+package com.example.tripservice.jfr;
+
+import com.example.tripservice.util.RequestTimings;
+import org.hibernate.SessionEventListener;
+
+/**
+ * 把 Hibernate flush 记录为 JFR 事件，并计入请求级统计的 db 阶段
+ *
+ * 通过 hibernate.session.events.auto 注册，Hibernate 为每个 Session 创建一个实例，无需考虑并发。
+ */
+public class HibernateFlushListener implements SessionEventListener {
+
+    private HibernateFlushEvent current;
+    private long timingStart;
+
+    @Override
+    public void flushStart() {
+        timingStart = RequestTimings.start(RequestTimings.Stage.DB);
+        HibernateFlushEvent event = new HibernateFlushEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            current = event;
+        }
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        RequestTimings.stop(RequestTimings.Stage.DB, timingStart);
+        HibernateFlushEvent event = current;
+        current = null;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.entityCount = numberOfEntities;
+                event.collectionCount = numberOfCollections;
+                event.commit();
+            }
+        }
+    }
+}
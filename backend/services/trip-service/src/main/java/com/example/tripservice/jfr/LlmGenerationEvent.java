@@ -0,0 +1,35 @@
+package com.example.tripservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次通义千问生成调用
+ */
+@Name("com.example.tripservice.LlmGeneration")
+@Label("LLM Generation")
+@Description("通义千问生成行程的一次调用")
+@Category({ "Trip Service", "External" })
+public class LlmGenerationEvent extends Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Prompt Length")
+    @Description("字符数")
+    public int promptLength;
+
+    @Label("Output Length")
+    @Description("字符数")
+    public int outputLength;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Cache")
+    @Description("响应缓存结果：memory、database、coalesced 或 miss")
+    public String cache;
+}
@@ -0,0 +1,26 @@
+package com.example.tripservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次 Spring Data repository 方法调用
+ */
+@Name("com.example.tripservice.RepositoryCall")
+@Label("Repository Call")
+@Description("Spring Data repository 方法调用，不含事务提交时的 flush")
+@Category({ "Trip Service", "Persistence" })
+public class RepositoryCallEvent extends Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Success")
+    public boolean success;
+}
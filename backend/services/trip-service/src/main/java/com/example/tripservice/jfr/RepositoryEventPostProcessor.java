@@ -0,0 +1,48 @@
+package com.example.tripservice.jfr;
+
+import com.example.tripservice.util.RequestTimings;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * 为所有 Spring Data repository 代理追加拦截器，每次方法调用记录一个 {@link RepositoryCallEvent}，
+ * 并把耗时计入请求级统计的 db 阶段（{@link RequestTimings}）
+ */
+@Component
+public class RepositoryEventPostProcessor implements BeanPostProcessor {
+
+    private static MethodInterceptor interceptor(String repository) {
+        return invocation -> {
+            long timingStart = RequestTimings.start(RequestTimings.Stage.DB);
+            RepositoryCallEvent event = new RepositoryCallEvent();
+            event.begin();
+            boolean success = false;
+            try {
+                Object result = invocation.proceed();
+                success = true;
+                return result;
+            } finally {
+                RequestTimings.stop(RequestTimings.Stage.DB, timingStart);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.repository = repository;
+                    event.method = invocation.getMethod().getName();
+                    event.success = success;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // Spring Data 的 repository 均由 ProxyFactory 创建，直接追加到拦截器链最前面
+        if (bean instanceof Repository<?, ?> && bean instanceof Advised advised) {
+            advised.addAdvice(0, interceptor(beanName));
+        }
+        return bean;
+    }
+}
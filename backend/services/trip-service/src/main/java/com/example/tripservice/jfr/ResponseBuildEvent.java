@@ -0,0 +1,26 @@
+package com.example.tripservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次行程响应构建
+ */
+@Name("com.example.tripservice.ResponseBuild")
+@Label("Response Build")
+@Description("由实体构建 TripResponse，详情响应包含坐标解析与交通耗时估算")
+@Category({ "Trip Service", "Web" })
+public class ResponseBuildEvent extends Event {
+
+    @Label("Trip Id")
+    public long tripId;
+
+    @Label("Items")
+    public int itemCount;
+
+    @Label("Detailed")
+    public boolean detailed;
+}
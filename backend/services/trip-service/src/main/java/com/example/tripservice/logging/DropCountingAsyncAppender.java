@@ -0,0 +1,40 @@
+package com.example.tripservice.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计丢弃条数的异步追加器
+ *
+ * 请求线程只把事件放入有界队列，由后台线程写出。配置 neverBlock=true 时队列满直接丢弃，不阻塞请求线程；
+ * 队列剩余容量低于 discardingThreshold 时 AsyncAppender 会先丢弃 INFO 及以下级别，保留 WARN / ERROR。
+ * 两种丢弃都计入 {@link #getDropped()}。队列满的判断与入队之间没有加锁，并发极高时计数可能略少。
+ */
+public class DropCountingAsyncAppender extends AsyncAppender {
+
+    private final LongAdder dropped = new LongAdder();
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isNeverBlock() && getRemainingCapacity() == 0) {
+            dropped.increment();
+            return;
+        }
+        super.append(event);
+    }
+
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        boolean discardable = super.isDiscardable(event);
+        if (discardable) {
+            dropped.increment();
+        }
+        return discardable;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.tripservice.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * 单行 JSON 日志格式
+ *
+ * 输出 @timestamp、level、service、thread、logger、message，MDC 中的字段（userId、tripId 等）作为顶层字段，
+ * 异常堆栈放在 exception 字段。由异步追加器的后台线程调用，不占用请求线程。
+ */
+public class JsonLayout extends LayoutBase<ILoggingEvent> {
+
+    private String service;
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"@timestamp\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(event.getTimeStamp()), json);
+        json.append("\",\"level\":\"").append(event.getLevel().toString()).append('"');
+        if (service != null && !service.isEmpty()) {
+            field(json, "service", service);
+        }
+        field(json, "thread", event.getThreadName());
+        field(json, "logger", event.getLoggerName());
+        field(json, "message", event.getFormattedMessage());
+
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null) {
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                field(json, entry.getKey(), entry.getValue());
+            }
+        }
+
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            field(json, "exception", ThrowableProxyUtil.asString(throwable));
+        }
+        json.append('}').append(CoreConstants.LINE_SEPARATOR);
+        return json.toString();
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        json.append(",\"");
+        escape(json, name);
+        json.append("\":");
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        escape(json, value);
+        json.append('"');
+    }
+
+    private static void escape(StringBuilder json, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
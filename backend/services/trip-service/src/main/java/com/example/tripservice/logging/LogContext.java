@@ -0,0 +1,13 @@
+package com.example.tripservice.logging;
+
+/**
+ * 日志上下文（MDC）字段名，JSON 日志中作为顶层字段输出
+ */
+public final class LogContext {
+
+    public static final String USER_ID = "userId";
+    public static final String TRIP_ID = "tripId";
+
+    private LogContext() {
+    }
+}
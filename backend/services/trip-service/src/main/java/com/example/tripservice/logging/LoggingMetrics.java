@@ -0,0 +1,48 @@
+package com.example.tripservice.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+
+/**
+ * 日志管道指标（logback-spring.xml 中的异步追加器与采样过滤器）
+ *
+ * logging.async.dropped（FunctionCounter）：队列满或低于丢弃阈值而丢掉的日志条数，持续增长说明日志量超出输出能力
+ * logging.async.queue.remaining（Gauge）：异步队列剩余容量
+ * logging.sampled.out（FunctionCounter）：被按 logger 采样丢弃的日志条数
+ */
+@Component
+public class LoggingMetrics {
+
+    public LoggingMetrics(MeterRegistry meterRegistry) {
+        if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+            return;
+        }
+        Iterator<Appender<ILoggingEvent>> appenders =
+                context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+        while (appenders.hasNext()) {
+            if (appenders.next() instanceof DropCountingAsyncAppender async) {
+                FunctionCounter.builder("logging.async.dropped", async, DropCountingAsyncAppender::getDropped)
+                        .tag("appender", async.getName())
+                        .register(meterRegistry);
+                Gauge.builder("logging.async.queue.remaining", async, DropCountingAsyncAppender::getRemainingCapacity)
+                        .tag("appender", async.getName())
+                        .register(meterRegistry);
+            }
+        }
+        for (TurboFilter filter : context.getTurboFilterList()) {
+            if (filter instanceof SamplingTurboFilter sampling) {
+                FunctionCounter.builder("logging.sampled.out", sampling, SamplingTurboFilter::getSampledOut)
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
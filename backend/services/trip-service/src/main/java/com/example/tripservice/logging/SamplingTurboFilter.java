@@ -0,0 +1,99 @@
+package com.example.tripservice.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 logger 采样高频日志
+ *
+ * 规则格式为逗号分隔的 {@code logger=比例}，logger 按名称前缀匹配（最长前缀优先），比例 0~1，
+ * 例如 {@code com.example.tripservice.service.AmapGeocodingService=0.1}。
+ * ERROR 级别始终保留，其他级别按比例随机保留。
+ *
+ * TurboFilter 在创建日志事件、格式化消息之前执行，被采样掉的日志几乎没有开销。
+ * 每次日志调用都会经过这里，未配置规则的 logger 只有一次 Map 查询。
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private static final float KEEP_ALL = 1.0f;
+
+    private final Map<String, Float> rules = new ConcurrentHashMap<>();
+    private final Map<String, Float> resolved = new ConcurrentHashMap<>();
+    private final LongAdder sampledOut = new LongAdder();
+
+    /**
+     * @param rules 逗号分隔的 logger=比例
+     */
+    public void setRules(String rules) {
+        this.rules.clear();
+        this.resolved.clear();
+        if (rules == null) {
+            return;
+        }
+        for (String rule : rules.split(",")) {
+            int separator = rule.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            String logger = rule.substring(0, separator).trim();
+            try {
+                float rate = Float.parseFloat(rule.substring(separator + 1).trim());
+                this.rules.put(logger, Math.max(0f, Math.min(KEEP_ALL, rate)));
+            } catch (NumberFormatException e) {
+                addWarn("忽略无效的采样规则: " + rule);
+            }
+        }
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+            Throwable t) {
+        // format 为 null 表示 isXxxEnabled() 判断，不参与采样
+        if (format == null || level.isGreaterOrEqual(Level.ERROR) || rules.isEmpty()) {
+            return FilterReply.NEUTRAL;
+        }
+        float rate = resolved.computeIfAbsent(logger.getName(), this::resolve);
+        if (rate >= KEEP_ALL) {
+            return FilterReply.NEUTRAL;
+        }
+        // 只统计本来会输出的日志
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        if (ThreadLocalRandom.current().nextFloat() < rate) {
+            return FilterReply.NEUTRAL;
+        }
+        sampledOut.increment();
+        return FilterReply.DENY;
+    }
+
+    private float resolve(String loggerName) {
+        String name = loggerName;
+        while (true) {
+            Float rate = rules.get(name);
+            if (rate != null) {
+                return rate;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return KEEP_ALL;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+
+    /**
+     * 被采样丢弃的日志条数
+     */
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+}
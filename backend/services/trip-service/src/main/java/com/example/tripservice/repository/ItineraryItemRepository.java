@@ -2,12 +2,33 @@ package com.example.tripservice.repository;
 
 import com.example.tripservice.entity.ItineraryItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ItineraryItemRepository extends JpaRepository<ItineraryItem, Long> {
     List<ItineraryItem> findByTripIdOrderByDayIndexAscStartTimeAsc(Long tripId);
-    void deleteByTripId(Long tripId);
+
+    // 列表页按行程汇总费用：[tripId, SUM(estimatedCost)]
+    @Query("SELECT i.tripId, SUM(i.estimatedCost) FROM ItineraryItem i WHERE i.tripId IN :tripIds GROUP BY i.tripId")
+    List<Object[]> sumEstimatedCostByTripIds(@Param("tripIds") Collection<Long> tripIds);
+
+    // 集合删除：单条 DELETE 语句，不加载实体
+    @Modifying
+    @Query("DELETE FROM ItineraryItem i WHERE i.tripId = :tripId")
+    int deleteByTripId(@Param("tripId") Long tripId);
+
+    // 重新生成某一天时只替换这一天的行程项
+    @Modifying
+    @Query("DELETE FROM ItineraryItem i WHERE i.tripId = :tripId AND i.dayIndex = :dayIndex")
+    int deleteByTripIdAndDayIndex(@Param("tripId") Long tripId, @Param("dayIndex") int dayIndex);
+
+    @Modifying
+    @Query("DELETE FROM ItineraryItem i WHERE i.tripId IN :tripIds")
+    int deleteByTripIdIn(@Param("tripIds") Collection<Long> tripIds);
 }
@@ -0,0 +1,47 @@
+package com.example.tripservice.repository;
+
+import com.example.tripservice.entity.LlmResponseCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LlmResponseCacheRepository extends JpaRepository<LlmResponseCacheEntry, String> {
+
+    @Query("SELECT e.response FROM LlmResponseCacheEntry e WHERE e.cacheKey = :key AND e.expiresAt > :now")
+    Optional<String> findResponse(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    /**
+     * 覆盖同键的过期记录（尚未被定时任务清理），未过期的记录不变
+     *
+     * @return 更新的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE LlmResponseCacheEntry e SET e.model = :model, e.response = :response, e.createdAt = :now, "
+            + "e.expiresAt = :expiresAt WHERE e.cacheKey = :key AND e.expiresAt <= :now")
+    int replaceExpired(@Param("key") String key, @Param("model") String model, @Param("response") String response,
+            @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM LlmResponseCacheEntry e WHERE e.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // 条数上限：跳过最新的 N 条后取第一条的创建时间，作为淘汰的分界点
+    @Query("SELECT e.createdAt FROM LlmResponseCacheEntry e ORDER BY e.createdAt DESC")
+    List<LocalDateTime> findCreatedAtNewestFirst(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM LlmResponseCacheEntry e WHERE e.createdAt <= :cutoff")
+    int deleteCreatedUpTo(@Param("cutoff") LocalDateTime cutoff);
+}
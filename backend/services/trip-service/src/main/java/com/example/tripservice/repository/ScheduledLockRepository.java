@@ -0,0 +1,28 @@
+package com.example.tripservice.repository;
+
+import com.example.tripservice.entity.ScheduledLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ScheduledLockRepository extends JpaRepository<ScheduledLock, String> {
+
+    // 锁已到期时抢占，返回 1 表示加锁成功
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledLock l SET l.lockedUntil = :until, l.lockedAt = :now, l.lockedBy = :owner "
+            + "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquireExpired(@Param("name") String name, @Param("now") LocalDateTime now,
+            @Param("until") LocalDateTime until, @Param("owner") String owner);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledLock l SET l.lockedUntil = :until WHERE l.name = :name AND l.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+}
@@ -1,12 +1,29 @@
 package com.example.tripservice.repository;
 
 import com.example.tripservice.entity.Trip;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TripRepository extends JpaRepository<Trip, Long> {
-    List<Trip> findByUserIdOrderByCreatedAtDesc(Long userId);
+    List<Trip> findByUserIdAndDeletedAtIsNullOrderByCreatedAtDesc(Long userId);
+
+    @Query("SELECT t FROM Trip t WHERE t.id IN :ids AND t.userId = :userId AND t.deletedAt IS NULL")
+    List<Trip> findOwnedTrips(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    @Query("SELECT t.id FROM Trip t WHERE t.deletedAt IS NOT NULL ORDER BY t.deletedAt")
+    List<Long> findSoftDeletedIds(Pageable pageable);
+
+    // 模板预热：最近生成成功、不带自然语言描述的行程，只取归一化所需的字段
+    @Query("SELECT t.destination, t.startDate, t.endDate, t.participants, t.budget, t.preferences FROM Trip t "
+            + "WHERE t.createdAt >= :since AND t.status = 'generated' AND t.deletedAt IS NULL "
+            + "AND (t.rawInput IS NULL OR t.rawInput = '')")
+    List<Object[]> findTemplateCandidates(@Param("since") LocalDateTime since);
 }
@@ -0,0 +1,26 @@
+package com.example.tripservice.repository;
+
+import com.example.tripservice.entity.TripTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface TripTemplateRepository extends JpaRepository<TripTemplate, String> {
+
+    @Query("SELECT t.plan FROM TripTemplate t WHERE t.templateKey = :key AND t.expiresAt > :now")
+    Optional<String> findPlan(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    boolean existsByTemplateKeyAndExpiresAtAfter(String templateKey, LocalDateTime time);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TripTemplate t WHERE t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
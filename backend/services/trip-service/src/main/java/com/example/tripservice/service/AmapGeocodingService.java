@@ -1,12 +1,18 @@
 package com.example.tripservice.service;
 
+import com.example.tripservice.jfr.GeocodeEvent;
+import com.example.tripservice.util.RequestTimings;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -14,6 +20,8 @@ import java.util.concurrent.locks.ReentrantLock;
  * 用于将地址转换为经纬度坐标
  * 
  * 包含速率限制机制，避免超过高德 API 的 3次/秒 并发限制
+ *
+ * 指标：amap.rate.limit.wait（Timer，含排队与睡眠时间）、amap.rate.limit.queue（Gauge，等待锁的线程数）
  */
 @Service
 public class AmapGeocodingService {
@@ -29,19 +37,31 @@ public class AmapGeocodingService {
     @Value("${amap.api.key:}")
     private String apiKey;
 
+    @Value("${amap.api.base-url:https://restapi.amap.com}")
+    private String baseUrl;
+
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final Timer rateLimitWaitTimer;
 
-    public AmapGeocodingService(ObjectMapper objectMapper) {
+    public AmapGeocodingService(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.webClient = WebClient.builder().build();
         this.objectMapper = objectMapper;
+        this.rateLimitWaitTimer = Timer.builder("amap.rate.limit.wait")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("amap.rate.limit.queue", rateLimitLock, ReentrantLock::getQueueLength).register(meterRegistry);
     }
 
     /**
      * 等待以满足请求速率限制
      * 确保每个请求之间间隔不小于 REQUEST_DELAY_MS
+     * 同一 Key 下的其他高德 Web 服务调用（如路径规划）也需经过此限流
+     *
+     * @return 等待时间（纳秒），含排队获取锁与睡眠
      */
-    private void rateLimitWait() {
+    long rateLimitWait() {
+        long waitStart = System.nanoTime();
         rateLimitLock.lock();
         try {
             long now = System.currentTimeMillis();
@@ -62,6 +82,9 @@ public class AmapGeocodingService {
         } finally {
             rateLimitLock.unlock();
         }
+        long waited = System.nanoTime() - waitStart;
+        rateLimitWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+        return waited;
     }
 
     /**
@@ -78,6 +101,21 @@ public class AmapGeocodingService {
             return null;
         }
 
+        long timingStart = RequestTimings.start(RequestTimings.Stage.GEOCODE);
+        GeocodeEvent event = new GeocodeEvent();
+        event.begin();
+        String coordinates = requestGeocode(address, city, event);
+        event.end();
+        RequestTimings.stop(RequestTimings.Stage.GEOCODE, timingStart);
+        if (event.shouldCommit()) {
+            event.address = address;
+            event.found = coordinates != null;
+            event.commit();
+        }
+        return coordinates;
+    }
+
+    private String requestGeocode(String address, String city, GeocodeEvent event) {
         try {
             // 构建请求参数
             final String queryAddress;
@@ -90,20 +128,16 @@ public class AmapGeocodingService {
             logger.debug("正在地理编码: {}", queryAddress);
 
             // 应用速率限制
-            rateLimitWait();
+            event.rateLimitWait = rateLimitWait();
 
             // 调用高德地图 API
+            long httpStart = System.nanoTime();
             String response = webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .scheme("https")
-                            .host("restapi.amap.com")
-                            .path("/v3/geocode/geo")
-                            .queryParam("key", apiKey)
-                            .queryParam("address", queryAddress)
-                            .build())
+                    .uri(baseUrl + "/v3/geocode/geo?key={key}&address={address}", apiKey, queryAddress)
                     .retrieve()
                     .bodyToMono(String.class)
                     .block();
+            event.httpTime = System.nanoTime() - httpStart;
 
             // 解析响应
             JsonNode root = objectMapper.readTree(response);
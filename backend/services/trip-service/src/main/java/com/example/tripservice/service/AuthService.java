@@ -4,8 +4,9 @@ import com.example.tripservice.dto.*;
 import com.example.tripservice.entity.User;
 import com.example.tripservice.repository.UserRepository;
 import com.example.tripservice.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -17,11 +18,14 @@ public class AuthService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     public AuthResponse register(RegisterRequest request) {
         // Check if user exists
         if (userRepository.existsByEmail(request.getEmail())) {
@@ -31,7 +35,7 @@ public class AuthService {
         // Create user
         User user = new User();
         user.setEmail(request.getEmail());
-        user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
+        user.setPasswordHash(passwordHashingService.encode(request.getPassword()));
         user.setDisplayName(request.getDisplayName());
         user.setAuthProvider("local");
         
@@ -54,16 +58,40 @@ public class AuthService {
         User user = userOpt.get();
         
         // Verify password
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPasswordHash())) {
             throw new RuntimeException("邮箱或密码错误");
         }
 
+        // 工作因子调高后，旧哈希在用户下次登录时升级
+        if (passwordHashingService.needsRehash(user.getPasswordHash())) {
+            Long userId = user.getId();
+            passwordHashingService.rehashInBackground(request.getPassword(),
+                    newHash -> userRepository.updatePasswordHash(userId, newHash));
+        }
+
         String token = jwtUtil.generateToken(user.getId(), user.getEmail());
         UserDto userDto = toUserDto(user);
         
         return new AuthResponse(token, userDto);
     }
 
+    /**
+     * 登出：吊销当前令牌，之后使用该令牌的请求返回 401
+     */
+    public void logout(String token) {
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new RuntimeException("无效的访问令牌");
+        }
+
+        String jti = JwtUtil.revocationId(claims, JwtUtil.tokenDigest(token));
+        if (!tokenRevocationService.isRevoked(jti)) {
+            tokenRevocationService.revoke(jti, Long.parseLong(claims.getSubject()), claims.getExpiration());
+        }
+    }
+
     private UserDto toUserDto(User user) {
         return new UserDto(
             user.getId(),
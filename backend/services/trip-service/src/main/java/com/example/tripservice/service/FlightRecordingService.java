@@ -0,0 +1,179 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.jfr.GeocodeEvent;
+import com.example.tripservice.jfr.HibernateFlushEvent;
+import com.example.tripservice.jfr.LlmGenerationEvent;
+import com.example.tripservice.jfr.RepositoryCallEvent;
+import com.example.tripservice.jfr.ResponseBuildEvent;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.management.jfr.FlightRecorderMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * 持续飞行记录（JFR）
+ *
+ * 启动后以 JDK 自带的 default 配置（开销约 1%）持续录制，数据滚动写入 JFR 磁盘仓库，
+ * 只保留最近 max-age 或 max-size 以内的数据。出现延迟尖刺时通过管理接口导出最近 N 分钟，
+ * 用 JDK Mission Control 查看自定义事件（Trip Service 分类）与 GC、锁、线程等 JVM 事件。
+ *
+ * 磁盘仓库位置可用 JVM 参数 -XX:FlightRecorderOptions:repository=/path 指定。
+ */
+@Service
+public class FlightRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingService.class);
+
+    static final String RECORDING_NAME = "trip-service-continuous";
+
+    @Value("${jfr.continuous.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jfr.continuous.settings:default}")
+    private String settings;
+
+    @Value("${jfr.continuous.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${jfr.continuous.max-size-mb:250}")
+    private long maxSizeMb;
+
+    @Value("${jfr.repository-call-threshold-ms:1}")
+    private long repositoryCallThresholdMs;
+
+    private volatile Recording recording;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Recording continuous = new Recording(Configuration.getConfiguration(settings));
+            continuous.setName(RECORDING_NAME);
+            continuous.setToDisk(true);
+            continuous.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+            continuous.setMaxSize(maxSizeMb * 1024 * 1024);
+            continuous.enable(LlmGenerationEvent.class).withoutThreshold();
+            continuous.enable(GeocodeEvent.class).withoutThreshold();
+            continuous.enable(HibernateFlushEvent.class).withoutThreshold();
+            continuous.enable(ResponseBuildEvent.class).withoutThreshold();
+            // repository 调用频繁，只记录超过阈值的慢调用
+            continuous.enable(RepositoryCallEvent.class).withThreshold(Duration.ofMillis(repositoryCallThresholdMs));
+            continuous.start();
+            recording = continuous;
+            logger.info("JFR 持续录制已开启: 配置 {}, 保留 {} 分钟 / {} MB", settings, maxAgeMinutes, maxSizeMb);
+        } catch (Exception e) {
+            logger.warn("JFR 持续录制开启失败: {}", e.getMessage());
+        }
+    }
+
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    /**
+     * 打开最近一段时间的录制数据（.jfr 格式），调用方负责关闭
+     * JFR 按数据块落盘，导出范围会向外扩展到完整的数据块。
+     *
+     * @param last 时间范围
+     */
+    public InputStream openStream(Duration last) throws IOException {
+        Recording current = recording;
+        if (current == null) {
+            throw new IllegalStateException("JFR 持续录制未开启");
+        }
+        // 进行中的录制不能直接读取，先做快照（只引用磁盘上已有的数据块，不复制）
+        FlightRecorderMXBean bean = ManagementFactory.getPlatformMXBean(FlightRecorderMXBean.class);
+        long snapshotId = bean.takeSnapshot();
+        try {
+            Instant end = Instant.now();
+            long streamId = bean.openStream(snapshotId, Map.of(
+                    "startTime", end.minus(last).toString(),
+                    "endTime", end.toString()));
+            return new RecordingStream(bean, snapshotId, streamId);
+        } catch (IOException | RuntimeException e) {
+            bean.closeRecording(snapshotId);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        Recording current = recording;
+        recording = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 逐块读取 FlightRecorderMXBean 流，关闭时一并释放快照
+     */
+    private static final class RecordingStream extends InputStream {
+
+        private final FlightRecorderMXBean bean;
+        private final long snapshotId;
+        private final long streamId;
+        private byte[] block = new byte[0];
+        private int position;
+        private boolean finished;
+
+        RecordingStream(FlightRecorderMXBean bean, long snapshotId, long streamId) {
+            this.bean = bean;
+            this.snapshotId = snapshotId;
+            this.streamId = streamId;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? block[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, block.length - position);
+            System.arraycopy(block, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (!finished && position >= block.length) {
+                byte[] next = bean.readStream(streamId);
+                if (next == null) {
+                    finished = true;
+                } else {
+                    block = next;
+                    position = 0;
+                }
+            }
+            return position < block.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                bean.closeStream(streamId);
+            } finally {
+                bean.closeRecording(snapshotId);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.tripservice.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 行程生成各阶段指标
+ *
+ * trip.generation（Timer，outcome=success/failure）：整个 createAndGenerateTrip 耗时
+ * trip.generation.stage（Timer，stage=prompt/llm/parse/geocode/persist）：各阶段耗时，geocode 含限流等待
+ * trip.generation.llm.output（DistributionSummary，字符数）：大模型返回的行程 JSON 长度
+ * trip.generation.geocodes（DistributionSummary）：每次生成的地理编码调用次数
+ * trip.generation.in.flight（Gauge）：正在生成的行程数
+ *
+ * Timer 均发布直方图，Prometheus 中可按 histogram_quantile 计算任意分位数，用于 SLO 看板。
+ */
+@Component
+public class GenerationMetrics {
+
+    public static final String STAGE_PROMPT = "prompt";
+    public static final String STAGE_LLM = "llm";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_GEOCODE = "geocode";
+    public static final String STAGE_PERSIST = "persist";
+
+    private final Map<String, Timer> stageTimers = new HashMap<>();
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final DistributionSummary outputLength;
+    private final DistributionSummary geocodeCount;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public GenerationMetrics(MeterRegistry meterRegistry) {
+        for (String stage : new String[] { STAGE_PROMPT, STAGE_LLM, STAGE_PARSE, STAGE_GEOCODE, STAGE_PERSIST }) {
+            stageTimers.put(stage, Timer.builder("trip.generation.stage")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.successTimer = Timer.builder("trip.generation").tag("outcome", "success")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.failureTimer = Timer.builder("trip.generation").tag("outcome", "failure")
+                .publishPercentileHistogram().register(meterRegistry);
+        this.outputLength = DistributionSummary.builder("trip.generation.llm.output")
+                .baseUnit("characters")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.geocodeCount = DistributionSummary.builder("trip.generation.geocodes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("trip.generation.in.flight", inFlight, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * 开始一次生成，返回起始时刻，结束时必须调用 {@link #finish(long, boolean)}
+     */
+    public long begin() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void finish(long startNanos, boolean success) {
+        inFlight.decrementAndGet();
+        (success ? successTimer : failureTimer).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录阶段耗时
+     *
+     * @param stage      阶段，见 STAGE_* 常量
+     * @param startNanos 阶段开始时的 System.nanoTime()
+     * @return 当前时刻，便于直接作为下一阶段的起点
+     */
+    public long recordStage(String stage, long startNanos) {
+        long now = System.nanoTime();
+        recordStageNanos(stage, now - startNanos);
+        return now;
+    }
+
+    public void recordStageNanos(String stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordOutputLength(int characters) {
+        outputLength.record(characters);
+    }
+
+    public void recordGeocodeCount(int count) {
+        geocodeCount.record(count);
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.config.ReadYourWritesGuard;
+import com.example.tripservice.dto.TripResponse;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.Trip;
+import com.example.tripservice.repository.ItineraryItemRepository;
+import com.example.tripservice.repository.TripRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 局部重新生成：重新生成某一天，或为某个行程项换一个备选
+ *
+ * 换方案不再需要新建行程、重新生成整个行程，提示词只带行程概要（目的地、日期、人数、偏好）、
+ * 相邻的行程项、当前安排与剩余预算，输出只有一天或一项，token 与耗时只是整个行程的一小部分。
+ * 当前安排写入提示词，再次请求时提示词不同，不会命中大模型响应缓存而得到相同结果。
+ *
+ * 调用大模型期间不持有数据库事务：先在只读事务中读取行程，生成并地理编码后，
+ * 在一个短事务中重新校验归属并只替换受影响的行程项。地点未变的行程项沿用原坐标，只对新地点做地理编码。
+ *
+ * 指标：trip.regeneration（Timer，scope=day/item，outcome=success/failure）
+ */
+@Service
+public class ItineraryRegenerationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItineraryRegenerationService.class);
+
+    private final TripRepository tripRepository;
+    private final ItineraryItemRepository itineraryItemRepository;
+    private final TripService tripService;
+    private final QwenService qwenService;
+    private final AmapGeocodingService amapGeocodingService;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int dayMaxTokens;
+    private final int itemMaxTokens;
+
+    public ItineraryRegenerationService(TripRepository tripRepository, ItineraryItemRepository itineraryItemRepository,
+            TripService tripService, QwenService qwenService, AmapGeocodingService amapGeocodingService,
+            ReadYourWritesGuard readYourWritesGuard, TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${qwen.regeneration.day-max-tokens:1500}") int dayMaxTokens,
+            @Value("${qwen.regeneration.item-max-tokens:400}") int itemMaxTokens) {
+        this.tripRepository = tripRepository;
+        this.itineraryItemRepository = itineraryItemRepository;
+        this.tripService = tripService;
+        this.qwenService = qwenService;
+        this.amapGeocodingService = amapGeocodingService;
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.dayMaxTokens = dayMaxTokens;
+        this.itemMaxTokens = itemMaxTokens;
+    }
+
+    /**
+     * 重新生成某一天
+     *
+     * @param hint 用户对新方案的要求，可为空
+     */
+    public TripResponse regenerateDay(Long tripId, Long userId, int dayIndex, String hint) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Snapshot snapshot = load(tripId, userId);
+            Trip trip = snapshot.trip();
+            List<ItineraryItem> dayItems = snapshot.items().stream()
+                    .filter(item -> item.getDayIndex() == dayIndex)
+                    .toList();
+            long days = trip.getEndDate() != null && trip.getStartDate() != null
+                    ? trip.getEndDate().toEpochDay() - trip.getStartDate().toEpochDay() + 1 : 0;
+            if (dayItems.isEmpty() && (dayIndex < 1 || dayIndex > days)) {
+                throw new RuntimeException("行程第 " + dayIndex + " 天不存在");
+            }
+
+            StringBuilder prompt = header(trip, remainingBudget(trip, snapshot.items(), dayItems));
+            prompt.append("需要重新安排：第 ").append(dayIndex).append(" 天");
+            LocalDate date = trip.getStartDate() != null ? trip.getStartDate().plusDays(dayIndex - 1) : null;
+            if (date != null) {
+                prompt.append("（").append(date).append("）");
+            }
+            prompt.append('\n');
+            neighbour(prompt, "前一天最后一项", last(snapshot.items(), dayIndex - 1));
+            neighbour(prompt, "后一天第一项", first(snapshot.items(), dayIndex + 1));
+            StringJoiner visited = new StringJoiner("、");
+            snapshot.items().stream()
+                    .filter(item -> item.getDayIndex() != dayIndex && "attraction".equals(item.getType()))
+                    .forEach(item -> visited.add(item.getTitle()));
+            if (visited.length() > 0) {
+                prompt.append("其他天已安排的景点（不要重复）：").append(visited).append('\n');
+            }
+            prompt.append("当前安排（请给出不同的方案）：").append(summary(dayItems)).append('\n');
+            appendHint(prompt, hint);
+
+            String generated = qwenService.generate(DAY_SYSTEM_PROMPT, prompt.toString(), dayMaxTokens,
+                    text -> !parseItems(text, tripId, dayIndex).isEmpty());
+            List<ItineraryItem> newItems = parseItems(generated, tripId, dayIndex);
+            if (newItems.isEmpty()) {
+                throw new RuntimeException("AI 行程生成失败：结果不完整");
+            }
+            geocode(newItems, dayItems, trip.getDestination());
+
+            transactionTemplate.executeWithoutResult(status -> {
+                readYourWritesGuard.recordWrite();
+                findOwnedTrip(tripId, userId);
+                itineraryItemRepository.deleteByTripIdAndDayIndex(tripId, dayIndex);
+                itineraryItemRepository.saveAll(newItems);
+            });
+            logger.info("已重新生成行程第 {} 天: tripId={}, {} 项", dayIndex, tripId, newItems.size());
+            success = true;
+            return tripService.getTripDetail(tripId, userId);
+        } finally {
+            record("day", start, success);
+        }
+    }
+
+    /**
+     * 为某个行程项换一个备选，时段不变
+     *
+     * @param itemIndex 行程项在按天、开始时间排序后的位置，与修改、删除行程项一致
+     * @param hint 用户对备选的要求，可为空
+     */
+    public TripResponse suggestAlternative(Long tripId, Long userId, int itemIndex, String hint) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Snapshot snapshot = load(tripId, userId);
+            Trip trip = snapshot.trip();
+            List<ItineraryItem> items = snapshot.items();
+            if (itemIndex < 0 || itemIndex >= items.size()) {
+                throw new RuntimeException("行程项索引无效");
+            }
+            ItineraryItem current = items.get(itemIndex);
+
+            StringBuilder prompt = header(trip, remainingBudget(trip, items, List.of(current)));
+            prompt.append("需要替换：第 ").append(current.getDayIndex()).append(" 天 ")
+                    .append(current.getStartTime()).append('-').append(current.getEndTime()).append(' ')
+                    .append(current.getTitle()).append("（").append(current.getType()).append("，")
+                    .append(current.getLocation()).append("，").append(cost(current)).append(" 元）\n");
+            ItineraryItem previous = itemIndex > 0 ? items.get(itemIndex - 1) : null;
+            ItineraryItem next = itemIndex + 1 < items.size() ? items.get(itemIndex + 1) : null;
+            neighbour(prompt, "前一项", previous != null && previous.getDayIndex().equals(current.getDayIndex())
+                    ? previous : null);
+            neighbour(prompt, "后一项", next != null && next.getDayIndex().equals(current.getDayIndex())
+                    ? next : null);
+            appendHint(prompt, hint);
+
+            String generated = qwenService.generate(ITEM_SYSTEM_PROMPT, prompt.toString(), itemMaxTokens,
+                    text -> parseItem(text, current) != null);
+            ItineraryItem alternative = parseItem(generated, current);
+            if (alternative == null) {
+                throw new RuntimeException("AI 行程生成失败：结果不完整");
+            }
+            geocode(List.of(alternative), List.of(current), trip.getDestination());
+
+            transactionTemplate.executeWithoutResult(status -> {
+                readYourWritesGuard.recordWrite();
+                findOwnedTrip(tripId, userId);
+                ItineraryItem item = itineraryItemRepository.findById(current.getId())
+                        .filter(existing -> tripId.equals(existing.getTripId()))
+                        .orElseThrow(() -> new RuntimeException("行程项不存在"));
+                item.setTitle(alternative.getTitle());
+                item.setType(alternative.getType());
+                item.setLocation(alternative.getLocation());
+                item.setDescription(alternative.getDescription());
+                item.setEstimatedCost(alternative.getEstimatedCost());
+                item.setNotes(alternative.getNotes());
+                item.setCoordinates(alternative.getCoordinates());
+                itineraryItemRepository.save(item);
+            });
+            logger.info("已替换行程项: tripId={}, itemIndex={}, {} -> {}", tripId, itemIndex, current.getTitle(),
+                    alternative.getTitle());
+            success = true;
+            return tripService.getTripDetail(tripId, userId);
+        } finally {
+            record("item", start, success);
+        }
+    }
+
+    private Snapshot load(Long tripId, Long userId) {
+        return readOnlyTemplate.execute(status -> new Snapshot(findOwnedTrip(tripId, userId),
+                itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(tripId)));
+    }
+
+    private Trip findOwnedTrip(Long tripId, Long userId) {
+        Trip trip = tripRepository.findById(tripId)
+                .filter(t -> t.getDeletedAt() == null)
+                .orElseThrow(() -> new RuntimeException("行程不存在"));
+        if (!trip.getUserId().equals(userId)) {
+            throw new RuntimeException("无权修改此行程");
+        }
+        return trip;
+    }
+
+    /**
+     * 行程概要与剩余预算
+     */
+    private StringBuilder header(Trip trip, BigDecimal remainingBudget) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("目的地：").append(trip.getDestination()).append('\n');
+        prompt.append("出发日期：").append(trip.getStartDate()).append('\n');
+        prompt.append("返回日期：").append(trip.getEndDate()).append('\n');
+        prompt.append("人数：").append(trip.getParticipants()).append(" 人\n");
+        if (trip.getPreferences() != null && !trip.getPreferences().isBlank()) {
+            prompt.append("偏好：").append(trip.getPreferences()).append('\n');
+        }
+        if (remainingBudget != null) {
+            prompt.append("可用预算：").append(remainingBudget.max(BigDecimal.ZERO).toPlainString()).append(" 元\n");
+        }
+        return prompt;
+    }
+
+    /**
+     * 总预算减去其余行程项的费用，总预算未设置时返回 null
+     */
+    private static BigDecimal remainingBudget(Trip trip, List<ItineraryItem> items, List<ItineraryItem> replaced) {
+        if (trip.getBudget() == null) {
+            return null;
+        }
+        BigDecimal remaining = trip.getBudget();
+        for (ItineraryItem item : items) {
+            if (!replaced.contains(item) && item.getEstimatedCost() != null) {
+                remaining = remaining.subtract(item.getEstimatedCost());
+            }
+        }
+        return remaining;
+    }
+
+    private static void neighbour(StringBuilder prompt, String label, ItineraryItem item) {
+        if (item != null) {
+            prompt.append(label).append("：").append(item.getStartTime()).append('-').append(item.getEndTime())
+                    .append(' ').append(item.getTitle()).append("（").append(item.getLocation()).append("）\n");
+        }
+    }
+
+    private static void appendHint(StringBuilder prompt, String hint) {
+        if (hint != null && !hint.isBlank()) {
+            prompt.append("用户要求：").append(hint.trim()).append('\n');
+        }
+    }
+
+    private static String summary(List<ItineraryItem> items) {
+        StringJoiner joiner = new StringJoiner("；");
+        for (ItineraryItem item : items) {
+            joiner.add(item.getStartTime() + " " + item.getTitle());
+        }
+        return joiner.length() > 0 ? joiner.toString() : "无";
+    }
+
+    private static ItineraryItem last(List<ItineraryItem> items, int dayIndex) {
+        ItineraryItem last = null;
+        for (ItineraryItem item : items) {
+            if (item.getDayIndex() == dayIndex) {
+                last = item;
+            }
+        }
+        return last;
+    }
+
+    private static ItineraryItem first(List<ItineraryItem> items, int dayIndex) {
+        for (ItineraryItem item : items) {
+            if (item.getDayIndex() == dayIndex) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static String cost(ItineraryItem item) {
+        return item.getEstimatedCost() != null ? item.getEstimatedCost().toPlainString() : "0";
+    }
+
+    /**
+     * 解析一天的行程项，跳过缺少标题或时间无效的项
+     */
+    private List<ItineraryItem> parseItems(String generated, Long tripId, int dayIndex) {
+        JsonNode node = readTree(generated);
+        List<ItineraryItem> items = new ArrayList<>();
+        if (node == null) {
+            return items;
+        }
+        for (JsonNode itemNode : node.path("items")) {
+            if (itemNode.path("title").asText().isBlank()) {
+                continue;
+            }
+            try {
+                ItineraryItem item = tripService.parseItineraryItem(itemNode, tripId, dayIndex);
+                if (!item.getStartTime().isAfter(item.getEndTime())) {
+                    items.add(item);
+                }
+            } catch (RuntimeException e) {
+                logger.debug("跳过无效的行程项: {}", e.getMessage());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 解析备选项，时段沿用原行程项
+     */
+    private ItineraryItem parseItem(String generated, ItineraryItem current) {
+        JsonNode node = readTree(generated);
+        if (node == null) {
+            return null;
+        }
+        JsonNode itemNode = node.has("item") ? node.path("item") : node;
+        if (itemNode.path("title").asText().isBlank()) {
+            return null;
+        }
+        ItineraryItem item = new ItineraryItem();
+        item.setTripId(current.getTripId());
+        item.setDayIndex(current.getDayIndex());
+        item.setStartTime(current.getStartTime());
+        item.setEndTime(current.getEndTime());
+        item.setTitle(itemNode.path("title").asText());
+        String type = itemNode.path("type").asText(current.getType()).toLowerCase();
+        item.setType(type.isBlank() ? current.getType() : type);
+        item.setLocation(itemNode.path("location").asText());
+        item.setDescription(itemNode.path("description").asText());
+        item.setEstimatedCost(BigDecimal.valueOf(itemNode.path("estimatedCost").asDouble()));
+        item.setNotes(itemNode.hasNonNull("notes") ? itemNode.path("notes").asText() : null);
+        return item;
+    }
+
+    private JsonNode readTree(String generated) {
+        try {
+            int start = generated.indexOf('{');
+            int end = generated.lastIndexOf('}');
+            return start >= 0 && end > start ? objectMapper.readTree(generated.substring(start, end + 1)) : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只对新地点地理编码，地点与被替换行程项相同时沿用原坐标
+     */
+    private void geocode(List<ItineraryItem> newItems, List<ItineraryItem> replaced, String destination) {
+        Map<String, String> known = new HashMap<>();
+        for (ItineraryItem item : replaced) {
+            if (item.getLocation() != null && item.getCoordinates() != null) {
+                known.put(item.getLocation(), item.getCoordinates());
+            }
+        }
+        for (ItineraryItem item : newItems) {
+            String location = item.getLocation();
+            if (location == null || location.isEmpty()) {
+                continue;
+            }
+            String coordinates = known.get(location);
+            if (coordinates == null) {
+                coordinates = amapGeocodingService.geocodeAddress(location, destination);
+            }
+            item.setCoordinates(coordinates);
+        }
+    }
+
+    private void record(String scope, long start, boolean success) {
+        Timer.builder("trip.regeneration")
+                .tag("scope", scope)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private record Snapshot(Trip trip, List<ItineraryItem> items) {
+    }
+
+    static final String DAY_SYSTEM_PROMPT = """
+            你是一个专业的旅行规划助手。用户已有一份行程，请只重新安排其中指定的一天。
+
+            要求：
+            1. 必须返回严格的 JSON 格式,不要有任何额外的文字说明或markdown标记
+            2. JSON 结构如下：
+            {
+              "items": [
+                {
+                  "startTime": "09:00",
+                  "endTime": "11:00",
+                  "title": "景点名称",
+                  "type": "attraction",
+                  "location": "具体地址",
+                  "description": "简短描述(50字以内)",
+                  "estimatedCost": 100.0,
+                  "notes": "简短提示(30字以内)"
+                }
+              ]
+            }
+
+            3. type 只能是以下值之一：attraction（景点）、restaurant（餐厅）、hotel（住宿）、transport（交通）、other（其他）
+            4. 时间格式为 HH:mm（24小时制），费用单位为人民币（元），当天总费用不超过可用预算
+            5. 当天安排 3-5 个活动，与前后两天衔接，不要安排其他天已有的景点
+            6. description 和 notes 要简洁,避免过长文字
+            """;
+
+    static final String ITEM_SYSTEM_PROMPT = """
+            你是一个专业的旅行规划助手。用户已有一份行程，请为其中指定的一项给出一个不同的备选，时段不变。
+
+            要求：
+            1. 必须返回严格的 JSON 格式,不要有任何额外的文字说明或markdown标记
+            2. JSON 结构如下：
+            {
+              "title": "名称",
+              "type": "attraction",
+              "location": "具体地址",
+              "description": "简短描述(50字以内)",
+              "estimatedCost": 100.0,
+              "notes": "简短提示(30字以内)"
+            }
+
+            3. type 只能是以下值之一：attraction（景点）、restaurant（餐厅）、hotel（住宿）、transport（交通）、other（其他），一般与被替换项相同
+            4. 费用单位为人民币（元），不超过可用预算
+            5. 地点与前后两项顺路，不要与被替换项相同
+            """;
+}
@@ -0,0 +1,78 @@
+package com.example.tripservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用隔舱
+ *
+ * 限制同时进行中的通义千问 HTTP 调用数：逐日并行生成会把一次长行程拆成多个调用，
+ * 没有上限时几个长行程就能占满上游的并发配额，并拖住所有请求线程。
+ * 超出上限的调用公平排队，等待超时后失败，而不是无限等待。
+ *
+ * 指标：qwen.bulkhead.active（进行中的调用数）、qwen.bulkhead.waiting（排队数）、
+ * qwen.bulkhead.wait（Timer，获取许可的等待时间）、qwen.bulkhead.rejected（等待超时次数）
+ */
+@Component
+public class LlmBulkhead {
+
+    public static final String BUSY_MESSAGE = "AI 服务繁忙，请稍后重试";
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public LlmBulkhead(MeterRegistry meterRegistry,
+            @Value("${qwen.bulkhead.max-concurrent:8}") int maxConcurrent,
+            @Value("${qwen.bulkhead.acquire-timeout-ms:30000}") long acquireTimeoutMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.waitTimer = Timer.builder("qwen.bulkhead.wait")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("qwen.bulkhead.rejected").register(meterRegistry);
+        Gauge.builder("qwen.bulkhead.active", permits, p -> maxConcurrent - p.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("qwen.bulkhead.waiting", permits, Semaphore::getQueueLength).register(meterRegistry);
+    }
+
+    /**
+     * 在隔舱内执行一次调用
+     */
+    public <T> T call(Supplier<T> task) {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(BUSY_MESSAGE);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            throw new RuntimeException(BUSY_MESSAGE);
+        }
+        try {
+            return task.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+}
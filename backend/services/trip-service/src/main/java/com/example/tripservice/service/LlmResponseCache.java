@@ -0,0 +1,228 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.entity.LlmResponseCacheEntry;
+import com.example.tripservice.repository.LlmResponseCacheRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 大模型响应缓存（精确匹配）
+ *
+ * 重试、重复点击、分享链接等场景会产生完全相同的生成请求。以模型、参数与完整提示词的摘要为键缓存生成结果：
+ * 内存层（Caffeine）在前，数据库层（llm_response_cache 表）在后，多实例之间共享。
+ * 同一实例上并发的相同请求只调用一次上游，其余请求等待并共享结果；调用失败时一起失败，不缓存。
+ * 等待超过 qwen.cache.coalesce-timeout-ms 时等待方单独失败，不影响正在生成的请求。
+ *
+ * 数据库写入在后台线程异步执行，不占用生成请求的事务与连接；写入直接 INSERT，
+ * 主键冲突时只覆盖尚未清理的过期记录，其他实例已写入的有效记录保持不变。
+ * 过期记录与超出条数上限的最旧记录由定时任务清理。
+ *
+ * 指标：qwen.cache.requests（Counter，result=memory/database/coalesced/miss）
+ */
+@Service
+public class LlmResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    public static final String RESULT_MEMORY = "memory";
+    public static final String RESULT_DATABASE = "database";
+    public static final String RESULT_COALESCED = "coalesced";
+    public static final String RESULT_MISS = "miss";
+
+    private final LlmResponseCacheRepository repository;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final long maxEntries;
+    private final long coalesceTimeoutMs;
+    private final Cache<String, String> memory;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writeExecutor;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public LlmResponseCache(LlmResponseCacheRepository repository, MeterRegistry meterRegistry,
+            @Value("${qwen.cache.enabled:true}") boolean enabled,
+            @Value("${qwen.cache.ttl-hours:24}") long ttlHours,
+            @Value("${qwen.cache.memory-max-entries:500}") long memoryMaxEntries,
+            @Value("${qwen.cache.max-entries:20000}") long maxEntries,
+            @Value("${qwen.cache.coalesce-timeout-ms:300000}") long coalesceTimeoutMs) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.maxEntries = maxEntries;
+        this.coalesceTimeoutMs = coalesceTimeoutMs;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(memoryMaxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        // 写入队列满时直接丢弃：缓存只是优化，不能反压生成请求
+        this.writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), runnable -> {
+                    Thread thread = new Thread(runnable, "llm-cache-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        for (String result : new String[] { RESULT_MEMORY, RESULT_DATABASE, RESULT_COALESCED, RESULT_MISS }) {
+            counters.put(result, Counter.builder("qwen.cache.requests")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 查询缓存，未命中时调用 loader 并缓存结果
+     *
+     * @param key       缓存键，见 QwenService.cacheKey
+     * @param model     模型名称，随记录保存便于排查
+     * @param loader    调用上游生成，失败时抛出异常
+     * @param cacheable 结果是否可以缓存（例如被截断的输出不缓存）
+     */
+    public Lookup getOrLoad(String key, String model, Supplier<String> loader, Predicate<String> cacheable) {
+        if (!enabled) {
+            return new Lookup(loader.get(), RESULT_MISS);
+        }
+
+        String cached = memory.getIfPresent(key);
+        if (cached != null) {
+            return hit(cached, RESULT_MEMORY);
+        }
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> leader = inFlight.putIfAbsent(key, pending);
+        if (leader != null) {
+            try {
+                return hit(leader.get(coalesceTimeoutMs, TimeUnit.MILLISECONDS), RESULT_COALESCED);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("AI 行程生成超时", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("AI 行程生成被中断", e);
+            }
+        }
+
+        try {
+            String stored = repository.findResponse(key, LocalDateTime.now()).orElse(null);
+            if (stored != null) {
+                memory.put(key, stored);
+                pending.complete(stored);
+                return hit(stored, RESULT_DATABASE);
+            }
+
+            String generated = loader.get();
+            if (cacheable.test(generated)) {
+                memory.put(key, generated);
+                writeExecutor.execute(() -> persist(key, model, generated));
+            }
+            pending.complete(generated);
+            counters.get(RESULT_MISS).increment();
+            return new Lookup(generated, RESULT_MISS);
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * 只查询不调用上游，未命中、已过期或缓存关闭时返回 null
+     */
+    public String peek(String key) {
+        if (!enabled) {
+            return null;
+        }
+        String cached = memory.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        String stored = repository.findResponse(key, LocalDateTime.now()).orElse(null);
+        if (stored != null) {
+            memory.put(key, stored);
+        }
+        return stored;
+    }
+
+    private Lookup hit(String response, String result) {
+        counters.get(result).increment();
+        logger.debug("大模型响应缓存命中: {}", result);
+        return new Lookup(response, result);
+    }
+
+    private void persist(String key, String model, String response) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            LlmResponseCacheEntry entry = new LlmResponseCacheEntry();
+            entry.setCacheKey(key);
+            entry.setModel(model);
+            entry.setResponse(response);
+            entry.setCreatedAt(now);
+            entry.setExpiresAt(now.plus(ttl));
+            repository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            if (repository.replaceExpired(key, model, response, now, now.plus(ttl)) == 0) {
+                logger.debug("大模型响应缓存已由其他实例写入: {}", key);
+            }
+        } catch (Exception e) {
+            logger.warn("大模型响应缓存写入失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理过期记录，并按创建时间淘汰超出条数上限的最旧记录
+     */
+    @Scheduled(fixedDelayString = "${qwen.cache.purge-interval-ms:600000}",
+            initialDelayString = "${qwen.cache.purge-interval-ms:600000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        int expired = repository.deleteExpired(LocalDateTime.now());
+        int evicted = 0;
+        List<LocalDateTime> cutoff = repository.findCreatedAtNewestFirst(PageRequest.of((int) maxEntries, 1));
+        if (!cutoff.isEmpty()) {
+            evicted = repository.deleteCreatedUpTo(cutoff.get(0));
+        }
+        if (expired > 0 || evicted > 0) {
+            logger.info("大模型响应缓存已清理: 过期 {} 条，超出上限 {} 条", expired, evicted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdown();
+    }
+
+    /**
+     * 查询结果
+     *
+     * @param response 生成结果
+     * @param result   来源，见 RESULT_* 常量
+     */
+    public record Lookup(String response, String result) {
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.config.QwenConfig;
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.util.RequestTimings;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长行程逐日并行生成
+ *
+ * 一次补全生成整个行程时，输出 token 逐个生成，7～14 天的行程耗时与天数成正比，且经常超过 max_tokens 被截断。
+ * 这里把长行程拆成两步：先用一次短调用生成行程骨架（每天的片区与主题、整体预算），
+ * 再按天并发生成各天的活动（每次调用都经过 {@link LlmBulkhead}），最后合并、校验为与一次生成相同结构的行程 JSON。
+ * 总耗时约为骨架调用加上最慢的一天，而不是所有天数之和。
+ *
+ * 每一步都经过大模型响应缓存，重试时已成功的骨架与天直接复用；合并结果以整个提示词的缓存键保存，
+ * 与一次生成共享缓存与语义缓存。骨架调用失败时退回一次生成；某一天失败或校验不通过时整个生成失败。
+ *
+ * 指标：qwen.fanout.requests（Counter，result=success/fallback/failure）、qwen.fanout.day（Timer，单天生成耗时）
+ */
+@Service
+public class ParallelTripPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelTripPlanner.class);
+
+    private static final String[] COST_FIELDS = { "transport", "accommodation", "food", "attractions", "other" };
+
+    private final QwenService qwenService;
+    private final LlmResponseCache llmResponseCache;
+    private final QwenConfig qwenConfig;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int minDays;
+    private final int skeletonMaxTokens;
+    private final int dayMaxTokens;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final Counter successCounter;
+    private final Counter fallbackCounter;
+    private final Counter failureCounter;
+    private final Timer dayTimer;
+
+    public ParallelTripPlanner(QwenService qwenService, LlmResponseCache llmResponseCache, QwenConfig qwenConfig,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${qwen.fan-out.enabled:true}") boolean enabled,
+            @Value("${qwen.fan-out.min-days:5}") int minDays,
+            @Value("${qwen.fan-out.skeleton-max-tokens:1000}") int skeletonMaxTokens,
+            @Value("${qwen.fan-out.day-max-tokens:1500}") int dayMaxTokens,
+            @Value("${qwen.fan-out.timeout-ms:180000}") long timeoutMs,
+            @Value("${qwen.fan-out.threads:16}") int threads) {
+        this.qwenService = qwenService;
+        this.llmResponseCache = llmResponseCache;
+        this.qwenConfig = qwenConfig;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.minDays = minDays;
+        this.skeletonMaxTokens = skeletonMaxTokens;
+        this.dayMaxTokens = dayMaxTokens;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 线程只负责等待上游响应，实际并发由 LlmBulkhead 控制；队列满时在调用线程中执行，退化为逐天生成
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256), runnable -> {
+                    Thread thread = new Thread(runnable, "qwen-fanout-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.successCounter = Counter.builder("qwen.fanout.requests").tag("result", "success")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("qwen.fanout.requests").tag("result", "fallback")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("qwen.fanout.requests").tag("result", "failure")
+                .register(meterRegistry);
+        this.dayTimer = Timer.builder("qwen.fanout.day")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 行程天数达到 min-days 时使用逐日并行生成
+     */
+    public boolean applies(CreateTripRequest request) {
+        if (!enabled || request.getStartDate() == null || request.getEndDate() == null) {
+            return false;
+        }
+        return ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) + 1 >= minDays;
+    }
+
+    /**
+     * 生成行程
+     *
+     * @param prompt 与一次生成相同的用户提示词，见 TripService.buildPrompt
+     * @return 与一次生成结构相同的行程 JSON
+     */
+    public String generate(CreateTripRequest request, String prompt) {
+        int days = (int) ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) + 1;
+        long timingStart = RequestTimings.start(RequestTimings.Stage.LLM);
+        try {
+            return llmResponseCache.getOrLoad(qwenService.cacheKey(prompt), qwenConfig.getModel(),
+                    () -> fanOut(prompt, days), qwenService::isCompletePlan).response();
+        } finally {
+            RequestTimings.stop(RequestTimings.Stage.LLM, timingStart);
+        }
+    }
+
+    private String fanOut(String prompt, int days) {
+        JsonNode skeleton;
+        try {
+            skeleton = objectMapper.readTree(qwenService.generate(SKELETON_SYSTEM_PROMPT, prompt, skeletonMaxTokens,
+                    this::isCompleteSkeleton));
+            if (!isCompleteSkeleton(skeleton)) {
+                throw new IllegalStateException("行程骨架不完整");
+            }
+        } catch (Exception e) {
+            logger.warn("行程骨架生成失败，改为一次生成: {}", e.getMessage());
+            fallbackCounter.increment();
+            // 已在该提示词的缓存加载中，直接请求上游，结果由外层缓存保存
+            return qwenService.requestTripPlan(prompt, days);
+        }
+
+        String outline = outline(skeleton, days);
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<CompletableFuture<JsonNode>> futures = new ArrayList<>(days);
+        for (int day = 1; day <= days; day++) {
+            String dayPrompt = prompt + "\n" + outline + "\n本次只生成第 " + day + " 天" + dayFocus(skeleton, day);
+            int dayIndex = day;
+            futures.add(CompletableFuture.supplyAsync(() -> generateDay(dayPrompt, dayIndex, mdc), executor));
+        }
+
+        List<JsonNode> dayNodes = new ArrayList<>(days);
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(timeoutMs, TimeUnit.MILLISECONDS);
+            for (CompletableFuture<JsonNode> future : futures) {
+                dayNodes.add(future.join());
+            }
+        } catch (TimeoutException e) {
+            // cancel 不会中断阻塞中的 HTTP 调用，进行中的单天请求由 qwen.api.timeout-ms 结束并归还隔舱许可
+            futures.forEach(future -> future.cancel(true));
+            failureCounter.increment();
+            throw new RuntimeException("AI 行程生成超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failureCounter.increment();
+            throw new RuntimeException("AI 行程生成被中断", e);
+        } catch (ExecutionException e) {
+            failureCounter.increment();
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        }
+
+        String merged = merge(skeleton, dayNodes);
+        successCounter.increment();
+        logger.info("逐日并行生成完成: {} 天", days);
+        return merged;
+    }
+
+    private JsonNode generateDay(String dayPrompt, int dayIndex, Map<String, String> mdc) {
+        // 线程池满时由请求线程执行（CallerRunsPolicy），结束后恢复原有上下文而不是清空
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+        long start = System.nanoTime();
+        try {
+            String generated = qwenService.generate(DAY_SYSTEM_PROMPT, dayPrompt, dayMaxTokens,
+                    text -> parseDay(text, dayIndex) != null);
+            JsonNode day = parseDay(generated, dayIndex);
+            if (day == null) {
+                throw new RuntimeException("AI 行程生成失败：第 " + dayIndex + " 天结果不完整");
+            }
+            return day;
+        } finally {
+            dayTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (previous != null) {
+                MDC.setContextMap(previous);
+            } else {
+                MDC.clear();
+            }
+        }
+    }
+
+    /**
+     * 解析并校验单天结果：丢弃缺少标题或时间格式错误的活动，按开始时间排序，没有有效活动时返回 null
+     * 也接受带 days 数组的整段行程，取其中对应的一天
+     */
+    private JsonNode parseDay(String generated, int dayIndex) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(generated);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        if (node.has("days")) {
+            JsonNode match = null;
+            for (JsonNode candidate : node.path("days")) {
+                if (candidate.path("dayIndex").asInt() == dayIndex) {
+                    match = candidate;
+                }
+            }
+            node = match != null ? match : node.path("days").path(0);
+        }
+
+        List<JsonNode> items = new ArrayList<>();
+        for (JsonNode item : node.path("items")) {
+            if (item.path("title").asText().isBlank()) {
+                continue;
+            }
+            try {
+                if (LocalTime.parse(item.path("startTime").asText())
+                        .isAfter(LocalTime.parse(item.path("endTime").asText()))) {
+                    continue;
+                }
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            items.add(item);
+        }
+        if (items.isEmpty()) {
+            return null;
+        }
+        items.sort(Comparator.comparing(item -> LocalTime.parse(item.path("startTime").asText())));
+
+        ObjectNode day = objectMapper.createObjectNode();
+        day.put("dayIndex", dayIndex);
+        day.putArray("items").addAll(items);
+        return day;
+    }
+
+    /**
+     * 合并为完整行程；同一景点出现在多天时只保留第一次，预算取骨架中的整体预算，缺失时按活动费用汇总
+     */
+    private String merge(JsonNode skeleton, List<JsonNode> dayNodes) {
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.put("title", skeleton.path("title").asText());
+        plan.put("destination", skeleton.path("destination").asText());
+        ArrayNode days = plan.putArray("days");
+        Set<String> attractions = new HashSet<>();
+        double[] totals = new double[COST_FIELDS.length];
+        for (JsonNode dayNode : dayNodes) {
+            ObjectNode day = days.addObject();
+            day.put("dayIndex", dayNode.path("dayIndex").asInt());
+            ArrayNode items = day.putArray("items");
+            for (JsonNode item : dayNode.path("items")) {
+                String type = item.path("type").asText().toLowerCase();
+                if ("attraction".equals(type) && !attractions.add(item.path("title").asText())) {
+                    logger.debug("逐日生成中重复的景点已去除: {}", item.path("title").asText());
+                    continue;
+                }
+                items.add(item);
+                double cost = item.path("estimatedCost").asDouble();
+                switch (type) {
+                    case "transport" -> totals[0] += cost;
+                    case "hotel" -> totals[1] += cost;
+                    case "restaurant" -> totals[2] += cost;
+                    case "attraction" -> totals[3] += cost;
+                    default -> totals[4] += cost;
+                }
+            }
+        }
+
+        JsonNode skeletonBudget = skeleton.path("budgetBreakdown");
+        ObjectNode budget = plan.putObject("budgetBreakdown");
+        for (int i = 0; i < COST_FIELDS.length; i++) {
+            JsonNode value = skeletonBudget.path(COST_FIELDS[i]);
+            budget.put(COST_FIELDS[i], value.isNumber() ? value.asDouble() : totals[i]);
+        }
+        try {
+            return objectMapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isCompleteSkeleton(String generated) {
+        try {
+            return isCompleteSkeleton(objectMapper.readTree(generated));
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    private static boolean isCompleteSkeleton(JsonNode skeleton) {
+        return skeleton.path("days").isArray() && !skeleton.path("days").isEmpty();
+    }
+
+    /**
+     * 骨架摘要，附在每一天的提示词中，让各天之间不重复、片区衔接
+     */
+    private static String outline(JsonNode skeleton, int days) {
+        StringBuilder outline = new StringBuilder("行程骨架：\n");
+        for (int day = 1; day <= days; day++) {
+            JsonNode node = skeletonDay(skeleton, day);
+            outline.append("第 ").append(day).append(" 天：")
+                    .append(node.path("area").asText("自由安排")).append(" - ")
+                    .append(node.path("theme").asText("")).append('\n');
+        }
+        return outline.toString();
+    }
+
+    private static String dayFocus(JsonNode skeleton, int day) {
+        JsonNode node = skeletonDay(skeleton, day);
+        String area = node.path("area").asText("");
+        return area.isEmpty() ? "" : "（片区：" + area + "，主题：" + node.path("theme").asText("") + "）";
+    }
+
+    private static JsonNode skeletonDay(JsonNode skeleton, int day) {
+        for (JsonNode node : skeleton.path("days")) {
+            if (node.path("dayIndex").asInt() == day) {
+                return node;
+            }
+        }
+        return MissingNode.getInstance();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static final String SKELETON_SYSTEM_PROMPT = """
+            你是一个专业的旅行规划助手。请先为整个行程做逐日规划（行程骨架），不要展开具体活动。
+
+            要求：
+            1. 必须返回严格的 JSON 格式,不要有任何额外的文字说明或markdown标记
+            2. JSON 结构如下：
+            {
+              "title": "行程标题",
+              "destination": "目的地",
+              "days": [
+                {
+                  "dayIndex": 1,
+                  "area": "当天活动所在的城区或片区",
+                  "theme": "当天主题(15字以内)"
+                }
+              ],
+              "budgetBreakdown": {
+                "transport": 1000.0,
+                "accommodation": 2000.0,
+                "food": 1500.0,
+                "attractions": 800.0,
+                "other": 200.0
+              }
+            }
+
+            3. days 必须覆盖出发日期到返回日期的每一天，相邻两天尽量安排在相邻片区，减少往返
+            4. 费用单位为人民币（元），根据用户的预算合理分配，总费用不超过预算
+            """;
+
+    static final String DAY_SYSTEM_PROMPT = """
+            你是一个专业的旅行规划助手。整个行程的逐日安排已经确定（见行程骨架），请只展开其中指定的一天。
+
+            要求：
+            1. 必须返回严格的 JSON 格式,不要有任何额外的文字说明或markdown标记
+            2. JSON 结构如下：
+            {
+              "dayIndex": 1,
+              "items": [
+                {
+                  "startTime": "09:00",
+                  "endTime": "11:00",
+                  "title": "景点名称",
+                  "type": "attraction",
+                  "location": "具体地址",
+                  "description": "简短描述(50字以内)",
+                  "estimatedCost": 100.0,
+                  "notes": "简短提示(30字以内)"
+                }
+              ]
+            }
+
+            3. type 只能是以下值之一：attraction（景点）、restaurant（餐厅）、hotel（住宿）、transport（交通）、other（其他）
+            4. 时间格式为 HH:mm（24小时制），费用单位为人民币（元）
+            5. 当天安排 3-5 个活动，集中在骨架指定的片区，不要安排其他天已有的景点
+            6. description 和 notes 要简洁,避免过长文字
+            """;
+}
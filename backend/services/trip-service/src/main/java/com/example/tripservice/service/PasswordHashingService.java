@@ -0,0 +1,145 @@
+package com.example.tripservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 密码哈希服务
+ *
+ * BCrypt 是 CPU 密集型计算，登录高峰或撞库时会占满 Tomcat 线程，拖慢其他接口。
+ * 这里把哈希计算放到独立线程池：线程数与 CPU 核数一致，队列有界，
+ * 队列满时立即拒绝（控制器返回 429），而不是让请求线程无限排队。
+ *
+ * 指标：
+ * auth.password.hash（Timer，按 operation=encode/matches 区分，含排队时间）
+ * auth.password.hash.queue（队列长度）、auth.password.hash.active（计算中的任务数）
+ * auth.password.hash.rejected（拒绝次数）
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    public static final String BUSY_MESSAGE = "登录请求过多，请稍后重试";
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+
+    @Value("${security.password-hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+            @Value("${security.password-hashing.threads:0}") int threads,
+            @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.encodeTimer = Timer.builder("auth.password.hash").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password.hash").tag("operation", "matches").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.hash.rejected").register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算密码哈希
+     */
+    public String encode(String rawPassword) {
+        return await(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * 校验密码
+     */
+    public boolean matches(String rawPassword, String passwordHash) {
+        return await(matchesTimer, () -> passwordEncoder.matches(rawPassword, passwordHash));
+    }
+
+    /**
+     * 已有哈希的强度是否低于当前配置，需要重新计算
+     */
+    public boolean needsRehash(String passwordHash) {
+        return passwordEncoder.upgradeEncoding(passwordHash);
+    }
+
+    /**
+     * 后台重新计算哈希，线程池繁忙时放弃（下次登录再试）
+     *
+     * @param onEncoded 新哈希的回调，在哈希线程中执行
+     */
+    public void rehashInBackground(String rawPassword, Consumer<String> onEncoded) {
+        try {
+            executor.execute(() -> {
+                try {
+                    onEncoded.accept(encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    logger.warn("密码哈希升级失败: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+        }
+    }
+
+    private <T> T await(Timer timer, Callable<T> task) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new RuntimeException(BUSY_MESSAGE);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new RuntimeException(BUSY_MESSAGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(BUSY_MESSAGE);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("密码校验失败", e.getCause());
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
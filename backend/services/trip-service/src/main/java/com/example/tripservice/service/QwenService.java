@@ -1,16 +1,39 @@
 package com.example.tripservice.service;
 
 import com.example.tripservice.config.QwenConfig;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.jfr.LlmGenerationEvent;
+import com.example.tripservice.util.CompactPlanParser;
+import com.example.tripservice.util.PartialPlanParser;
+import com.example.tripservice.util.RequestTimings;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * 阿里云通义千问 API 服务
@@ -29,62 +52,355 @@ public class QwenService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+
+    @Autowired
+    private LlmBulkhead llmBulkhead;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qwen.continuation.max-rounds:2}")
+    private int continuationMaxRounds;
+
+    @Value("${qwen.plan-format:json}")
+    private String planFormat;
+
     /**
      * 调用通义千问生成行程规划
+     * 相同模型、参数与提示词的请求命中缓存时直接返回之前的结果，见 {@link LlmResponseCache}
      * 
      * @param prompt 用户输入的行程需求
+     * @param expectedDays 按出发与返回日期计算的行程天数，用于判断续写是否完整，未知时为 0
      * @return 生成的行程 JSON 字符串
      */
-    public String generateTripPlan(String prompt) {
+    public String generateTripPlan(String prompt, int expectedDays) {
+        return generate(buildRequestBody(prompt), prompt.length(), () -> requestTripPlan(prompt, expectedDays),
+                this::isCompletePlan);
+    }
+
+    /**
+     * 以指定的系统提示词调用通义千问，用于分步生成，见 {@link ParallelTripPlanner}
+     * 同样经过响应缓存，重试时已成功的步骤直接复用
+     *
+     * @param maxTokens 输出 token 上限
+     * @param cacheable 结果是否完整、可以缓存
+     */
+    public String generate(String systemPrompt, String prompt, int maxTokens, Predicate<String> cacheable) {
+        Map<String, Object> requestBody = buildRequestBody(systemPrompt, prompt, maxTokens);
+        return generate(requestBody, prompt.length(), () -> requestGeneration(requestBody), cacheable);
+    }
+
+    /**
+     * 不经过响应缓存直接生成整个行程，供已持有该提示词缓存加载权的调用方使用，见 {@link ParallelTripPlanner}
+     *
+     * 输出达到 max_tokens 被截断时，保留已完整输出的天，带上已有内容的摘要请模型从下一天续写，
+     * 再把续写结果拼接回去，截断只需补生成剩余部分而不是整体重试。拼接后的天数少于 expectedDays 时视为仍不完整，
+     * 以拼接结果为已有部分继续续写。紧凑格式读到预算行但天数不足时同样续写。
+     * 续写最多 qwen.continuation.max-rounds 次，仍不完整时按 {@link #incomplete} 处理。
+     *
+     * @param expectedDays 行程天数，未知时为 0，只要求续写给出预算
+     */
+    String requestTripPlan(String prompt, int expectedDays) {
+        String generated = requestGeneration(buildRequestBody(prompt));
+        PartialPlanParser.Prefix prefix;
+        if (isCompactFormat()) {
+            // 紧凑格式在这里转换为行程 JSON，缓存、模板与续写都只处理 JSON
+            // 转换后 TripService 还要再解析一次，比直接输出 JSON 多约 75µs，见 PlanFormatBenchmark
+            CompactPlanParser.Plan plan = CompactPlanParser.parse(generated);
+            prefix = new PartialPlanParser.Prefix(plan.title(), plan.destination(), toDays(plan.items()));
+            if (plan.complete() && !prefix.days().isEmpty() && prefix.days().size() >= expectedDays) {
+                return stitch(prefix, toBudget(plan.budget()));
+            }
+        } else {
+            if (isCompletePlan(generated)) {
+                return generated;
+            }
+            prefix = PartialPlanParser.parse(objectMapper, generated);
+        }
+        if (continuationMaxRounds <= 0) {
+            return incomplete(generated);
+        }
+
+        for (int round = 1; round <= continuationMaxRounds; round++) {
+            logger.warn("生成的行程 JSON 不完整，保留前 {} 天并从第 {} 天续写（第 {} 次）",
+                    prefix.days().size(), prefix.lastDayIndex() + 1, round);
+            String continuation = requestGeneration(buildRequestBody(buildSystemPrompt(),
+                    buildContinuationPrompt(prompt, prefix, expectedDays), 6000));
+            JsonNode tail = readComplete(continuation);
+            if (tail != null && tail.path("days").isArray() && tail.has("budgetBreakdown")) {
+                PartialPlanParser.Prefix merged = append(prefix, tail.path("days"));
+                if (!merged.days().isEmpty() && merged.days().size() >= expectedDays) {
+                    meterRegistry.counter("qwen.continuation.requests", "result", "recovered").increment();
+                    logger.info("续写完成，共 {} 天", merged.days().size());
+                    return stitch(merged, tail);
+                }
+                // 续写提前结束，天数不足时以拼接结果继续
+                logger.warn("续写后共 {} 天，少于行程的 {} 天", merged.days().size(), expectedDays);
+                prefix = merged;
+                continue;
+            }
+            // 续写本身也被截断时，把其中完整的天并入已有部分继续
+            prefix = append(prefix, PartialPlanParser.parse(objectMapper, continuation).days());
+        }
+        meterRegistry.counter("qwen.continuation.requests", "result", "failed").increment();
+        logger.warn("续写 {} 次后行程仍不完整", continuationMaxRounds);
+        return incomplete(generated);
+    }
+
+    /**
+     * 无法补全时的返回值：JSON 格式返回原始输出，由调用方按生成失败处理；
+     * 紧凑格式的原始输出不是 JSON，直接失败，避免行格式文本被当作行程返回
+     */
+    private String incomplete(String generated) {
+        if (isCompactFormat()) {
+            throw new RuntimeException("AI 行程生成失败：生成的行程不完整");
+        }
+        return generated;
+    }
+
+    /**
+     * 续写提示词：原始需求加已完成部分的摘要（每天只列活动标题），避免重复且不占用太多输入
+     */
+    String buildContinuationPrompt(String prompt, PartialPlanParser.Prefix prefix, int expectedDays) {
+        StringBuilder builder = new StringBuilder(prompt)
+                .append("\n\n上一次输出因长度限制在中途中断，已完成的部分如下（摘要）：\n");
+        if (prefix.title() != null) {
+            builder.append("标题：").append(prefix.title()).append('\n');
+        }
+        for (JsonNode day : prefix.days()) {
+            builder.append("第 ").append(day.path("dayIndex").asInt()).append(" 天：");
+            StringJoiner titles = new StringJoiner("、");
+            day.path("items").forEach(item -> titles.add(item.path("title").asText()));
+            builder.append(titles).append('\n');
+        }
+        int next = prefix.lastDayIndex() + 1;
+        builder.append("请从第 ").append(next).append(" 天开始继续生成直到返回日期");
+        if (expectedDays > 0) {
+            builder.append("（共 ").append(expectedDays).append(" 天）");
+        }
+        builder.append("，不要重复已完成的天和景点。")
+                .append("只输出以下结构的 JSON：{\"days\": [第 ").append(next)
+                .append(" 天起的每一天，结构同上], \"budgetBreakdown\": {整个行程的预算}}。")
+                .append("如果已完成的部分已经覆盖到返回日期，days 返回空数组，只给出 budgetBreakdown。");
+        return builder.toString();
+    }
+
+    private JsonNode readComplete(String generated) {
         try {
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", qwenConfig.getModel());
-            
-            Map<String, Object> input = new HashMap<>();
-            
-            // 系统提示词 + 用户输入
-            String systemPrompt = buildSystemPrompt();
-            String fullPrompt = systemPrompt + "\n\n用户需求：\n" + prompt;
-            
-            input.put("prompt", fullPrompt);
-            requestBody.put("input", input);
-            
-            // 参数配置
-            Map<String, Object> parameters = new HashMap<>();
-            parameters.put("result_format", "message");
-            parameters.put("max_tokens", 6000);  // 增加 token 限制,支持更长的行程规划
-            parameters.put("temperature", 0.7);
-            parameters.put("top_p", 0.8);
-            requestBody.put("parameters", parameters);
+            int start = generated.indexOf('{');
+            int end = generated.lastIndexOf('}');
+            return start >= 0 && end > start ? objectMapper.readTree(generated.substring(start, end + 1)) : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
 
+    /**
+     * 追加续写得到的天，按顺序重新编号
+     *
+     * 续写的 dayIndex 不可信：模型可能重复输出已有的天，也可能从 1 重新编号。
+     * 编号不大于已有最后一天时，按内容判断，多数活动标题与已有部分重复才视为重复输出丢弃，否则视为重新编号的新一天。
+     */
+    private PartialPlanParser.Prefix append(PartialPlanParser.Prefix prefix, Iterable<JsonNode> more) {
+        List<JsonNode> days = new ArrayList<>(prefix.days());
+        Set<String> existingTitles = new HashSet<>();
+        prefix.days().forEach(day -> day.path("items").forEach(item -> existingTitles.add(item.path("title").asText())));
+        int last = prefix.lastDayIndex();
+        for (JsonNode day : more) {
+            if (!day.path("items").isArray() || day.path("items").isEmpty()) {
+                continue;
+            }
+            if (day.path("dayIndex").asInt(last + 1) <= last && repeats(day, existingTitles)) {
+                continue;
+            }
+            ObjectNode copy = day.deepCopy();
+            copy.put("dayIndex", ++last);
+            days.add(copy);
+        }
+        return new PartialPlanParser.Prefix(prefix.title(), prefix.destination(), days);
+    }
+
+    private static boolean repeats(JsonNode day, Set<String> existingTitles) {
+        int repeated = 0;
+        for (JsonNode item : day.path("items")) {
+            if (existingTitles.contains(item.path("title").asText())) {
+                repeated++;
+            }
+        }
+        return repeated * 2 > day.path("items").size();
+    }
+
+    private String stitch(PartialPlanParser.Prefix merged, JsonNode tail) {
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.put("title", merged.title() != null ? merged.title() : tail.path("title").asText());
+        plan.put("destination", merged.destination() != null ? merged.destination() : tail.path("destination").asText());
+        plan.putArray("days").addAll(merged.days());
+        plan.set("budgetBreakdown", tail.path("budgetBreakdown"));
+        try {
+            return objectMapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 紧凑格式的行程项按天转换为与 JSON 格式相同结构的节点
+     */
+    private List<JsonNode> toDays(List<ItineraryItem> items) {
+        List<JsonNode> days = new ArrayList<>();
+        ArrayNode dayItems = null;
+        int dayIndex = -1;
+        for (ItineraryItem item : items) {
+            if (item.getDayIndex() != dayIndex) {
+                dayIndex = item.getDayIndex();
+                ObjectNode day = objectMapper.createObjectNode();
+                day.put("dayIndex", dayIndex);
+                dayItems = day.putArray("items");
+                days.add(day);
+            }
+            ObjectNode node = dayItems.addObject();
+            node.put("startTime", item.getStartTime().toString());
+            node.put("endTime", item.getEndTime().toString());
+            node.put("title", item.getTitle());
+            node.put("type", item.getType());
+            node.put("location", item.getLocation());
+            node.put("description", item.getDescription());
+            node.put("estimatedCost", item.getEstimatedCost().doubleValue());
+            if (item.getNotes() != null) {
+                node.put("notes", item.getNotes());
+            }
+        }
+        return days;
+    }
+
+    private JsonNode toBudget(double[] budget) {
+        ObjectNode tail = objectMapper.createObjectNode();
+        ObjectNode budgetNode = tail.putObject("budgetBreakdown");
+        for (int i = 0; i < budget.length; i++) {
+            budgetNode.put(CompactPlanParser.BUDGET_FIELDS[i], budget[i]);
+        }
+        return tail;
+    }
+
+    private boolean isCompactFormat() {
+        return "compact".equalsIgnoreCase(planFormat);
+    }
+
+    private String generate(Map<String, Object> requestBody, int promptLength, Supplier<String> loader,
+            Predicate<String> cacheable) {
+        long timingStart = RequestTimings.start(RequestTimings.Stage.LLM);
+        LlmGenerationEvent event = new LlmGenerationEvent();
+        event.begin();
+        LlmResponseCache.Lookup lookup = null;
+        try {
+            lookup = llmResponseCache.getOrLoad(cacheKey(requestBody), qwenConfig.getModel(), loader, cacheable);
+            return lookup.response();
+        } finally {
+            RequestTimings.stop(RequestTimings.Stage.LLM, timingStart);
+            event.end();
+            if (event.shouldCommit()) {
+                event.model = qwenConfig.getModel();
+                event.promptLength = promptLength;
+                event.outputLength = lookup != null ? lookup.response().length() : 0;
+                event.success = lookup != null;
+                event.cache = lookup != null ? lookup.result() : null;
+                event.commit();
+            }
+        }
+    }
+
+    Map<String, Object> buildRequestBody(String prompt) {
+        // 增加 token 限制,支持更长的行程规划
+        return buildRequestBody(isCompactFormat() ? buildCompactSystemPrompt() : buildSystemPrompt(), prompt, 6000);
+    }
+
+    private Map<String, Object> buildRequestBody(String systemPrompt, String prompt, int maxTokens) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", qwenConfig.getModel());
+
+        Map<String, Object> input = new HashMap<>();
+
+        // 系统提示词 + 用户输入
+        String fullPrompt = systemPrompt + "\n\n用户需求：\n" + prompt;
+
+        input.put("prompt", fullPrompt);
+        requestBody.put("input", input);
+
+        // 参数配置
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("result_format", "message");
+        parameters.put("max_tokens", maxTokens);
+        parameters.put("temperature", 0.7);
+        parameters.put("top_p", 0.8);
+        requestBody.put("parameters", parameters);
+        return requestBody;
+    }
+
+    /**
+     * 提示词对应的缓存键，见 {@link LlmResponseCache}
+     */
+    public String cacheKey(String prompt) {
+        return cacheKey(buildRequestBody(prompt));
+    }
+
+    /**
+     * 缓存键：请求体按键排序序列化后的 SHA-256，模型、参数或提示词任一变化都会得到不同的键
+     */
+    String cacheKey(Map<String, Object> requestBody) {
+        try {
+            byte[] canonical = objectMapper.writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(requestBody);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 只缓存完整的行程 JSON，被截断或格式错误的输出不缓存
+     */
+    boolean isCompletePlan(String generatedText) {
+        try {
+            return objectMapper.readTree(generatedText).has("days");
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    private String requestGeneration(Map<String, Object> requestBody) {
+        try {
             logger.info("调用通义千问 API，模型：{}", qwenConfig.getModel());
 
-            // 调用 API
-            String response = qwenWebClient.post()
+            // 调用 API，同时进行中的调用数受隔舱限制；超时取消请求，调用方放弃等待时许可也能按时归还
+            String response = llmBulkhead.call(() -> qwenWebClient.post()
                     .bodyValue(requestBody)
                     .retrieve()
                     .bodyToMono(String.class)
-                    .block();
+                    .timeout(Duration.ofMillis(qwenConfig.getTimeoutMs()),
+                            Mono.error(new RuntimeException("响应超时（" + qwenConfig.getTimeoutMs() + "ms）")))
+                    .block());
 
             logger.info("通义千问响应成功");
 
             // 解析响应,提取生成的文本
-            JsonNode responseNode = objectMapper.readTree(response);
-            String generatedText = responseNode
+            JsonNode choice = objectMapper.readTree(response)
                     .path("output")
                     .path("choices")
-                    .get(0)
+                    .get(0);
+            String generatedText = choice
                     .path("message")
                     .path("content")
                     .asText();
 
             logger.info("生成的文本长度: {} 字符", generatedText.length());
             logger.debug("生成的 JSON 内容: {}", generatedText);
-            
-            // 验证 JSON 是否完整
-            if (!generatedText.trim().endsWith("}")) {
-                logger.warn("警告: 生成的 JSON 可能不完整,未以 } 结尾");
+
+            // 达到 max_tokens 时输出被截断，由调用方按结构判断并续写
+            if ("length".equals(choice.path("finish_reason").asText())) {
+                logger.warn("警告: 生成内容达到 max_tokens 上限被截断");
             }
 
             return generatedText;
@@ -144,4 +460,34 @@ public class QwenService {
                 10. 确保 JSON 完整,所有字段必须正确闭合
                 """;
     }
+
+    /**
+     * 紧凑格式的系统提示词，格式说明见 {@link CompactPlanParser}
+     */
+    String buildCompactSystemPrompt() {
+        return """
+                你是一个专业的旅行规划助手。请根据用户的需求生成详细的旅行行程规划。
+
+                要求：
+                1. 使用以下紧凑行格式输出,不要输出 JSON、markdown 标记或任何额外的文字说明
+                2. 每行一条记录,字段之间用 | 分隔,字段内容中不要出现 | 和换行
+                T|行程标题|目的地
+                D|第几天(从1开始)
+                I|开始时间|结束时间|类型|名称|具体地址|费用|简短描述(50字以内)|简短提示(30字以内)
+                B|交通费用|住宿费用|餐饮费用|门票费用|其他费用
+                END
+                3. 先输出一行 T,然后每天先输出一行 D,再按时间顺序输出当天的 I 行；所有天输出完后输出一行 B,最后输出 END
+                4. 类型用一个字母：a（景点）、r（餐厅）、h（住宿）、t（交通）、o（其他）
+                5. 时间格式为 HH:mm（24小时制）,费用为人民币（元）的数字,不带单位
+                6. 根据用户的预算合理安排行程,确保总费用不超过预算
+                7. 每天安排 3-5 个活动,时间合理分配
+                8. 示例：
+                T|杭州3日游|杭州
+                D|1
+                I|09:00|11:30|a|西湖风景区|杭州市西湖区龙井路1号|0|漫步苏堤白堤,欣赏湖光山色|早上人少适合拍照
+                I|12:00|13:00|r|楼外楼|杭州市西湖区孤山路30号|200|品尝西湖醋鱼等杭帮菜|
+                B|300|800|600|200|100
+                END
+                """;
+    }
 }
@@ -0,0 +1,163 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.util.GeoUtils;
+import com.example.tripservice.util.RouteOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 行程路线优化服务
+ * 按地理位置重新排列每天的行程项顺序，减少城市内往返奔波。
+ *
+ * 住宿（hotel）和餐饮（restaurant）作为固定锚点保持原有时段不变，
+ * 两个锚点之间的可移动行程项单独求解，锚点作为该段路径的固定起点/终点。
+ * 缺少坐标或时间的行程项同样视为锚点。
+ */
+@Service
+public class RouteOptimizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteOptimizationService.class);
+
+    /**
+     * 优化多天行程，各天并行求解
+     *
+     * @param items 行程项，按 dayIndex、startTime 排序
+     * @return 时段发生变化的行程项
+     */
+    public List<ItineraryItem> optimizeDays(List<ItineraryItem> items) {
+        Map<Integer, List<ItineraryItem>> days = items.stream()
+                .collect(Collectors.groupingBy(ItineraryItem::getDayIndex, LinkedHashMap::new, Collectors.toList()));
+
+        return days.values().parallelStream()
+                .map(this::optimizeDay)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 优化单天行程
+     *
+     * @param dayItems 同一天的行程项，按 startTime 排序
+     * @return 时段发生变化的行程项
+     */
+    public List<ItineraryItem> optimizeDay(List<ItineraryItem> dayItems) {
+        int size = dayItems.size();
+        double[][] points = new double[size][];
+        boolean[] anchor = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ItineraryItem item = dayItems.get(i);
+            points[i] = GeoUtils.parseLngLat(item.getCoordinates());
+            anchor[i] = isAnchor(item, points[i]);
+        }
+
+        List<ItineraryItem> changed = new ArrayList<>();
+        double before = 0;
+        double after = 0;
+
+        int i = 0;
+        while (i < size) {
+            if (anchor[i]) {
+                i++;
+                continue;
+            }
+            int segmentStart = i;
+            while (i < size && !anchor[i]) {
+                i++;
+            }
+            int segmentEnd = i; // exclusive
+
+            int startAnchor = segmentStart > 0 && points[segmentStart - 1] != null ? segmentStart - 1 : -1;
+            int endAnchor = segmentEnd < size && points[segmentEnd] != null ? segmentEnd : -1;
+
+            double[] lengths = optimizeSegment(dayItems, points, segmentStart, segmentEnd,
+                    startAnchor, endAnchor, changed);
+            before += lengths[0];
+            after += lengths[1];
+        }
+
+        if (!changed.isEmpty()) {
+            logger.debug("第 {} 天路线优化: {}m -> {}m, 调整 {} 个行程项",
+                    dayItems.get(0).getDayIndex(), Math.round(before), Math.round(after), changed.size());
+        }
+        return changed;
+    }
+
+    /**
+     * 求解一段可移动行程项的顺序，并把原有时段按位置重新分配
+     *
+     * @return [优化前路径长度, 优化后路径长度]
+     */
+    private double[] optimizeSegment(List<ItineraryItem> dayItems, double[][] points,
+            int segmentStart, int segmentEnd, int startAnchor, int endAnchor, List<ItineraryItem> changed) {
+        int movable = segmentEnd - segmentStart;
+        boolean fixedStart = startAnchor >= 0;
+        boolean fixedEnd = endAnchor >= 0;
+        int offset = fixedStart ? 1 : 0;
+        int n = movable + offset + (fixedEnd ? 1 : 0);
+
+        double[] lng = new double[n];
+        double[] lat = new double[n];
+        if (fixedStart) {
+            lng[0] = points[startAnchor][0];
+            lat[0] = points[startAnchor][1];
+        }
+        for (int k = 0; k < movable; k++) {
+            lng[offset + k] = points[segmentStart + k][0];
+            lat[offset + k] = points[segmentStart + k][1];
+        }
+        if (fixedEnd) {
+            lng[n - 1] = points[endAnchor][0];
+            lat[n - 1] = points[endAnchor][1];
+        }
+
+        double[] dist = GeoUtils.distanceMatrix(lng, lat);
+        int[] identity = new int[n];
+        for (int k = 0; k < n; k++) {
+            identity[k] = k;
+        }
+        int[] order = RouteOptimizer.solve(dist, n, fixedStart, fixedEnd);
+        double before = RouteOptimizer.pathLength(dist, n, identity);
+        double after = RouteOptimizer.pathLength(dist, n, order);
+
+        if (after >= before) {
+            return new double[] { before, before };
+        }
+
+        // 记录原有时段，按新顺序依次填入
+        LocalTime[] starts = new LocalTime[movable];
+        LocalTime[] ends = new LocalTime[movable];
+        ItineraryItem[] reordered = new ItineraryItem[movable];
+        for (int k = 0; k < movable; k++) {
+            ItineraryItem item = dayItems.get(segmentStart + k);
+            starts[k] = item.getStartTime();
+            ends[k] = item.getEndTime();
+            reordered[k] = dayItems.get(segmentStart + order[offset + k] - offset);
+        }
+        for (int k = 0; k < movable; k++) {
+            ItineraryItem item = reordered[k];
+            if (item != dayItems.get(segmentStart + k)) {
+                item.setStartTime(starts[k]);
+                item.setEndTime(ends[k]);
+                changed.add(item);
+            }
+        }
+        return new double[] { before, after };
+    }
+
+    private boolean isAnchor(ItineraryItem item, double[] point) {
+        if (point == null || item.getStartTime() == null || item.getEndTime() == null) {
+            return true;
+        }
+        String type = item.getType();
+        return "hotel".equals(type) || "restaurant".equals(type);
+    }
+}
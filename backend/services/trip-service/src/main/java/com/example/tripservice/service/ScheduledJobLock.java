@@ -0,0 +1,79 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.entity.ScheduledLock;
+import com.example.tripservice.repository.ScheduledLockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 定时任务锁（scheduled_locks 表）
+ *
+ * 多个实例的 @Scheduled 在同一时刻触发，只有加锁成功的实例执行任务。锁有最长持有时间，
+ * 持有者宕机时到期后自动释放；释放时至少保留到最短持有时间，避免时钟略有偏差的实例在任务结束后立即再执行一次。
+ * 不占用数据库连接或事务，加锁与释放各是一条短语句。
+ */
+@Service
+public class ScheduledJobLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledJobLock.class);
+
+    private final ScheduledLockRepository repository;
+    // 进程名（pid@主机名）加随机后缀，同一主机上的多个实例也能区分
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    public ScheduledJobLock(ScheduledLockRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * 加锁并执行任务，其他实例持有锁时跳过
+     *
+     * @param lockAtMostFor  最长持有时间，应大于任务的最长耗时
+     * @param lockAtLeastFor 最短持有时间
+     * @return 是否执行了任务
+     */
+    public boolean runExclusively(String name, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        if (!tryLock(name, lockedAt, lockedAt.plus(lockAtMostFor))) {
+            logger.info("定时任务 {} 已由其他实例执行，跳过", name);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            LocalDateTime minimum = lockedAt.plus(lockAtLeastFor);
+            LocalDateTime now = LocalDateTime.now();
+            repository.release(name, owner, now.isAfter(minimum) ? now : minimum);
+        }
+    }
+
+    private boolean tryLock(String name, LocalDateTime now, LocalDateTime until) {
+        if (repository.acquireExpired(name, now, until, owner) > 0) {
+            return true;
+        }
+        if (repository.existsById(name)) {
+            return false;
+        }
+        // 首次加锁：插入记录，主键冲突说明其他实例同时插入
+        ScheduledLock lock = new ScheduledLock();
+        lock.setName(name);
+        lock.setLockedAt(now);
+        lock.setLockedUntil(until);
+        lock.setLockedBy(owner);
+        try {
+            repository.save(lock);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.util.HnswIndex;
+import com.example.tripservice.util.NgramEmbedder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 语义近似提示词缓存
+ *
+ * 语音输入（rawInput）对同一需求有无数种说法（"想去杭州玩三天"与"杭州三日游"），按键精确匹配的缓存永远无法命中。
+ * 这里用本地的字符 n-gram 哈希（{@link NgramEmbedder}）把归一化后的描述向量化，
+ * 已生成过的描述放入进程内 HNSW 索引（{@link HnswIndex}），新请求与最相似的描述余弦相似度达到阈值时，
+ * 直接复用那次生成在 {@link LlmResponseCache} 中的结果。
+ *
+ * 只在行程形态（目的地、天数、人数档、预算档、偏好，见 TripTemplateService.shape）完全相同的请求之间复用，
+ * 相似度只用来判断自然语言描述是否是同一个意思。描述中的否定约束（"不要爬山"）字符上与肯定说法几乎相同，
+ * 作为形态的一部分要求完全一致（见 NgramEmbedder.negations），否定对象不同的描述即使相似度超过阈值也不会命中。
+ * 形态中的人数与预算是分档比较的，同一档内的请求人数可以不同（3-4 人），人均预算可以相差两倍多。
+ * 索引同时记录来源请求的人数，命中时行程项费用与预算明细按人数比例换算（与模板实例化相同，见 TripTemplateService.scaleCosts）；
+ * 换算后行程项费用合计超出本次请求的总预算时不复用，计为 miss，交给大模型按实际预算重新生成。
+ * 索引只保存向量、形态哈希、来源人数与大模型缓存键，
+ * 生成结果仍由大模型响应缓存持有，过期后对应的索引项自然失效（计为 stale）。
+ * 索引不持久化，重启后随流量重建；达到条数上限时整体清空重建。
+ *
+ * 指标：qwen.semantic.requests（Counter，result=hit/miss/stale/bypass）、qwen.semantic.lookup（Timer，查找耗时）
+ */
+@Service
+public class SemanticPromptCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticPromptCache.class);
+
+    public static final String RESULT_HIT = "hit";
+    public static final String RESULT_MISS = "miss";
+    public static final String RESULT_STALE = "stale";
+    public static final String RESULT_BYPASS = "bypass";
+
+    // SHA-256 缓存键按 4 个 long 保存
+    private static final int KEY_WORDS = 4;
+
+    private final LlmResponseCache llmResponseCache;
+    private final TripTemplateService tripTemplateService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final float threshold;
+    private final int maxEntries;
+    private final int efSearch;
+    private final int candidates;
+    private final NgramEmbedder embedder;
+    private final HnswIndex index;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Timer lookupTimer;
+
+    private long[] shapeHashes = new long[0];
+    private long[] cacheKeys = new long[0];
+    private int[] participants = new int[0];
+
+    public SemanticPromptCache(LlmResponseCache llmResponseCache, TripTemplateService tripTemplateService,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${qwen.semantic-cache.enabled:true}") boolean enabled,
+            @Value("${qwen.semantic-cache.threshold:0.85}") float threshold,
+            @Value("${qwen.semantic-cache.dimensions:128}") int dimensions,
+            @Value("${qwen.semantic-cache.max-entries:200000}") int maxEntries,
+            @Value("${qwen.semantic-cache.m:16}") int m,
+            @Value("${qwen.semantic-cache.ef-construction:64}") int efConstruction,
+            @Value("${qwen.semantic-cache.ef-search:32}") int efSearch,
+            @Value("${qwen.semantic-cache.candidates:8}") int candidates) {
+        this.llmResponseCache = llmResponseCache;
+        this.tripTemplateService = tripTemplateService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.maxEntries = maxEntries;
+        this.efSearch = efSearch;
+        this.candidates = candidates;
+        this.embedder = new NgramEmbedder(dimensions);
+        this.index = new HnswIndex(dimensions, m, efConstruction, enabled ? 1024 : 16);
+        for (String result : new String[] { RESULT_HIT, RESULT_MISS, RESULT_STALE, RESULT_BYPASS }) {
+            counters.put(result, Counter.builder("qwen.semantic.requests")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+        this.lookupTimer = Timer.builder("qwen.semantic.lookup")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找描述相近、形态相同的已生成结果
+     *
+     * @return 大模型生成的行程 JSON，费用已按本次请求的人数换算；未命中或不适用时返回 null
+     */
+    public String find(CreateTripRequest request) {
+        Query query = query(request);
+        if (query == null) {
+            counters.get(RESULT_BYPASS).increment();
+            return null;
+        }
+
+        long start = System.nanoTime();
+        String key = null;
+        int sourceParticipants = 0;
+        float similarity = 0;
+        lock.readLock().lock();
+        try {
+            HnswIndex.Neighbours neighbours = index.search(query.vector(), candidates, efSearch);
+            for (int i = 0; i < neighbours.ids().length && neighbours.similarities()[i] >= threshold; i++) {
+                int id = neighbours.ids()[i];
+                if (shapeHashes[id] == query.shapeHash()) {
+                    key = cacheKey(id);
+                    sourceParticipants = participants[id];
+                    similarity = neighbours.similarities()[i];
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+            lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (key == null) {
+            counters.get(RESULT_MISS).increment();
+            return null;
+        }
+        String response = llmResponseCache.peek(key);
+        if (response == null) {
+            counters.get(RESULT_STALE).increment();
+            return null;
+        }
+        String adapted = adapt(response, sourceParticipants, request);
+        if (adapted == null) {
+            counters.get(RESULT_MISS).increment();
+            return null;
+        }
+        counters.get(RESULT_HIT).increment();
+        logger.info("语义缓存命中，相似度 {}，来源人数 {}", String.format("%.3f", similarity), sourceParticipants);
+        return adapted;
+    }
+
+    /**
+     * 记录一次生成，之后描述相近的请求可以复用
+     *
+     * @param cacheKey 这次生成在大模型响应缓存中的键，见 QwenService.cacheKey
+     */
+    public void record(CreateTripRequest request, String cacheKey) {
+        Query query = query(request);
+        if (query == null) {
+            return;
+        }
+        byte[] keyBytes = HexFormat.of().parseHex(cacheKey);
+        lock.writeLock().lock();
+        try {
+            if (index.size() >= maxEntries) {
+                logger.info("语义缓存索引达到上限 {} 条，清空重建", maxEntries);
+                index.clear();
+            }
+            int id = index.add(query.vector());
+            if (id >= shapeHashes.length) {
+                int capacity = Math.min(Math.max(1024, shapeHashes.length * 2), Math.max(maxEntries, id + 1));
+                shapeHashes = Arrays.copyOf(shapeHashes, capacity);
+                cacheKeys = Arrays.copyOf(cacheKeys, capacity * KEY_WORDS);
+                participants = Arrays.copyOf(participants, capacity);
+            }
+            shapeHashes[id] = query.shapeHash();
+            participants[id] = TripTemplateService.participants(request.getParticipants());
+            ByteBuffer buffer = ByteBuffer.wrap(keyBytes);
+            for (int i = 0; i < KEY_WORDS; i++) {
+                cacheKeys[id * KEY_WORDS + i] = buffer.getLong();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把来源请求的生成结果换算到本次请求的人数
+     *
+     * @return 换算后的行程 JSON；超出本次预算或无法解析时返回 null
+     */
+    private String adapt(String response, int sourceParticipants, CreateTripRequest request) {
+        int requested = TripTemplateService.participants(request.getParticipants());
+        BigDecimal budget = request.getBudget() != null && request.getBudget().signum() > 0 ? request.getBudget() : null;
+        if (requested == sourceParticipants && budget == null) {
+            return response;
+        }
+        try {
+            JsonNode plan = objectMapper.readTree(response);
+            if (requested != sourceParticipants) {
+                TripTemplateService.scaleCosts(plan, BigDecimal.valueOf(requested)
+                        .divide(BigDecimal.valueOf(sourceParticipants), 10, RoundingMode.HALF_UP));
+            }
+            if (budget != null && itemCost(plan).compareTo(budget) > 0) {
+                logger.debug("语义缓存结果换算后超出预算 {}，不复用", budget);
+                return null;
+            }
+            return requested == sourceParticipants ? response : objectMapper.writeValueAsString(plan);
+        } catch (Exception e) {
+            logger.warn("语义缓存结果解析失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static BigDecimal itemCost(JsonNode plan) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (JsonNode dayNode : plan.path("days")) {
+            for (JsonNode itemNode : dayNode.path("items")) {
+                total = total.add(itemNode.path("estimatedCost").decimalValue());
+            }
+        }
+        return total;
+    }
+
+    private Query query(CreateTripRequest request) {
+        if (!enabled || request.getRawInput() == null || request.getRawInput().isBlank()) {
+            return null;
+        }
+        String shape = tripTemplateService.shape(request);
+        if (shape == null) {
+            return null;
+        }
+        float[] vector = embedder.embed(request.getRawInput());
+        if (vector == null) {
+            return null;
+        }
+        String negations = NgramEmbedder.negations(request.getRawInput());
+        return new Query(vector, NgramEmbedder.hash64(shape + "#" + negations));
+    }
+
+    private String cacheKey(int id) {
+        ByteBuffer buffer = ByteBuffer.allocate(KEY_WORDS * Long.BYTES);
+        for (int i = 0; i < KEY_WORDS; i++) {
+            buffer.putLong(cacheKeys[id * KEY_WORDS + i]);
+        }
+        return HexFormat.of().formatHex(buffer.array());
+    }
+
+    private record Query(float[] vector, long shapeHash) {
+    }
+}
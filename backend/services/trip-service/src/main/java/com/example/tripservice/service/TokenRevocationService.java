@@ -0,0 +1,132 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.entity.RevokedToken;
+import com.example.tripservice.repository.RevokedTokenRepository;
+import com.example.tripservice.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 访问令牌吊销服务
+ *
+ * 吊销记录（jti）持久化在 revoked_tokens 表，同时镜像到内存布隆过滤器：
+ * 绝大多数从未吊销的令牌在过滤器上直接判定为有效，不访问数据库；
+ * 只有过滤器命中（真正吊销或误报）时才查库确认，确认结果短暂缓存。
+ *
+ * 多实例部署时，其他实例的吊销通过增量刷新（按 revoked_at 水位线）在数秒内同步；
+ * 定期全量重建过滤器，丢弃已过期的 jti 并按实际数量扩容。
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // 增量刷新的水位线回退量，覆盖多实例间的时钟偏差与提交延迟
+    private static final Duration WATERMARK_OVERLAP = Duration.ofSeconds(30);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${jwt.revocation.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${jwt.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter filter = new BloomFilter(1024, 0.001);
+    private volatile LocalDateTime watermark = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // 过滤器命中后的查库结果，jti -> 是否已吊销
+    private final Cache<String, Boolean> confirmed = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 令牌是否已吊销
+     * 过滤器未命中时为纯内存判断（纳秒级）
+     */
+    public boolean isRevoked(String jti) {
+        if (!filter.mightContain(jti)) {
+            return false;
+        }
+        return confirmed.get(jti, revokedTokenRepository::existsById);
+    }
+
+    /**
+     * 吊销令牌
+     *
+     * @param jti       令牌 ID
+     * @param userId    令牌所属用户
+     * @param expiresAt 令牌过期时间，过期后记录可清理
+     */
+    public void revoke(String jti, Long userId, Date expiresAt) {
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setJti(jti);
+        revokedToken.setUserId(userId);
+        revokedToken.setExpiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()));
+        revokedTokenRepository.save(revokedToken);
+
+        // 先落库再加入过滤器：全量重建时替换过滤器后会再做一次增量刷新，不会丢失
+        filter.put(jti);
+        confirmed.put(jti, Boolean.TRUE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuild();
+    }
+
+    /**
+     * 增量刷新：加载水位线之后其他实例新吊销的 jti
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:5000}",
+            initialDelayString = "${jwt.revocation.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        LocalDateTime start = LocalDateTime.now();
+        List<String> jtis = revokedTokenRepository.findJtisRevokedSince(watermark.minus(WATERMARK_OVERLAP));
+        BloomFilter current = filter;
+        for (String jti : jtis) {
+            current.put(jti);
+            // 之前因误报查库得到"未吊销"的结果可能已过时
+            confirmed.invalidate(jti);
+        }
+        watermark = start;
+    }
+
+    /**
+     * 全量重建：清理过期记录，按当前数量重新分配过滤器
+     */
+    @Scheduled(cron = "${jwt.revocation.rebuild-cron:0 0 * * * *}")
+    public synchronized void rebuild() {
+        LocalDateTime start = LocalDateTime.now();
+        int purged = revokedTokenRepository.deleteExpired(start);
+
+        List<String> jtis = revokedTokenRepository.findActiveJtis(start);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, jtis.size() * 2L), falsePositiveRate);
+        jtis.forEach(rebuilt::put);
+        filter = rebuilt;
+        confirmed.invalidateAll();
+
+        // 补上加载期间新增的吊销
+        watermark = start;
+        refresh();
+
+        logger.info("吊销令牌过滤器已重建: {} 个有效记录, 清理 {} 个过期记录, {} 位 / {} 个哈希",
+                jtis.size(), purged, rebuilt.getBitCount(), rebuilt.getHashCount());
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.util.GeoUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行程点之间的交通耗时估算服务
+ *
+ * 默认使用本地模型：球面距离 × 绕行系数 ÷ 平均车速 + 固定换乘耗时，无需调用外部 API。
+ * 开启高德精化后，缓存未命中的点对会在后台线程中调用高德驾车路径规划 API 修正结果，
+ * 调用经过 {@link AmapGeocodingService} 的速率限制，不会阻塞请求线程。
+ * 精化失败的点对在 travel-time.amap-refine.retry-after-minutes 内不再提交，避免反复读取同一点对时持续重试、耗尽共享配额。
+ *
+ * 结果存入对称的点对缓存（A→B 与 B→A 共用），坐标按精度取整作为键，
+ * 同一城市的重复行程可以直接复用之前的结果。
+ */
+@Service
+public class TravelTimeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TravelTimeService.class);
+
+    public static final String SOURCE_LOCAL = "local";
+    public static final String SOURCE_AMAP = "amap";
+
+    @Value("${travel-time.speed-kmh:25}")
+    private double speedKmh;
+
+    @Value("${travel-time.detour-factor:1.4}")
+    private double detourFactor;
+
+    @Value("${travel-time.overhead-minutes:5}")
+    private int overheadMinutes;
+
+    @Value("${travel-time.coordinate-scale:1000}")
+    private int coordinateScale; // 1000 即保留 3 位小数（约 100 米）
+
+    @Value("${travel-time.amap-refine.enabled:false}")
+    private boolean amapRefineEnabled;
+
+    @Value("${amap.api.key:}")
+    private String apiKey;
+
+    @Value("${amap.api.base-url:https://restapi.amap.com}")
+    private String baseUrl;
+
+    private final Cache<PairKey, TravelEstimate> cache;
+    // 精化失败的点对，条目过期前不再重试
+    private final Cache<PairKey, Boolean> failedRefinements;
+    private final Set<PairKey> pendingRefinements = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refineExecutor;
+    private final AmapGeocodingService amapGeocodingService;
+    private final ObjectMapper objectMapper;
+    private final WebClient webClient;
+
+    public TravelTimeService(AmapGeocodingService amapGeocodingService, ObjectMapper objectMapper,
+            @Value("${travel-time.cache.max-entries:20000}") int maxEntries,
+            @Value("${travel-time.amap-refine.queue-capacity:200}") int queueCapacity,
+            @Value("${travel-time.amap-refine.retry-after-minutes:60}") long retryAfterMinutes) {
+        this.amapGeocodingService = amapGeocodingService;
+        this.objectMapper = objectMapper;
+        this.webClient = WebClient.builder().build();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+        this.failedRefinements = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(retryAfterMinutes))
+                .build();
+        // 高德调用本身受 3次/秒 限制，单线程即可；队列有界，满时拒绝
+        this.refineExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "travel-time-refine");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 估算两点间交通耗时
+     * 缓存命中时直接返回；未命中时立即返回本地估算。
+     * 结果仍为本地估算时按需提交后台精化，精化完成后覆盖缓存；最近精化失败过的点对不提交
+     */
+    public TravelEstimate estimate(double lng1, double lat1, double lng2, double lat2) {
+        PairKey key = PairKey.of(lng1, lat1, lng2, lat2, coordinateScale);
+        TravelEstimate cached = cache.getIfPresent(key);
+        if (cached == null) {
+            // 不覆盖并发完成的精化结果
+            TravelEstimate local = localEstimate(lng1, lat1, lng2, lat2);
+            TravelEstimate existing = cache.asMap().putIfAbsent(key, local);
+            cached = existing != null ? existing : local;
+        }
+        if (SOURCE_LOCAL.equals(cached.source())) {
+            scheduleRefinement(key, lng1, lat1, lng2, lat2);
+        }
+        return cached;
+    }
+
+    /**
+     * 本地估算：球面距离 × 绕行系数 ÷ 平均车速 + 固定换乘耗时
+     */
+    public TravelEstimate localEstimate(double lng1, double lat1, double lng2, double lat2) {
+        double meters = GeoUtils.haversineMeters(lng1, lat1, lng2, lat2) * detourFactor;
+        int seconds = (int) Math.round(meters / (speedKmh / 3.6)) + overheadMinutes * 60;
+        return new TravelEstimate(seconds, (int) Math.round(meters), SOURCE_LOCAL);
+    }
+
+    public int getCacheSize() {
+        return (int) cache.estimatedSize();
+    }
+
+    private void scheduleRefinement(PairKey key, double lng1, double lat1, double lng2, double lat2) {
+        if (!amapRefineEnabled || apiKey == null || apiKey.isEmpty()) {
+            return;
+        }
+        if (failedRefinements.getIfPresent(key) != null || !pendingRefinements.add(key)) {
+            return;
+        }
+        try {
+            refineExecutor.execute(() -> {
+                try {
+                    TravelEstimate refined = fetchAmapEstimate(lng1, lat1, lng2, lat2);
+                    if (refined != null) {
+                        cache.put(key, refined);
+                    } else {
+                        failedRefinements.put(key, Boolean.TRUE);
+                    }
+                } finally {
+                    pendingRefinements.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满，放弃本次精化，下次读取时再提交
+            pendingRefinements.remove(key);
+        }
+    }
+
+    /**
+     * 调用高德驾车路径规划 API
+     */
+    private TravelEstimate fetchAmapEstimate(double lng1, double lat1, double lng2, double lat2) {
+        try {
+            amapGeocodingService.rateLimitWait();
+
+            String origin = String.format(Locale.ROOT, "%.6f,%.6f", lng1, lat1);
+            String destination = String.format(Locale.ROOT, "%.6f,%.6f", lng2, lat2);
+            String response = webClient.get()
+                    .uri(baseUrl + "/v3/direction/driving?key={key}&origin={origin}&destination={destination}"
+                            + "&extensions=base", apiKey, origin, destination)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+
+            JsonNode root = objectMapper.readTree(response);
+            if (!"1".equals(root.path("status").asText())) {
+                logger.warn("路径规划失败: {}", root.path("info").asText());
+                return null;
+            }
+
+            JsonNode path = root.path("route").path("paths").path(0);
+            if (path.isMissingNode()) {
+                return null;
+            }
+
+            int seconds = path.path("duration").asInt() + overheadMinutes * 60;
+            int meters = path.path("distance").asInt();
+            return new TravelEstimate(seconds, meters, SOURCE_AMAP);
+
+        } catch (Exception e) {
+            logger.warn("路径规划异常: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refineExecutor.shutdownNow();
+    }
+
+    /**
+     * 交通耗时估算结果
+     *
+     * @param seconds 预计耗时（秒）
+     * @param meters  预计距离（米）
+     * @param source  来源：local / amap
+     */
+    public record TravelEstimate(int seconds, int meters, String source) {
+    }
+
+    /**
+     * 对称点对缓存键：坐标按精度取整后打包为 long，较小者在前
+     */
+    record PairKey(long first, long second) {
+
+        static PairKey of(double lng1, double lat1, double lng2, double lat2, int scale) {
+            long a = pack(lng1, lat1, scale);
+            long b = pack(lng2, lat2, scale);
+            return a <= b ? new PairKey(a, b) : new PairKey(b, a);
+        }
+
+        private static long pack(double lng, double lat, int scale) {
+            long x = Math.round(lng * scale);
+            long y = Math.round(lat * scale);
+            return (x << 32) | (y & 0xFFFFFFFFL);
+        }
+    }
+}
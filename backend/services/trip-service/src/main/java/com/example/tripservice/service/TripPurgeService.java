@@ -0,0 +1,75 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.entity.Trip;
+import com.example.tripservice.repository.ItineraryItemRepository;
+import com.example.tripservice.repository.TripRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 软删除行程的后台清理
+ * 按批次物理删除已标记删除的行程及其行程项，每批一个短事务，避免长时间持锁
+ *
+ * 行程按实体删除而不是 JPQL 批量 DELETE：批量语句会清空整个 trips 二级缓存区域，
+ * 有待清理行程时每轮清理都会让所有用户的归属校验回到数据库。
+ */
+@Service
+public class TripPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripPurgeService.class);
+
+    private final TripRepository tripRepository;
+    private final ItineraryItemRepository itineraryItemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${trip.delete.purge-batch-size:100}")
+    private int batchSize;
+
+    @Value("${trip.delete.purge-max-batches:20}")
+    private int maxBatchesPerSweep;
+
+    public TripPurgeService(TripRepository tripRepository, ItineraryItemRepository itineraryItemRepository,
+            TransactionTemplate transactionTemplate) {
+        this.tripRepository = tripRepository;
+        this.itineraryItemRepository = itineraryItemRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${trip.delete.purge-interval-ms:60000}")
+    public void purgeDeletedTrips() {
+        int purged = 0;
+        for (int batch = 0; batch < maxBatchesPerSweep; batch++) {
+            Integer count = transactionTemplate.execute(status -> purgeBatch());
+            if (count == null || count == 0) {
+                break;
+            }
+            purged += count;
+        }
+        if (purged > 0) {
+            logger.info("已清理 {} 个软删除行程", purged);
+        }
+    }
+
+    /**
+     * 清理一批软删除行程
+     *
+     * @return 本批清理的行程数
+     */
+    private int purgeBatch() {
+        List<Long> ids = tripRepository.findSoftDeletedIds(PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Trip> trips = tripRepository.findAllById(ids);
+        itineraryItemRepository.deleteByTripIdIn(ids);
+        tripRepository.deleteAll(trips);
+        return trips.size();
+    }
+}
@@ -1,23 +1,33 @@
 package com.example.tripservice.service;
 
+import com.example.tripservice.config.ReadYourWritesGuard;
 import com.example.tripservice.dto.CreateTripRequest;
 import com.example.tripservice.dto.TripResponse;
 import com.example.tripservice.dto.ItineraryItemDto;
 import com.example.tripservice.entity.ItineraryItem;
 import com.example.tripservice.entity.Trip;
+import com.example.tripservice.jfr.ResponseBuildEvent;
+import com.example.tripservice.logging.LogContext;
 import com.example.tripservice.repository.ItineraryItemRepository;
 import com.example.tripservice.repository.TripRepository;
+import com.example.tripservice.util.RequestTimings;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,14 +51,51 @@ public class TripService {
     @Autowired
     private AmapGeocodingService amapGeocodingService;
 
+    @Autowired
+    private RouteOptimizationService routeOptimizationService;
+
+    @Autowired
+    private TravelTimeService travelTimeService;
+
+    @Autowired
+    private ReadYourWritesGuard readYourWritesGuard;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private GenerationMetrics generationMetrics;
+
+    @Autowired
+    private TripTemplateService tripTemplateService;
+
+    @Autowired
+    private SemanticPromptCache semanticPromptCache;
+
+    @Autowired
+    private ParallelTripPlanner parallelTripPlanner;
+
+    @Value("${trip.delete.soft:false}")
+    private boolean softDelete;
+
     /**
      * 创建并生成行程
      */
     @Transactional
     public TripResponse createAndGenerateTrip(Long userId, CreateTripRequest request) {
+        readYourWritesGuard.recordWrite();
+        long generationStart = generationMetrics.begin();
+        boolean success = false;
+        try {
+            TripResponse response = generateTrip(userId, request);
+            success = true;
+            return response;
+        } finally {
+            generationMetrics.finish(generationStart, success);
+        }
+    }
+
+    private TripResponse generateTrip(Long userId, CreateTripRequest request) {
         logger.info("开始为用户 {} 创建行程", userId);
 
         // 1. 创建行程记录（状态：生成中）
@@ -73,20 +120,24 @@ public class TripService {
             }
         }
 
+        long stageStart = System.nanoTime();
         trip = tripRepository.save(trip);
+        long persistNanos = System.nanoTime() - stageStart;
+        // 后续日志带上行程 ID，由 LoggingContextInterceptor 在请求结束时清除
+        MDC.put(LogContext.TRIP_ID, String.valueOf(trip.getId()));
         logger.info("行程记录已创建，ID: {}", trip.getId());
 
         try {
-            // 2. 构建提示词
-            String prompt = buildPrompt(request);
-            logger.info("提示词构建完成，开始调用 AI 生成行程");
-
-            // 3. 调用 AI 生成行程
-            String generatedJson = qwenService.generateTripPlan(prompt);
-            logger.info("AI 生成完成，开始解析结果");
-
-            // 4. 解析生成结果
-            JsonNode resultNode = objectMapper.readTree(generatedJson);
+            // 2. 同一形态（目的地、天数、人数档、预算档、偏好）已有模板时直接实例化，跳过大模型与地理编码
+            String templateKey = tripTemplateService.templateKey(request);
+            JsonNode resultNode = tripTemplateService.findPlan(templateKey, request.getParticipants());
+            boolean fromTemplate = resultNode != null;
+            if (fromTemplate) {
+                logger.info("套用行程模板: {}", templateKey);
+            } else {
+                resultNode = requestPlan(request);
+            }
+            stageStart = System.nanoTime();
 
             // 更新标题
             String title = resultNode.path("title").asText();
@@ -94,54 +145,21 @@ public class TripService {
                 trip.setTitle(title);
             }
 
-            // 5. 保存行程项
-            List<ItineraryItem> items = new ArrayList<>();
-            JsonNode daysNode = resultNode.path("days");
-
-            for (JsonNode dayNode : daysNode) {
-                int dayIndex = dayNode.path("dayIndex").asInt();
-                JsonNode itemsNode = dayNode.path("items");
-
-                for (JsonNode itemNode : itemsNode) {
-                    ItineraryItem item = new ItineraryItem();
-                    item.setTripId(trip.getId());
-                    item.setDayIndex(dayIndex);
-
-                    // 解析时间
-                    String startTimeStr = itemNode.path("startTime").asText();
-                    String endTimeStr = itemNode.path("endTime").asText();
-                    item.setStartTime(java.time.LocalTime.parse(startTimeStr));
-                    item.setEndTime(java.time.LocalTime.parse(endTimeStr));
-
-                    item.setTitle(itemNode.path("title").asText());
-                    item.setType(itemNode.path("type").asText().toLowerCase());
-                    item.setLocation(itemNode.path("location").asText());
-                    item.setDescription(itemNode.path("description").asText());
-                    item.setEstimatedCost(BigDecimal.valueOf(
-                            itemNode.path("estimatedCost").asDouble()));
-
-                    if (itemNode.has("notes")) {
-                        item.setNotes(itemNode.path("notes").asText());
-                    }
-
-                    // 自动获取地理坐标
-                    String location = item.getLocation();
-                    if (location != null && !location.isEmpty()) {
-                        String coordinates = amapGeocodingService.geocodeAddress(location, trip.getDestination());
-                        if (coordinates != null) {
-                            item.setCoordinates(coordinates);
-                            logger.debug("已获取坐标: {} -> {}", location, coordinates);
-                        }
-                    }
+            // 3. 保存行程项
+            ParsedItems parsed = parseItems(resultNode, trip.getId(), trip.getDestination());
+            List<ItineraryItem> items = parsed.items();
 
-                    items.add(item);
-                }
-            }
+            // 解析阶段不含穿插其中的地理编码耗时
+            generationMetrics.recordStageNanos(GenerationMetrics.STAGE_PARSE,
+                    System.nanoTime() - stageStart - parsed.geocodeNanos());
+            generationMetrics.recordStageNanos(GenerationMetrics.STAGE_GEOCODE, parsed.geocodeNanos());
+            generationMetrics.recordGeocodeCount(parsed.geocodeCalls());
 
+            stageStart = System.nanoTime();
             itineraryItemRepository.saveAll(items);
             logger.info("已保存 {} 个行程项", items.size());
 
-            // 6. 更新行程状态和预算信息
+            // 4. 更新行程状态和预算信息
             JsonNode budgetNode = resultNode.path("budgetBreakdown");
             BigDecimal estimatedCost = BigDecimal.valueOf(
                     budgetNode.path("transport").asDouble() +
@@ -152,10 +170,17 @@ public class TripService {
 
             trip.setStatus("generated");
             trip = tripRepository.save(trip);
+            // 主键由序列分配，插入推迟到 flush；显式刷新，让持久化阶段包含批量插入的实际耗时
+            tripRepository.flush();
+            generationMetrics.recordStageNanos(GenerationMetrics.STAGE_PERSIST,
+                    persistNanos + System.nanoTime() - stageStart);
 
             logger.info("行程生成完成，总预算: {}, 预估费用: {}", trip.getBudget(), estimatedCost);
+            if (!fromTemplate) {
+                tripTemplateService.store(templateKey, request, trip.getTitle(), items, budgetNode);
+            }
 
-            // 7. 构建响应
+            // 5. 构建响应
             return buildTripResponse(trip, items, budgetNode);
 
         } catch (Exception e) {
@@ -166,43 +191,141 @@ public class TripService {
         }
     }
 
+    /**
+     * 构建提示词并调用 AI 生成行程，返回解析后的 JSON
+     */
+    private JsonNode requestPlan(CreateTripRequest request) throws JsonProcessingException {
+        // 构建提示词
+        long stageStart = System.nanoTime();
+        String prompt = buildPrompt(request);
+        stageStart = generationMetrics.recordStage(GenerationMetrics.STAGE_PROMPT, stageStart);
+        logger.debug("提示词构建完成，开始调用 AI 生成行程");
+
+        // 调用 AI 生成行程
+        // 带自然语言描述的请求先查语义缓存：同一形态下说法不同但意思相同的描述复用之前的生成结果
+        String generatedJson;
+        try {
+            generatedJson = semanticPromptCache.find(request);
+            if (generatedJson == null) {
+                generatedJson = generatePlan(request, prompt);
+                semanticPromptCache.record(request, qwenService.cacheKey(prompt));
+            }
+        } finally {
+            generationMetrics.recordStage(GenerationMetrics.STAGE_LLM, stageStart);
+        }
+        generationMetrics.recordOutputLength(generatedJson.length());
+        logger.debug("AI 生成完成，开始解析结果");
+
+        return objectMapper.readTree(generatedJson);
+    }
+
+    /**
+     * 解析行程项并自动获取地理坐标；已带坐标的行程项（来自模板）不再地理编码
+     */
+    private ParsedItems parseItems(JsonNode resultNode, Long tripId, String destination) {
+        List<ItineraryItem> items = new ArrayList<>();
+        long geocodeNanos = 0;
+        int geocodeCalls = 0;
+
+        for (JsonNode dayNode : resultNode.path("days")) {
+            int dayIndex = dayNode.path("dayIndex").asInt();
+            JsonNode itemsNode = dayNode.path("items");
+
+            for (JsonNode itemNode : itemsNode) {
+                ItineraryItem item = parseItineraryItem(itemNode, tripId, dayIndex);
+
+                String location = item.getLocation();
+                if (itemNode.hasNonNull("coordinates")) {
+                    item.setCoordinates(itemNode.path("coordinates").asText());
+                } else if (location != null && !location.isEmpty()) {
+                    long geocodeStart = System.nanoTime();
+                    String coordinates = amapGeocodingService.geocodeAddress(location, destination);
+                    geocodeNanos += System.nanoTime() - geocodeStart;
+                    geocodeCalls++;
+                    if (coordinates != null) {
+                        item.setCoordinates(coordinates);
+                        logger.debug("已获取坐标: {} -> {}", location, coordinates);
+                    }
+                }
+
+                items.add(item);
+            }
+        }
+        return new ParsedItems(items, geocodeNanos, geocodeCalls);
+    }
+
+    /**
+     * 调用 AI 生成行程：长行程逐日并行生成，其余一次生成
+     */
+    private String generatePlan(CreateTripRequest request, String prompt) {
+        if (parallelTripPlanner.applies(request)) {
+            return parallelTripPlanner.generate(request, prompt);
+        }
+        int days = request.getStartDate() != null && request.getEndDate() != null
+                ? (int) ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) + 1
+                : 0;
+        return qwenService.generateTripPlan(prompt, days);
+    }
+
+    /**
+     * 为模板预热生成行程内容：调用 AI 与地理编码后保存为模板，不创建行程记录
+     */
+    void generateTemplate(String templateKey, CreateTripRequest request) throws JsonProcessingException {
+        String prompt = buildPrompt(request);
+        JsonNode resultNode = objectMapper.readTree(generatePlan(request, prompt));
+        ParsedItems parsed = parseItems(resultNode, null, request.getDestination());
+        tripTemplateService.store(templateKey, request, resultNode.path("title").asText(), parsed.items(),
+                resultNode.path("budgetBreakdown"));
+    }
+
+    /**
+     * 解析结果，geocodeNanos / geocodeCalls 为其中地理编码的耗时与次数
+     */
+    private record ParsedItems(List<ItineraryItem> items, long geocodeNanos, int geocodeCalls) {
+    }
+
     /**
      * 获取用户的所有行程
      */
+    @Transactional(readOnly = true)
     public List<TripResponse> getUserTrips(Long userId) {
-        List<Trip> trips = tripRepository.findByUserIdOrderByCreatedAtDesc(userId);
-        List<TripResponse> responses = new ArrayList<>();
+        try (ReadYourWritesGuard.Pin ignored = readYourWritesGuard.pin()) {
+            List<Trip> trips = tripRepository.findByUserIdAndDeletedAtIsNullOrderByCreatedAtDesc(userId);
+            List<TripResponse> responses = new ArrayList<>();
+            if (trips.isEmpty()) {
+                return responses;
+            }
 
-        for (Trip trip : trips) {
-            List<ItineraryItem> items = itineraryItemRepository
-                    .findByTripIdOrderByDayIndexAscStartTimeAsc(trip.getId());
+            // 一次聚合查询汇总所有行程的费用，避免逐个加载行程项
+            Map<Long, BigDecimal> totalCosts = new HashMap<>();
+            List<Long> tripIds = trips.stream().map(Trip::getId).toList();
+            for (Object[] row : itineraryItemRepository.sumEstimatedCostByTripIds(tripIds)) {
+                if (row[1] != null) {
+                    totalCosts.put((Long) row[0], (BigDecimal) row[1]);
+                }
+            }
 
-            // 计算预算信息
-            BigDecimal totalCost = items.stream()
-                    .map(ItineraryItem::getEstimatedCost)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            for (Trip trip : trips) {
+                responses.add(buildSimpleTripResponse(trip, totalCosts.getOrDefault(trip.getId(), BigDecimal.ZERO)));
+            }
 
-            responses.add(buildSimpleTripResponse(trip, totalCost));
+            return responses;
         }
-
-        return responses;
     }
 
     /**
      * 获取行程详情
      */
+    @Transactional(readOnly = true)
     public TripResponse getTripDetail(Long tripId, Long userId) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
+        try (ReadYourWritesGuard.Pin ignored = readYourWritesGuard.pin()) {
+            Trip trip = findOwnedTrip(tripId, userId, "无权访问此行程");
 
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权访问此行程");
-        }
-
-        List<ItineraryItem> items = itineraryItemRepository
-                .findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
+            List<ItineraryItem> items = itineraryItemRepository
+                    .findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
 
-        return buildDetailedTripResponse(trip, items);
+            return buildDetailedTripResponse(trip, items);
+        }
     }
 
     /**
@@ -210,11 +333,15 @@ public class TripService {
      */
     @Transactional
     public void deleteTrip(Long tripId, Long userId) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权删除此行程");
 
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权删除此行程");
+        if (softDelete) {
+            // 软删除：立即对用户隐藏，行程项由后台任务批量清理
+            trip.setDeletedAt(LocalDateTime.now());
+            tripRepository.save(trip);
+            logger.info("已标记删除行程 {}", tripId);
+            return;
         }
 
         itineraryItemRepository.deleteByTripId(tripId);
@@ -223,16 +350,43 @@ public class TripService {
     }
 
     /**
-     * 更新行程信息
+     * 批量删除行程
+     * 只删除属于当前用户的行程，其余 ID 忽略
+     *
+     * @return 实际删除的行程数
      */
     @Transactional
-    public TripResponse updateTrip(Long tripId, Long userId, TripResponse updateData) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
+    public int deleteTrips(List<Long> tripIds, Long userId) {
+        readYourWritesGuard.recordWrite();
+        if (tripIds == null || tripIds.isEmpty()) {
+            return 0;
+        }
 
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权修改此行程");
+        List<Trip> ownedTrips = tripRepository.findOwnedTrips(tripIds, userId);
+        if (ownedTrips.isEmpty()) {
+            return 0;
+        }
+
+        // 逐个实体修改或删除（JDBC 批量执行），二级缓存只驱逐这些行程；
+        // 对 Trip 的 JPQL 批量语句会清空整个 trips 区域，影响所有用户的归属校验
+        if (softDelete) {
+            LocalDateTime deletedAt = LocalDateTime.now();
+            ownedTrips.forEach(trip -> trip.setDeletedAt(deletedAt));
+        } else {
+            itineraryItemRepository.deleteByTripIdIn(ownedTrips.stream().map(Trip::getId).toList());
+            tripRepository.deleteAll(ownedTrips);
         }
+        logger.info("已批量删除 {} 个行程: userId={}, soft={}", ownedTrips.size(), userId, softDelete);
+        return ownedTrips.size();
+    }
+
+    /**
+     * 更新行程信息
+     */
+    @Transactional
+    public TripResponse updateTrip(Long tripId, Long userId, TripResponse updateData) {
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
 
         // 更新基本信息
         if (updateData.getTitle() != null) {
@@ -258,12 +412,8 @@ public class TripService {
     @Transactional
     public TripResponse updateItineraryItem(Long tripId, Long userId, int itemIndex,
             java.util.Map<String, Object> updateData) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
-
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权修改此行程");
-        }
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
 
         List<ItineraryItem> items = itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
 
@@ -312,12 +462,8 @@ public class TripService {
      */
     @Transactional
     public TripResponse deleteItineraryItem(Long tripId, Long userId, int itemIndex) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
-
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权修改此行程");
-        }
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
 
         List<ItineraryItem> items = itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
 
@@ -337,12 +483,8 @@ public class TripService {
      */
     @Transactional
     public TripResponse addItineraryItem(Long tripId, Long userId, Map<String, Object> itemData) {
-        Trip trip = tripRepository.findById(tripId)
-                .orElseThrow(() -> new RuntimeException("行程不存在"));
-
-        if (!trip.getUserId().equals(userId)) {
-            throw new RuntimeException("无权修改此行程");
-        }
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
 
         ItineraryItem newItem = new ItineraryItem();
         newItem.setTripId(tripId);
@@ -394,9 +536,90 @@ public class TripService {
         return getTripDetail(tripId, userId);
     }
 
+    /**
+     * 按地理位置优化某一天的行程顺序
+     */
+    @Transactional
+    public TripResponse optimizeDay(Long tripId, Long userId, int dayIndex) {
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
+
+        List<ItineraryItem> items = itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
+        List<ItineraryItem> dayItems = items.stream()
+                .filter(item -> item.getDayIndex() == dayIndex)
+                .toList();
+
+        if (dayItems.isEmpty()) {
+            throw new RuntimeException("第 " + dayIndex + " 天的行程不存在");
+        }
+
+        List<ItineraryItem> changed = routeOptimizationService.optimizeDay(dayItems);
+        itineraryItemRepository.saveAll(changed);
+        logger.info("已优化行程路线: tripId={}, dayIndex={}, 调整 {} 项", tripId, dayIndex, changed.size());
+
+        return getTripDetail(tripId, userId);
+    }
+
+    /**
+     * 按地理位置优化整个行程的顺序（各天并行求解）
+     */
+    @Transactional
+    public TripResponse optimizeTrip(Long tripId, Long userId) {
+        readYourWritesGuard.recordWrite();
+        Trip trip = findOwnedTrip(tripId, userId, "无权修改此行程");
+
+        List<ItineraryItem> items = itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(tripId);
+        List<ItineraryItem> changed = routeOptimizationService.optimizeDays(items);
+        itineraryItemRepository.saveAll(changed);
+        logger.info("已优化行程路线: tripId={}, 调整 {} 项", tripId, changed.size());
+
+        return getTripDetail(tripId, userId);
+    }
+
     // ==================== 私有辅助方法 ====================
 
-    private String buildPrompt(CreateTripRequest request) {
+    /**
+     * 加载行程并校验归属，已软删除的行程视为不存在
+     */
+    private Trip findOwnedTrip(Long tripId, Long userId, String deniedMessage) {
+        Trip trip = tripRepository.findById(tripId)
+                .filter(t -> t.getDeletedAt() == null)
+                .orElseThrow(() -> new RuntimeException("行程不存在"));
+
+        if (!trip.getUserId().equals(userId)) {
+            throw new RuntimeException(deniedMessage);
+        }
+        return trip;
+    }
+
+    /**
+     * 将大模型返回的单个行程项转换为实体（不含坐标）
+     */
+    ItineraryItem parseItineraryItem(JsonNode itemNode, Long tripId, int dayIndex) {
+        ItineraryItem item = new ItineraryItem();
+        item.setTripId(tripId);
+        item.setDayIndex(dayIndex);
+
+        // 解析时间
+        String startTimeStr = itemNode.path("startTime").asText();
+        String endTimeStr = itemNode.path("endTime").asText();
+        item.setStartTime(java.time.LocalTime.parse(startTimeStr));
+        item.setEndTime(java.time.LocalTime.parse(endTimeStr));
+
+        item.setTitle(itemNode.path("title").asText());
+        item.setType(itemNode.path("type").asText().toLowerCase());
+        item.setLocation(itemNode.path("location").asText());
+        item.setDescription(itemNode.path("description").asText());
+        item.setEstimatedCost(BigDecimal.valueOf(
+                itemNode.path("estimatedCost").asDouble()));
+
+        if (itemNode.has("notes")) {
+            item.setNotes(itemNode.path("notes").asText());
+        }
+        return item;
+    }
+
+    String buildPrompt(CreateTripRequest request) {
         StringBuilder prompt = new StringBuilder();
 
         if (request.getRawInput() != null && !request.getRawInput().isEmpty()) {
@@ -417,6 +640,9 @@ public class TripService {
     }
 
     private TripResponse buildTripResponse(Trip trip, List<ItineraryItem> items, JsonNode budgetNode) {
+        long timingStart = RequestTimings.start(RequestTimings.Stage.BUILD);
+        ResponseBuildEvent event = new ResponseBuildEvent();
+        event.begin();
         TripResponse response = new TripResponse();
         response.setId(trip.getId());
         response.setTitle(trip.getTitle());
@@ -454,6 +680,7 @@ public class TripService {
         }
         response.setItinerary(itemDtos);
 
+        finishResponseBuild(event, timingStart, trip, items.size(), false);
         return response;
     }
 
@@ -477,7 +704,10 @@ public class TripService {
         return response;
     }
 
-    private TripResponse buildDetailedTripResponse(Trip trip, List<ItineraryItem> items) {
+    TripResponse buildDetailedTripResponse(Trip trip, List<ItineraryItem> items) {
+        long timingStart = RequestTimings.start(RequestTimings.Stage.BUILD);
+        ResponseBuildEvent event = new ResponseBuildEvent();
+        event.begin();
         TripResponse response = new TripResponse();
         response.setId(trip.getId());
         response.setTitle(trip.getTitle());
@@ -510,14 +740,56 @@ public class TripService {
         response.setBudgetSummary(budget);
 
         List<ItineraryItemDto> itemDtos = new ArrayList<>();
+        ItineraryItemDto previous = null;
         for (ItineraryItem item : items) {
-            itemDtos.add(toDto(item));
+            ItineraryItemDto dto = toDto(item);
+            if (previous != null && previous.getDayIndex().equals(dto.getDayIndex())) {
+                dto.setTravelFromPrevious(buildTravelLeg(previous, dto));
+            }
+            itemDtos.add(dto);
+            previous = dto;
         }
         response.setItinerary(itemDtos);
 
+        finishResponseBuild(event, timingStart, trip, items.size(), true);
         return response;
     }
 
+    private static void finishResponseBuild(ResponseBuildEvent event, long timingStart, Trip trip, int itemCount,
+            boolean detailed) {
+        RequestTimings.stop(RequestTimings.Stage.BUILD, timingStart);
+        event.end();
+        if (event.shouldCommit()) {
+            event.tripId = trip.getId() != null ? trip.getId() : 0L;
+            event.itemCount = itemCount;
+            event.detailed = detailed;
+            event.commit();
+        }
+    }
+
+    /**
+     * 估算相邻两个行程项之间的交通耗时，并校验时间是否来得及
+     */
+    private ItineraryItemDto.TravelLeg buildTravelLeg(ItineraryItemDto from, ItineraryItemDto to) {
+        ItineraryItemDto.Coordinates a = from.getCoordinates();
+        ItineraryItemDto.Coordinates b = to.getCoordinates();
+        if (a == null || b == null) {
+            return null;
+        }
+
+        TravelTimeService.TravelEstimate estimate = travelTimeService.estimate(
+                a.getLng(), a.getLat(), b.getLng(), b.getLat());
+
+        ItineraryItemDto.TravelLeg leg = new ItineraryItemDto.TravelLeg();
+        leg.setDurationMinutes((estimate.seconds() + 59) / 60);
+        leg.setDistanceMeters(estimate.meters());
+        leg.setSource(estimate.source());
+        if (from.getEndTime() != null && to.getStartTime() != null) {
+            leg.setFeasible(!from.getEndTime().plusSeconds(estimate.seconds()).isAfter(to.getStartTime()));
+        }
+        return leg;
+    }
+
     private BigDecimal calculateCategoryTotal(List<ItineraryItem> items, String type) {
         return items.stream()
                 .filter(item -> type.equals(item.getType()))
@@ -567,7 +839,7 @@ public class TripService {
                 }
             } catch (Exception e) {
                 // 解析失败时忽略坐标
-                System.err.println("Failed to parse coordinates: " + item.getCoordinates());
+                logger.warn("行程项坐标解析失败: itemId={}, coordinates={}", item.getId(), item.getCoordinates());
             }
         }
 
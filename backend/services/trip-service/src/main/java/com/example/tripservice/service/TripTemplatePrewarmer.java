@@ -0,0 +1,124 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.repository.TripRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行程模板预热
+ *
+ * 在低峰时段统计最近一段时间内生成成功的结构化请求，按行程形态计数，
+ * 为最常见且还没有模板（或模板即将过期）的形态提前调用大模型生成模板，让白天的同类请求直接命中。
+ * 每个形态以最近一次请求为代表生成，逐个串行执行，单个失败不影响其他形态。
+ * 多实例部署时每个实例都会触发，通过 {@link ScheduledJobLock} 只在一个实例上执行。
+ */
+@Service
+public class TripTemplatePrewarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripTemplatePrewarmer.class);
+
+    // 剩余有效期不足一天的模板也重新生成，避免白天过期
+    private static final Duration REFRESH_AHEAD = Duration.ofDays(1);
+
+    private static final String LOCK_NAME = "trip-template-prewarm";
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private TripTemplateService tripTemplateService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ScheduledJobLock scheduledJobLock;
+
+    @Value("${trip.template.prewarm.top:20}")
+    private int top;
+
+    @Value("${trip.template.prewarm.lookback-days:7}")
+    private int lookbackDays;
+
+    @Value("${trip.template.prewarm.lock-at-most-minutes:120}")
+    private long lockAtMostMinutes;
+
+    @Scheduled(cron = "${trip.template.prewarm.cron:0 0 3 * * *}")
+    public void prewarm() {
+        if (!tripTemplateService.isEnabled() || top <= 0) {
+            return;
+        }
+        scheduledJobLock.runExclusively(LOCK_NAME, Duration.ofMinutes(lockAtMostMinutes), Duration.ofMinutes(5),
+                this::generatePopular);
+    }
+
+    private void generatePopular() {
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, CreateTripRequest> representatives = new HashMap<>();
+        List<Object[]> rows = tripRepository.findTemplateCandidates(LocalDateTime.now().minusDays(lookbackDays));
+        for (Object[] row : rows) {
+            CreateTripRequest request = toRequest(row);
+            String key = tripTemplateService.templateKey(request);
+            if (key != null) {
+                counts.merge(key, 1, Integer::sum);
+                representatives.put(key, request);
+            }
+        }
+
+        List<String> popular = counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(top)
+                .map(Map.Entry::getKey)
+                .toList();
+        int generated = 0;
+        for (String key : popular) {
+            if (tripTemplateService.hasTemplate(key, REFRESH_AHEAD)) {
+                continue;
+            }
+            try {
+                tripService.generateTemplate(key, representatives.get(key));
+                generated++;
+            } catch (Exception e) {
+                logger.warn("行程模板预热失败: {}, {}", key, e.getMessage());
+            }
+        }
+        logger.info("行程模板预热完成: 最近 {} 天 {} 个行程、{} 种形态，生成 {} 个模板",
+                lookbackDays, rows.size(), counts.size(), generated);
+    }
+
+    private CreateTripRequest toRequest(Object[] row) {
+        CreateTripRequest request = new CreateTripRequest();
+        request.setDestination((String) row[0]);
+        request.setStartDate((LocalDate) row[1]);
+        request.setEndDate((LocalDate) row[2]);
+        request.setParticipants((Integer) row[3]);
+        request.setBudget((BigDecimal) row[4]);
+        // 行程中的偏好按 JSON 字符串保存，见 TripService.generateTrip
+        String preferences = (String) row[5];
+        if (preferences != null && !preferences.isEmpty()) {
+            try {
+                request.setPreferences(objectMapper.readValue(preferences, String.class));
+            } catch (Exception e) {
+                request.setPreferences(preferences);
+            }
+        }
+        return request;
+    }
+}
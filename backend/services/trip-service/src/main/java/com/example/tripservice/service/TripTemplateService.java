@@ -0,0 +1,368 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.TripTemplate;
+import com.example.tripservice.repository.TripTemplateRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 行程模板缓存（参数化匹配）
+ *
+ * 大量请求形态相同（例如"北京，3 天，2 人，5000 元"），只是日期不同，精确匹配的大模型响应缓存无法命中。
+ * 这里把结构化的创建请求归一化为行程形态：目的地、天数、人数档、人均每日预算档与排序去重后的偏好标签，
+ * 按形态保存与日期无关的逐日行程（含已解析的坐标，费用按人均保存）。命中时按人数换算费用后直接实例化，
+ * 跳过大模型调用与地理编码。
+ *
+ * 带自然语言描述（rawInput）的请求含有无法归一化的个性化要求，不走模板。
+ * 存储结构与 LlmResponseCache 相同：内存层（Caffeine）在前，数据库层（trip_templates 表）在后，后台线程异步写入。
+ *
+ * 指标：trip.template.requests（Counter，result=memory/database/miss/bypass）
+ */
+@Service
+public class TripTemplateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripTemplateService.class);
+
+    public static final String RESULT_MEMORY = "memory";
+    public static final String RESULT_DATABASE = "database";
+    public static final String RESULT_MISS = "miss";
+    public static final String RESULT_BYPASS = "bypass";
+
+    private static final int MAX_DAYS = 14;
+    private static final String[] COST_FIELDS = { "transport", "accommodation", "food", "attractions", "other" };
+
+    private final TripTemplateRepository repository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Cache<String, String> memory;
+    private final ThreadPoolExecutor writeExecutor;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public TripTemplateService(TripTemplateRepository repository, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${trip.template.enabled:true}") boolean enabled,
+            @Value("${trip.template.ttl-hours:168}") long ttlHours,
+            @Value("${trip.template.memory-max-entries:200}") long memoryMaxEntries) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(memoryMaxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        // 写入队列满时直接丢弃：模板只是优化，不能反压生成请求
+        this.writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), runnable -> {
+                    Thread thread = new Thread(runnable, "trip-template-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        for (String result : new String[] { RESULT_MEMORY, RESULT_DATABASE, RESULT_MISS, RESULT_BYPASS }) {
+            counters.put(result, Counter.builder("trip.template.requests")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 行程形态，例如 {@code 北京|3天|2人|standard|历史文化,美食}
+     *
+     * @return 不适合套用模板（带自然语言描述、天数超出范围）时返回 null
+     */
+    public String templateKey(CreateTripRequest request) {
+        if (!enabled || (request.getRawInput() != null && !request.getRawInput().isBlank())) {
+            return null;
+        }
+        return shape(request);
+    }
+
+    /**
+     * 不考虑自然语言描述的行程形态，也用于语义缓存的分组，见 SemanticPromptCache
+     *
+     * @return 缺少目的地或日期、天数超出范围时返回 null
+     */
+    public String shape(CreateTripRequest request) {
+        if (request.getDestination() == null || request.getStartDate() == null || request.getEndDate() == null) {
+            return null;
+        }
+        long days = ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate()) + 1;
+        if (days < 1 || days > MAX_DAYS) {
+            return null;
+        }
+        int participants = participants(request.getParticipants());
+        return normalizeDestination(request.getDestination()) + "|" + days + "天|" + partyBucket(participants) + "|"
+                + budgetBucket(request.getBudget(), participants, days) + "|"
+                + normalizePreferences(request.getPreferences());
+    }
+
+    /**
+     * 按形态查找模板，费用按人数换算
+     *
+     * @param key          见 {@link #templateKey(CreateTripRequest)}，为 null 时计为 bypass
+     * @param participants 实际人数
+     * @return 与大模型输出结构相同的行程 JSON（行程项附带 coordinates），未命中返回 null
+     */
+    public JsonNode findPlan(String key, Integer participants) {
+        if (key == null) {
+            counters.get(RESULT_BYPASS).increment();
+            return null;
+        }
+        String result = RESULT_MEMORY;
+        String plan = memory.getIfPresent(key);
+        if (plan == null) {
+            plan = repository.findPlan(digest(key), LocalDateTime.now()).orElse(null);
+            if (plan != null) {
+                memory.put(key, plan);
+                result = RESULT_DATABASE;
+            }
+        }
+        if (plan == null) {
+            counters.get(RESULT_MISS).increment();
+            return null;
+        }
+        try {
+            JsonNode instance = scaleCosts(objectMapper.readTree(plan),
+                    BigDecimal.valueOf(participants(participants)));
+            counters.get(result).increment();
+            logger.debug("行程模板命中: {} ({})", key, result);
+            return instance;
+        } catch (Exception e) {
+            logger.warn("行程模板解析失败: {}", e.getMessage());
+            memory.invalidate(key);
+            counters.get(RESULT_MISS).increment();
+            return null;
+        }
+    }
+
+    /**
+     * 模板是否存在且在 minRemaining 之后仍有效
+     */
+    public boolean hasTemplate(String key, Duration minRemaining) {
+        return repository.existsByTemplateKeyAndExpiresAtAfter(digest(key), LocalDateTime.now().plus(minRemaining));
+    }
+
+    /**
+     * 以一次生成结果保存模板：去掉日期与行程 ID，费用换算为人均
+     *
+     * @param key        为 null 时不保存
+     * @param items      已补全坐标的行程项
+     * @param budgetNode 大模型输出的 budgetBreakdown
+     */
+    public void store(String key, CreateTripRequest request, String title, List<ItineraryItem> items,
+            JsonNode budgetNode) {
+        if (key == null || items.isEmpty()) {
+            return;
+        }
+        BigDecimal participants = BigDecimal.valueOf(participants(request.getParticipants()));
+
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.put("title", title);
+        plan.put("destination", request.getDestination());
+        ArrayNode daysNode = plan.putArray("days");
+        Map<Integer, List<ItineraryItem>> byDay = items.stream()
+                .collect(Collectors.groupingBy(ItineraryItem::getDayIndex, TreeMap::new,
+                        Collectors.toList()));
+        for (Map.Entry<Integer, List<ItineraryItem>> day : byDay.entrySet()) {
+            ObjectNode dayNode = daysNode.addObject();
+            dayNode.put("dayIndex", day.getKey());
+            ArrayNode itemsNode = dayNode.putArray("items");
+            for (ItineraryItem item : day.getValue()) {
+                ObjectNode itemNode = itemsNode.addObject();
+                itemNode.put("startTime", item.getStartTime().toString());
+                itemNode.put("endTime", item.getEndTime().toString());
+                itemNode.put("title", item.getTitle());
+                itemNode.put("type", item.getType());
+                itemNode.put("location", item.getLocation());
+                itemNode.put("description", item.getDescription());
+                itemNode.put("estimatedCost", perPerson(item.getEstimatedCost(), participants));
+                if (item.getNotes() != null) {
+                    itemNode.put("notes", item.getNotes());
+                }
+                if (item.getCoordinates() != null) {
+                    itemNode.put("coordinates", item.getCoordinates());
+                }
+            }
+        }
+        ObjectNode budget = plan.putObject("budgetBreakdown");
+        for (String field : COST_FIELDS) {
+            budget.put(field, perPerson(BigDecimal.valueOf(budgetNode.path(field).asDouble()), participants));
+        }
+
+        String planJson;
+        try {
+            planJson = objectMapper.writeValueAsString(plan);
+        } catch (Exception e) {
+            logger.warn("行程模板序列化失败: {}", e.getMessage());
+            return;
+        }
+        memory.put(key, planJson);
+        int days = byDay.size();
+        writeExecutor.execute(() -> persist(key, request.getDestination(), days, planJson));
+    }
+
+    private void persist(String key, String destination, int days, String plan) {
+        try {
+            TripTemplate template = new TripTemplate();
+            template.setTemplateKey(digest(key));
+            template.setShape(key);
+            template.setDestination(destination);
+            template.setDays(days);
+            template.setPlan(plan);
+            LocalDateTime now = LocalDateTime.now();
+            template.setCreatedAt(now);
+            template.setExpiresAt(now.plus(ttl));
+            // 主键已存在时覆盖（预热刷新即将过期的模板）
+            repository.save(template);
+            logger.info("行程模板已保存: {}", key);
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("行程模板已由其他实例写入: {}", key);
+        } catch (Exception e) {
+            logger.warn("行程模板写入失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理过期模板
+     */
+    @Scheduled(fixedDelayString = "${trip.template.purge-interval-ms:3600000}",
+            initialDelayString = "${trip.template.purge-interval-ms:3600000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        int expired = repository.deleteExpired(LocalDateTime.now());
+        if (expired > 0) {
+            logger.info("行程模板已清理: 过期 {} 条", expired);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdown();
+    }
+
+    /**
+     * 行程项费用与预算明细按系数换算（原地修改）
+     */
+    static JsonNode scaleCosts(JsonNode plan, BigDecimal factor) {
+        for (JsonNode dayNode : plan.path("days")) {
+            for (JsonNode itemNode : dayNode.path("items")) {
+                scale((ObjectNode) itemNode, "estimatedCost", factor);
+            }
+        }
+        JsonNode budget = plan.path("budgetBreakdown");
+        if (budget instanceof ObjectNode budgetNode) {
+            for (String field : COST_FIELDS) {
+                scale(budgetNode, field, factor);
+            }
+        }
+        return plan;
+    }
+
+    private static void scale(ObjectNode node, String field, BigDecimal factor) {
+        node.put(field, node.path(field).decimalValue().multiply(factor).setScale(2, RoundingMode.HALF_UP));
+    }
+
+    private static BigDecimal perPerson(BigDecimal cost, BigDecimal participants) {
+        return cost == null ? BigDecimal.ZERO : cost.divide(participants, 2, RoundingMode.HALF_UP);
+    }
+
+    static int participants(Integer participants) {
+        return participants == null || participants < 1 ? 1 : participants;
+    }
+
+    private static String normalizeDestination(String destination) {
+        String normalized = destination.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+        // "北京市" 与 "北京" 视为同一目的地
+        if (normalized.length() > 2 && normalized.endsWith("市")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static String partyBucket(int participants) {
+        if (participants <= 2) {
+            return participants + "人";
+        }
+        return participants <= 4 ? "3-4人" : "5人以上";
+    }
+
+    /**
+     * 按人均每日预算分档，未填写预算时为 any
+     */
+    private static String budgetBucket(BigDecimal budget, int participants, long days) {
+        if (budget == null || budget.signum() <= 0) {
+            return "any";
+        }
+        double perPersonPerDay = budget.doubleValue() / participants / days;
+        if (perPersonPerDay < 300) {
+            return "economy";
+        }
+        if (perPersonPerDay < 800) {
+            return "standard";
+        }
+        return perPersonPerDay < 2000 ? "comfort" : "luxury";
+    }
+
+    private static String normalizePreferences(String preferences) {
+        if (preferences == null || preferences.isBlank()) {
+            return "";
+        }
+        return Arrays.stream(preferences.split("[,，、/;；\\s]+"))
+                .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+                .filter(tag -> !tag.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private static String digest(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
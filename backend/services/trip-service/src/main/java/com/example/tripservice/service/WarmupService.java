@@ -0,0 +1,190 @@
+package com.example.tripservice.service;
+
+import com.example.tripservice.dto.CreateTripRequest;
+import com.example.tripservice.dto.TripResponse;
+import com.example.tripservice.entity.ItineraryItem;
+import com.example.tripservice.entity.Trip;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热（就绪门控）
+ *
+ * 在 ApplicationReadyEvent 中同步执行：用合成的行程数据反复走大模型结果解析、DTO 映射与 JSON 序列化路径，
+ * 让这些热点在接入真实流量前完成类加载与 JIT 编译。Spring Boot 在所有 ApplicationReadyEvent 监听器返回后
+ * 才把就绪状态切换为 ACCEPTING_TRAFFIC，因此预热期间 /actuator/health/readiness 返回 503，
+ * 负载均衡与容器健康检查不会把请求转发过来。
+ *
+ * 预热不访问数据库与外部 API。所有合成行程项使用同一坐标，交通耗时缓存中只会多出一条记录。
+ *
+ * 指标：trip.startup.warmup（预热耗时）、trip.startup.ready（JVM 启动到可接收流量的总耗时）
+ */
+@Service
+public class WarmupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupService.class);
+
+    private static final String[] TYPES = { "hotel", "attraction", "restaurant", "attraction", "transport",
+            "attraction", "restaurant", "other" };
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.iterations:300}")
+    private int iterations;
+
+    @Value("${startup.warmup.days:5}")
+    private int days;
+
+    @Value("${startup.warmup.items-per-day:6}")
+    private int itemsPerDay;
+
+    private volatile long warmupMillis;
+    private volatile long readyMillis;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp(ApplicationReadyEvent event) {
+        long start = System.nanoTime();
+        if (enabled && iterations > 0) {
+            try {
+                run();
+            } catch (Exception e) {
+                // 预热失败不影响实例上线，只是首批请求会慢一些
+                logger.warn("启动预热失败: {}", e.getMessage());
+            }
+        }
+        warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        TimeGauge.builder("trip.startup.warmup", this, TimeUnit.MILLISECONDS, service -> service.warmupMillis)
+                .description("启动预热耗时")
+                .register(meterRegistry);
+        TimeGauge.builder("trip.startup.ready", this, TimeUnit.MILLISECONDS, service -> service.readyMillis)
+                .description("JVM 启动到可接收流量的耗时")
+                .register(meterRegistry);
+        logger.info("实例就绪: JVM 启动到就绪 {} ms（Spring 启动 {} ms，预热 {} ms，{} 轮）",
+                readyMillis, event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1, warmupMillis,
+                enabled ? iterations : 0);
+    }
+
+    private void run() throws Exception {
+        String planJson = objectMapper.writeValueAsString(syntheticPlan());
+        String requestJson = objectMapper.writeValueAsString(syntheticRequest());
+        Trip trip = syntheticTrip();
+
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            // 请求体反序列化与提示词构建
+            CreateTripRequest request = objectMapper.readValue(requestJson, CreateTripRequest.class);
+            sink += tripService.buildPrompt(request).length();
+
+            // 大模型结果解析，与 createAndGenerateTrip 相同的路径
+            JsonNode resultNode = objectMapper.readTree(planJson);
+            List<ItineraryItem> items = new ArrayList<>();
+            long id = 1;
+            for (JsonNode dayNode : resultNode.path("days")) {
+                int dayIndex = dayNode.path("dayIndex").asInt();
+                for (JsonNode itemNode : dayNode.path("items")) {
+                    ItineraryItem item = tripService.parseItineraryItem(itemNode, trip.getId(), dayIndex);
+                    item.setId(id++);
+                    item.setCoordinates("{\"lng\":120.155070,\"lat\":30.274085}");
+                    items.add(item);
+                }
+            }
+
+            // DTO 映射与响应序列化
+            TripResponse response = tripService.buildDetailedTripResponse(trip, items);
+            sink += objectMapper.writeValueAsBytes(response).length;
+        }
+        logger.debug("启动预热完成，输出 {} 字节", sink);
+    }
+
+    private JsonNode syntheticPlan() {
+        ObjectNode plan = objectMapper.createObjectNode();
+        plan.put("title", "预热行程");
+        plan.put("destination", "杭州");
+        ArrayNode daysNode = plan.putArray("days");
+        for (int day = 1; day <= days; day++) {
+            ObjectNode dayNode = daysNode.addObject();
+            dayNode.put("dayIndex", day);
+            ArrayNode itemsNode = dayNode.putArray("items");
+            for (int i = 0; i < itemsPerDay; i++) {
+                ObjectNode itemNode = itemsNode.addObject();
+                itemNode.put("startTime", String.format(Locale.ROOT, "%02d:00", 8 + i));
+                itemNode.put("endTime", String.format(Locale.ROOT, "%02d:50", 8 + i));
+                itemNode.put("title", "预热景点 " + day + "-" + i);
+                itemNode.put("type", TYPES[i % TYPES.length]);
+                itemNode.put("location", "浙江省杭州市西湖区预热路 " + i + " 号");
+                itemNode.put("description", "合成的行程项描述，用于在启动阶段预热解析与序列化路径。");
+                itemNode.put("estimatedCost", 50.0 + i * 10);
+                itemNode.put("notes", "合成数据");
+            }
+        }
+        ObjectNode budget = plan.putObject("budgetBreakdown");
+        budget.put("transport", 1000.0);
+        budget.put("accommodation", 2400.0);
+        budget.put("food", 1500.0);
+        budget.put("attractions", 800.0);
+        budget.put("other", 300.0);
+        return plan;
+    }
+
+    private CreateTripRequest syntheticRequest() {
+        CreateTripRequest request = new CreateTripRequest();
+        request.setDestination("杭州");
+        request.setStartDate(LocalDate.of(2026, 5, 1));
+        request.setEndDate(LocalDate.of(2026, 5, days));
+        request.setParticipants(2);
+        request.setBudget(BigDecimal.valueOf(8000));
+        request.setPreferences("美食,历史文化");
+        request.setRawInput("五一假期想去杭州玩几天，喜欢吃本地菜，不想太赶");
+        return request;
+    }
+
+    private Trip syntheticTrip() {
+        Trip trip = new Trip();
+        trip.setId(0L);
+        trip.setUserId(0L);
+        trip.setTitle("预热行程");
+        trip.setDestination("杭州");
+        trip.setStartDate(LocalDate.of(2026, 5, 1));
+        trip.setEndDate(LocalDate.of(2026, 5, days));
+        trip.setParticipants(2);
+        trip.setBudget(BigDecimal.valueOf(8000));
+        trip.setStatus("generated");
+        trip.setCreatedAt(LocalDateTime.of(2026, 4, 1, 10, 0));
+        return trip;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.tripservice.util;
+
+import com.example.tripservice.entity.ItineraryItem;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑行程格式解析
+ *
+ * JSON 格式中每个行程项都要重复输出 "startTime"、"estimatedCost"、"description" 等键名与引号、缩进，
+ * 这些 token 占了输出的很大一部分，而输出 token 数决定生成耗时。紧凑格式每行一项、列顺序固定、以 | 分隔：
+ *
+ * <pre>
+ * T|标题|目的地
+ * D|1
+ * I|09:00|11:00|a|西湖风景区|杭州市西湖区龙井路1号|0|描述|提示
+ * B|交通|住宿|餐饮|门票|其他
+ * END
+ * </pre>
+ *
+ * 类型用首字母表示（a 景点、r 餐厅、h 住宿、t 交通、o 其他），也接受完整单词。
+ * 解析按行扫描原文，不做正则与 split，只为保留的文本字段创建字符串，直接得到 {@link ItineraryItem}。
+ * 一天的行程项在读到下一个 D 或 B 行时才确认，输出被截断时未完成的天整体丢弃；读到完整的 B 行后视为完整，
+ * 天数是否够由调用方按行程日期判断。
+ * 时间格式错误的行跳过；费用允许千位分隔符（1,200），"免费"等无法解析的费用按 0 计；无法识别的行（如 ``` 标记）忽略。
+ */
+public final class CompactPlanParser {
+
+    public static final String[] BUDGET_FIELDS = { "transport", "accommodation", "food", "attractions", "other" };
+
+    private CompactPlanParser() {
+    }
+
+    /**
+     * 解析结果
+     *
+     * @param items 已确认的天中的行程项，按输出顺序，dayIndex 已设置
+     * @param completeDays 已确认的天数
+     * @param budget 按 {@link #BUDGET_FIELDS} 顺序的预算，未读到 B 行时为 null
+     */
+    public record Plan(String title, String destination, List<ItineraryItem> items, int completeDays,
+            double[] budget) {
+
+        public boolean complete() {
+            return budget != null;
+        }
+    }
+
+    public static Plan parse(CharSequence text) {
+        String title = null;
+        String destination = null;
+        List<ItineraryItem> items = new ArrayList<>();
+        List<ItineraryItem> pending = new ArrayList<>();
+        int completeDays = 0;
+        int dayIndex = 0;
+        double[] budget = null;
+
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length && budget == null) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            int next = lineEnd + 1;
+
+            if (end - lineStart >= 2 && text.charAt(lineStart + 1) == '|') {
+                char kind = text.charAt(lineStart);
+                int cursor = lineStart + 2;
+                if (kind == 'T') {
+                    int sep = fieldEnd(text, cursor, end);
+                    title = text.subSequence(cursor, sep).toString().trim();
+                    if (sep < end) {
+                        destination = text.subSequence(sep + 1, fieldEnd(text, sep + 1, end)).toString().trim();
+                    }
+                } else if (kind == 'D' || kind == 'B') {
+                    if (dayIndex > 0 && !pending.isEmpty()) {
+                        items.addAll(pending);
+                        completeDays++;
+                    }
+                    pending.clear();
+                    if (kind == 'D') {
+                        dayIndex = (int) parseNumber(text, cursor, end);
+                    } else {
+                        budget = parseBudget(text, cursor, end);
+                        dayIndex = 0;
+                    }
+                } else if (kind == 'I' && dayIndex > 0 && lineEnd < length) {
+                    // 没有换行结尾的最后一行可能被截断，不解析
+                    ItineraryItem item = parseItem(text, cursor, end, dayIndex);
+                    if (item != null) {
+                        pending.add(item);
+                    }
+                }
+            }
+            lineStart = next;
+        }
+        return new Plan(title, destination, items, completeDays, budget);
+    }
+
+    private static ItineraryItem parseItem(CharSequence text, int cursor, int end, int dayIndex) {
+        int sep = fieldEnd(text, cursor, end);
+        LocalTime startTime = parseTime(text, cursor, sep);
+        cursor = sep + 1;
+        sep = fieldEnd(text, cursor, end);
+        LocalTime endTime = parseTime(text, cursor, sep);
+        if (startTime == null || endTime == null || sep >= end) {
+            return null;
+        }
+        cursor = sep + 1;
+        sep = fieldEnd(text, cursor, end);
+        String type = parseType(text, cursor, sep);
+        cursor = sep + 1;
+        sep = fieldEnd(text, cursor, end);
+        if (cursor > end || sep == cursor) {
+            return null;
+        }
+        String title = text.subSequence(cursor, sep).toString().trim();
+        cursor = Math.min(sep + 1, end);
+        sep = fieldEnd(text, cursor, end);
+        String location = text.subSequence(cursor, sep).toString().trim();
+        cursor = Math.min(sep + 1, end);
+        sep = fieldEnd(text, cursor, end);
+        double cost = parseNumber(text, cursor, sep);
+        if (Double.isNaN(cost)) {
+            cost = 0;
+        }
+        cursor = Math.min(sep + 1, end);
+        sep = fieldEnd(text, cursor, end);
+        String description = text.subSequence(cursor, sep).toString().trim();
+        // 备注是最后一列，其中误带的 | 保留在备注中
+        String notes = sep < end ? text.subSequence(sep + 1, end).toString().trim() : null;
+
+        ItineraryItem item = new ItineraryItem();
+        item.setDayIndex(dayIndex);
+        item.setStartTime(startTime);
+        item.setEndTime(endTime);
+        item.setType(type);
+        item.setTitle(title);
+        item.setLocation(location);
+        item.setEstimatedCost(BigDecimal.valueOf(cost));
+        item.setDescription(description);
+        item.setNotes(notes == null || notes.isEmpty() ? null : notes);
+        return item;
+    }
+
+    private static double[] parseBudget(CharSequence text, int cursor, int end) {
+        double[] budget = new double[BUDGET_FIELDS.length];
+        for (int i = 0; i < budget.length; i++) {
+            if (cursor > end) {
+                return null;
+            }
+            int sep = fieldEnd(text, cursor, end);
+            budget[i] = parseNumber(text, cursor, sep);
+            if (Double.isNaN(budget[i])) {
+                return null;
+            }
+            cursor = sep + 1;
+        }
+        return budget;
+    }
+
+    private static int fieldEnd(CharSequence text, int from, int end) {
+        int i = from;
+        while (i < end && text.charAt(i) != '|') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 解析 H:mm 或 HH:mm，格式错误返回 null
+     */
+    private static LocalTime parseTime(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) == ' ') {
+            to--;
+        }
+        int colon = to - 3;
+        if (colon < from + 1 || colon > from + 2 || text.charAt(colon) != ':') {
+            return null;
+        }
+        int hour = 0;
+        for (int i = from; i < colon; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            hour = hour * 10 + digit;
+        }
+        int tens = text.charAt(colon + 1) - '0';
+        int ones = text.charAt(colon + 2) - '0';
+        if (hour > 23 || tens < 0 || tens > 5 || ones < 0 || ones > 9) {
+            return null;
+        }
+        int minute = tens * 10 + ones;
+        return LocalTime.of(hour, minute);
+    }
+
+    /**
+     * 解析非负数（可带小数与千位分隔符），格式错误返回 NaN
+     */
+    private static double parseNumber(CharSequence text, int from, int to) {
+        long value = 0;
+        long scale = 1;
+        boolean digits = false;
+        boolean fraction = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (fraction) {
+                    scale *= 10;
+                }
+                digits = true;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == ',' && digits && !fraction) {
+                // 千位分隔符
+            } else if (c != ' ') {
+                return Double.NaN;
+            }
+        }
+        return digits ? (double) value / scale : Double.NaN;
+    }
+
+    private static String parseType(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) == ' ') {
+            from++;
+        }
+        if (from >= to) {
+            return "other";
+        }
+        return switch (Character.toLowerCase(text.charAt(from))) {
+            case 'a' -> "attraction";
+            case 'r' -> "restaurant";
+            case 'h' -> "hotel";
+            case 't' -> "transport";
+            default -> "other";
+        };
+    }
+}
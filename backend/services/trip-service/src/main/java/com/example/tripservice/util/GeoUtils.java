@@ -0,0 +1,102 @@
+package com.example.tripservice.util;
+
+/**
+ * 地理坐标工具
+ * 坐标统一使用 {"lng":xxx,"lat":xxx} 格式的 JSON 字符串存储
+ */
+public final class GeoUtils {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * 解析坐标 JSON 字符串
+     *
+     * @param coordinates {"lng":xxx,"lat":xxx}
+     * @return [lng, lat]，缺失或格式错误时返回 null
+     */
+    public static double[] parseLngLat(String coordinates) {
+        if (coordinates == null || coordinates.isEmpty()) {
+            return null;
+        }
+
+        double lng = Double.NaN;
+        double lat = Double.NaN;
+        int length = coordinates.length();
+        int i = 0;
+
+        try {
+            while (i < length) {
+                int keyStart = coordinates.indexOf('"', i);
+                if (keyStart < 0) {
+                    break;
+                }
+                int keyEnd = coordinates.indexOf('"', keyStart + 1);
+                int colon = coordinates.indexOf(':', keyEnd + 1);
+                if (keyEnd < 0 || colon < 0) {
+                    return null;
+                }
+
+                int valueEnd = colon + 1;
+                while (valueEnd < length && coordinates.charAt(valueEnd) != ','
+                        && coordinates.charAt(valueEnd) != '}') {
+                    valueEnd++;
+                }
+
+                double value = Double.parseDouble(coordinates.substring(colon + 1, valueEnd).trim());
+                if (coordinates.startsWith("lng", keyStart + 1) && keyEnd - keyStart == 4) {
+                    lng = value;
+                } else if (coordinates.startsWith("lat", keyStart + 1) && keyEnd - keyStart == 4) {
+                    lat = value;
+                }
+                i = valueEnd + 1;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (Double.isNaN(lng) || Double.isNaN(lat)) {
+            return null;
+        }
+        return new double[] { lng, lat };
+    }
+
+    /**
+     * 计算两点间的球面距离（haversine 公式）
+     *
+     * @return 距离（米）
+     */
+    public static double haversineMeters(double lng1, double lat1, double lng2, double lat2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(lng2 - lng1);
+
+        double sinPhi = Math.sin(dPhi / 2);
+        double sinLambda = Math.sin(dLambda / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * 构建 n×n 距离矩阵（行优先展开为一维数组）
+     *
+     * @param lng 各点经度
+     * @param lat 各点纬度
+     * @return dist[i * n + j] 为点 i 到点 j 的距离（米）
+     */
+    public static double[] distanceMatrix(double[] lng, double[] lat) {
+        int n = lng.length;
+        double[] dist = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double d = haversineMeters(lng[i], lat[i], lng[j], lat[j]);
+                dist[i * n + j] = d;
+                dist[j * n + i] = d;
+            }
+        }
+        return dist;
+    }
+}
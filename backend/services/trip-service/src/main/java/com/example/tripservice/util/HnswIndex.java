@@ -0,0 +1,457 @@
+package com.example.tripservice.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内近似最近邻索引（HNSW，Hierarchical Navigable Small World）
+ *
+ * 向量须为 L2 归一化的 float[]，相似度为点积（余弦相似度）。节点编号从 0 连续分配，调用方用编号关联自己的数据。
+ * 向量按分量乘以 127 量化为 int8 保存，内存与随机访问的缓存行数都只有 float 的 1/4，相似度误差在 0.01 以内。
+ * 所有数据放在基本类型数组中：向量行优先展开在一个 byte[]；第 0 层邻接表为定长 int[]（每个节点 1 个计数 + 2M 个邻居），
+ * 上层只有约 1/M 的节点，单独保存。不支持删除，调用方通过 {@link #clear()} 整体重建。
+ *
+ * 查询持读锁可并发执行，插入持写锁串行执行。
+ */
+public final class HnswIndex {
+
+    private static final int SCALE = 127;
+    private static final float INVERSE_SCALE_SQUARED = 1f / (SCALE * SCALE);
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    private byte[] vectors;
+    private int[] links0;
+    private int[][] upperLinks;
+    private byte[] levels;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions      向量维度
+     * @param m               每层每个节点的邻居数上限（第 0 层为 2M）
+     * @param efConstruction  插入时的候选集大小，越大图质量越好、插入越慢
+     * @param initialCapacity 初始容量，满后按 1.5 倍扩容
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(42);
+        allocate(Math.max(initialCapacity, 16));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 插入向量
+     *
+     * @return 节点编号
+     */
+    public int add(float[] vector) {
+        lock.writeLock().lock();
+        try {
+            if (size == levels.length) {
+                grow();
+            }
+            int node = size++;
+            byte[] quantized = quantize(vector);
+            System.arraycopy(quantized, 0, vectors, node * dimensions, dimensions);
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            levels[node] = (byte) Math.min(level, Byte.MAX_VALUE);
+            if (level > 0) {
+                upperLinks[node] = new int[level * (m + 1)];
+            }
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(quantized, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                Heap found = searchLayer(quantized, current, efConstruction, l);
+                int[] candidates = found.drainAscending();
+                int maxNeighbours = l == 0 ? maxM0 : m;
+                int[] neighbours = selectNeighbours(quantized, candidates, maxNeighbours);
+                setLinks(node, l, neighbours, neighbours.length);
+                for (int neighbour : neighbours) {
+                    connect(neighbour, node, l, maxNeighbours);
+                }
+                current = candidates[0];
+            }
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询最相似的 k 个节点
+     *
+     * @param ef 候选集大小（不小于 k），越大召回越高、越慢
+     */
+    public Neighbours search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return new Neighbours(new int[0], new float[0]);
+            }
+            byte[] quantized = quantize(query);
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(quantized, current, l);
+            }
+            Heap found = searchLayer(quantized, current, Math.max(ef, k), 0);
+            while (found.size > k) {
+                found.pop();
+            }
+            int count = found.size;
+            int[] ids = new int[count];
+            float[] similarities = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                similarities[i] = 1 - found.topKey();
+                ids[i] = found.pop();
+            }
+            return new Neighbours(ids, similarities);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引，保留已分配的容量
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(upperLinks, 0, size, null);
+            Arrays.fill(links0, 0, size * (maxM0 + 1), 0);
+            size = 0;
+            entryPoint = -1;
+            maxLevel = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从 start 出发在第 level 层贪心移动到离 query 最近的节点
+     */
+    private int greedyClosest(byte[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = linksOf(current, level);
+            int offset = linkOffset(current, level);
+            int count = links[offset];
+            for (int i = 1; i <= count; i++) {
+                int candidate = links[offset + i];
+                float d = distance(query, candidate);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在第 level 层做束搜索，返回距离最近的至多 ef 个节点（大顶堆，堆顶为其中最远的）
+     */
+    private Heap searchLayer(byte[] query, int entry, int ef, int level) {
+        Visited marks = visited.get();
+        marks.reset(levels.length);
+        Heap candidates = new Heap(ef * 2, false);
+        Heap results = new Heap(ef + 1, true);
+        float entryDistance = distance(query, entry);
+        marks.mark(entry);
+        candidates.push(entry, entryDistance);
+        results.push(entry, entryDistance);
+
+        while (candidates.size > 0) {
+            float candidateDistance = candidates.topKey();
+            if (candidateDistance > results.topKey() && results.size >= ef) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] links = linksOf(candidate, level);
+            int offset = linkOffset(candidate, level);
+            int count = links[offset];
+            for (int i = 1; i <= count; i++) {
+                int neighbour = links[offset + i];
+                if (!marks.mark(neighbour)) {
+                    continue;
+                }
+                float d = distance(query, neighbour);
+                if (results.size < ef || d < results.topKey()) {
+                    candidates.push(neighbour, d);
+                    results.push(neighbour, d);
+                    if (results.size > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：按距离从近到远，只保留比任何已选邻居都更靠近 base 的候选，让邻居分布在不同方向上
+     */
+    private int[] selectNeighbours(byte[] base, int[] candidatesAscending, int max) {
+        int[] selected = new int[Math.min(max, candidatesAscending.length)];
+        int count = 0;
+        for (int candidate : candidatesAscending) {
+            if (count == selected.length) {
+                break;
+            }
+            float toBase = distance(base, candidate);
+            boolean keep = true;
+            for (int i = 0; i < count; i++) {
+                if (distanceBetween(candidate, selected[i]) < toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 为 node 在第 level 层加上到 neighbour 的边，超过上限时重新选择邻居
+     */
+    private void connect(int node, int neighbour, int level, int maxNeighbours) {
+        int[] links = linksOf(node, level);
+        int offset = linkOffset(node, level);
+        int count = links[offset];
+        if (count < maxNeighbours) {
+            links[offset + 1 + count] = neighbour;
+            links[offset] = count + 1;
+            return;
+        }
+
+        byte[] base = Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        Heap heap = new Heap(count + 1, false);
+        for (int i = 1; i <= count; i++) {
+            heap.push(links[offset + i], distance(base, links[offset + i]));
+        }
+        heap.push(neighbour, distance(base, neighbour));
+        int[] kept = selectNeighbours(base, heap.drainAscending(), maxNeighbours);
+        setLinks(node, level, kept, kept.length);
+    }
+
+    private void setLinks(int node, int level, int[] neighbours, int count) {
+        int[] links = linksOf(node, level);
+        int offset = linkOffset(node, level);
+        links[offset] = count;
+        System.arraycopy(neighbours, 0, links, offset + 1, count);
+    }
+
+    private int[] linksOf(int node, int level) {
+        return level == 0 ? links0 : upperLinks[node];
+    }
+
+    private int linkOffset(int node, int level) {
+        return level == 0 ? node * (maxM0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private float distance(byte[] query, int node) {
+        int offset = node * dimensions;
+        int dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return 1 - dot * INVERSE_SCALE_SQUARED;
+    }
+
+    private float distanceBetween(int a, int b) {
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        int dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return 1 - dot * INVERSE_SCALE_SQUARED;
+    }
+
+    private byte[] quantize(float[] vector) {
+        byte[] quantized = new byte[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            quantized[i] = (byte) Math.max(-SCALE, Math.min(SCALE, Math.round(vector[i] * SCALE)));
+        }
+        return quantized;
+    }
+
+    private void allocate(int capacity) {
+        vectors = new byte[capacity * dimensions];
+        links0 = new int[capacity * (maxM0 + 1)];
+        upperLinks = new int[capacity][];
+        levels = new byte[capacity];
+    }
+
+    private void grow() {
+        int capacity = levels.length + (levels.length >> 1);
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        links0 = Arrays.copyOf(links0, capacity * (maxM0 + 1));
+        upperLinks = Arrays.copyOf(upperLinks, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+    }
+
+    /**
+     * 查询结果，按相似度从高到低排列
+     */
+    public record Neighbours(int[] ids, float[] similarities) {
+    }
+
+    /**
+     * 访问标记：每个线程复用一个 int[]，以代数区分不同的搜索，避免每次搜索分配并清零与节点数等长的数组
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return 之前未访问过时返回 true
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * 以距离为键的二叉堆（基本类型数组实现）
+     */
+    private static final class Heap {
+        private int[] ids;
+        private float[] keys;
+        private int size;
+        private final boolean max;
+
+        Heap(int capacity, boolean max) {
+            this.ids = new int[Math.max(capacity, 4)];
+            this.keys = new float[ids.length];
+            this.max = max;
+        }
+
+        void push(int id, float key) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(key, keys[parent])) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            keys[i] = key;
+        }
+
+        float topKey() {
+            return keys[0];
+        }
+
+        int pop() {
+            int top = ids[0];
+            int lastId = ids[--size];
+            float lastKey = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(keys[child + 1], keys[child])) {
+                    child++;
+                }
+                if (!before(keys[child], lastKey)) {
+                    break;
+                }
+                ids[i] = ids[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            ids[i] = lastId;
+            keys[i] = lastKey;
+            return top;
+        }
+
+        /**
+         * 取出全部元素，按距离从近到远排列
+         */
+        int[] drainAscending() {
+            int[] sorted = new int[size];
+            if (max) {
+                for (int i = sorted.length - 1; i >= 0; i--) {
+                    sorted[i] = pop();
+                }
+            } else {
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = pop();
+                }
+            }
+            return sorted;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
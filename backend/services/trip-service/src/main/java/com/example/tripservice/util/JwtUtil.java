@@ -5,7 +5,12 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
@@ -15,13 +20,18 @@ public class JwtUtil {
     private static final long EXPIRATION_TIME = 86400000; // 24 hours
 
     private final SecretKey key;
+    private final JwtParser parser; // 线程安全，全局复用
 
     public JwtUtil() {
         this.key = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
     }
 
     public String generateToken(Long userId, String email) {
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString()) // jti，用于吊销
                 .setSubject(userId.toString())
                 .claim("email", email)
                 .setIssuedAt(new Date())
@@ -30,25 +40,42 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * 校验签名与有效期并返回 claims，校验失败抛出 JwtException
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public Long getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return Long.parseLong(claims.getSubject());
+        return Long.parseLong(parseClaims(token).getSubject());
     }
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
+            parseClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
+
+    /**
+     * 令牌的 SHA-256 摘要（十六进制），用作缓存键
+     */
+    public static String tokenDigest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 吊销用的令牌 ID：优先使用 jti；早期签发的令牌没有 jti，使用令牌摘要代替
+     */
+    public static String revocationId(Claims claims, String tokenDigest) {
+        return claims.getId() != null ? claims.getId() : tokenDigest;
+    }
 }
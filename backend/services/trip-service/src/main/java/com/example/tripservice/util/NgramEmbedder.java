@@ -0,0 +1,209 @@
+package com.example.tripservice.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * 本地文本向量化：字符 n-gram 特征哈希
+ *
+ * 先把文本归一化（全角转半角、小写、去掉标点与口语化的填充词、中文数字转阿拉伯数字、"三日游"归为"3天"），
+ * 再把单字与相邻两字（unigram 与 bigram） 按带符号的哈希累加到固定维度的向量上并做 L2 归一化，两个向量的点积即余弦相似度。
+ * 不依赖外部模型或服务，一次向量化为微秒级，适合判断同一需求的不同说法，例如"想去杭州玩三天"与"杭州三日游"。
+ *
+ * 字符相似度无法区分否定："不要爬山"与"要爬山"只差一个字，向量几乎相同。否定约束由 {@link #negations} 单独提取，
+ * 由调用方要求完全一致，不参与相似度。
+ */
+public final class NgramEmbedder {
+
+    // 按长度从长到短排列，先去掉较长的词，避免"我们"只被去掉"我"
+    private static final String[] FILLER_WORDS = { "帮我安排", "帮我规划", "我们", "想要", "打算", "准备", "计划",
+            "帮我", "安排", "规划", "一下", "一个", "行程", "旅游", "旅行", "出去", "我想", "我", "请", "去", "玩",
+            "的", "了", "吧", "呢", "啊", "呀" };
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{P}\\p{S}\\s]+");
+    // 只转换数量词前的中文数字，避免"一起"之类的词被改写
+    private static final Pattern CHINESE_NUMERAL = Pattern.compile("[零一二两三四五六七八九十]+(?=[天日人晚夜周个位])");
+    private static final Pattern DAYS = Pattern.compile("(\\d+)(?:日游|天游|日|天)");
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+    // 否定词，按长度从长到短排列；其后的助动词跳过，"不要爬山"、"别去爬山"、"不想爬山"得到同一个否定对象
+    private static final String[] NEGATION_WORDS = { "不要", "不想", "不用", "不必", "没有", "不", "别", "没", "无" };
+    private static final String NEGATION_SKIPPED = "要想用去再太";
+    // 以否定字开头但不表示否定的常见词
+    private static final String[] NOT_NEGATION = { "无锡", "无论", "不错", "不过", "不少", "不仅", "不但", "不如",
+            "不管", "别墅", "别致", "别的", "没关系" };
+    // 否定对象取否定词后的字数
+    private static final int NEGATION_OBJECT_LENGTH = 2;
+
+    private final int dimensions;
+
+    public NgramEmbedder(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 向量化
+     *
+     * @return L2 归一化的向量；归一化后文本为空时返回 null
+     */
+    public float[] embed(String text) {
+        String normalized = normalize(text);
+        int[] codePoints = normalized.codePoints().toArray();
+        if (codePoints.length == 0) {
+            return null;
+        }
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < codePoints.length; i++) {
+            add(vector, hash(codePoints, i, 1), UNIGRAM_WEIGHT);
+            if (i + 1 < codePoints.length) {
+                add(vector, hash(codePoints, i, 2), 1);
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    /**
+     * 归一化文本，只保留区分需求的内容
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = PUNCTUATION.matcher(normalized).replaceAll("");
+        for (String word : FILLER_WORDS) {
+            normalized = normalized.replace(word, "");
+        }
+        normalized = CHINESE_NUMERAL.matcher(normalized)
+                .replaceAll(match -> {
+                    int value = parseChineseNumeral(match.group());
+                    return value >= 0 ? Integer.toString(value) : match.group();
+                });
+        return DAYS.matcher(normalized).replaceAll("$1天");
+    }
+
+    /**
+     * 提取否定约束：否定词（不、不要、别、没、无等）之后的对象，例如"不要爬山，别太累"得到 {爬山, 累}
+     *
+     * 在去掉填充词之前提取，避免"不去"被改写为"不"后吞掉后面的字；对象按固定字数截取，只用于判断两段描述的否定约束是否相同。
+     *
+     * @return 以 | 连接的有序否定对象，没有否定时为空串
+     */
+    public static String negations(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = PUNCTUATION.matcher(normalized).replaceAll("|");
+        TreeSet<String> objects = new TreeSet<>();
+        int i = 0;
+        while (i < normalized.length()) {
+            String word = startsWithAny(normalized, i, NEGATION_WORDS);
+            if (word == null || startsWithAny(normalized, i, NOT_NEGATION) != null) {
+                i++;
+                continue;
+            }
+            int start = i + word.length();
+            while (start < normalized.length() && NEGATION_SKIPPED.indexOf(normalized.charAt(start)) >= 0) {
+                start++;
+            }
+            int end = start;
+            while (end < normalized.length() && end - start < NEGATION_OBJECT_LENGTH
+                    && normalized.charAt(end) != '|') {
+                end++;
+            }
+            if (end > start) {
+                objects.add(normalized.substring(start, end));
+            }
+            i = Math.max(end, i + word.length());
+        }
+        return String.join("|", objects);
+    }
+
+    /**
+     * 64 位字符串哈希（FNV-1a），用于把分组键等压缩为一个 long
+     */
+    public static long hash64(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String startsWithAny(String text, int offset, String[] words) {
+        for (String word : words) {
+            if (text.startsWith(word, offset)) {
+                return word;
+            }
+        }
+        return null;
+    }
+
+    private void add(float[] vector, long hash, float weight) {
+        int index = (int) ((hash >>> 1) % dimensions);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static long hash(int[] codePoints, int start, int length) {
+        long hash = length;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ codePoints[i]) * 0x100000001b3L;
+        }
+        // murmur3 fmix64，让低位也充分混合
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * 解析 99 以内的中文数字（"三"、"十五"、"二十"），无法解析时返回 -1
+     */
+    private static int parseChineseNumeral(String numeral) {
+        int tenIndex = numeral.indexOf('十');
+        if (tenIndex < 0) {
+            return numeral.length() == 1 ? digit(numeral.charAt(0)) : -1;
+        }
+        if (numeral.length() > 3 || numeral.indexOf('十', tenIndex + 1) >= 0) {
+            return -1;
+        }
+        int tens = tenIndex == 0 ? 1 : digit(numeral.charAt(0));
+        int ones = tenIndex == numeral.length() - 1 ? 0 : digit(numeral.charAt(tenIndex + 1));
+        return tens < 0 || ones < 0 ? -1 : tens * 10 + ones;
+    }
+
+    private static int digit(char c) {
+        return switch (c) {
+            case '零' -> 0;
+            case '一' -> 1;
+            case '二', '两' -> 2;
+            case '三' -> 3;
+            case '四' -> 4;
+            case '五' -> 5;
+            case '六' -> 6;
+            case '七' -> 7;
+            case '八' -> 8;
+            case '九' -> 9;
+            default -> -1;
+        };
+    }
+}
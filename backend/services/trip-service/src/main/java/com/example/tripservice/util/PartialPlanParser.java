@@ -0,0 +1,76 @@
+package com.example.tripservice.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 被截断的行程 JSON 解析
+ *
+ * 模型输出达到 max_tokens 时 JSON 在任意位置中断，整体 readTree 必然失败。
+ * 这里用流式解析逐个读取 days 数组中的元素，遇到结尾中断时停止，只保留已完整输出的天，
+ * 以及出现在 days 之前的 title 与 destination，供续写时作为已有内容。
+ */
+public final class PartialPlanParser {
+
+    private PartialPlanParser() {
+    }
+
+    /**
+     * 已完整输出的部分
+     *
+     * @param days 完整的天（至少含一个活动），按输出顺序
+     */
+    public record Prefix(String title, String destination, List<JsonNode> days) {
+
+        public int lastDayIndex() {
+            return days.isEmpty() ? 0 : days.get(days.size() - 1).path("dayIndex").asInt(days.size());
+        }
+    }
+
+    /**
+     * 解析被截断的行程文本，兼容开头的 ```json 标记
+     */
+    public static Prefix parse(ObjectMapper objectMapper, String text) {
+        String title = null;
+        String destination = null;
+        List<JsonNode> days = new ArrayList<>();
+        int start = text.indexOf('{');
+        if (start < 0) {
+            return new Prefix(null, null, days);
+        }
+        try (JsonParser parser = objectMapper.createParser(text.substring(start))) {
+            parser.setCodec(objectMapper);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new Prefix(null, null, days);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("days".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode day = parser.readValueAsTree();
+                        if (!day.path("items").isArray() || day.path("items").isEmpty()) {
+                            break;
+                        }
+                        days.add(day);
+                    }
+                } else if ("title".equals(field) && value == JsonToken.VALUE_STRING) {
+                    title = parser.getText();
+                } else if ("destination".equals(field) && value == JsonToken.VALUE_STRING) {
+                    destination = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            // 读到中断处，之前完整的部分已保留
+        }
+        return new Prefix(title, destination, days);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.tripservice.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按键（用户 ID）限流的令牌桶
+ *
+ * 使用 GCRA（通用信元速率算法）实现，与令牌桶等价：每个键只保存一个"理论到达时间"（TAT），
+ * 一次 CAS 完成取令牌，无锁、无后台补充线程，高并发下请求路径只有一次哈希查找和一次 CAS。
+ *
+ * 令牌补满（TAT 早于当前时间）的桶与新建桶没有区别，由 {@link #evictIdle()} 定期清理。
+ */
+public final class RateLimiter {
+
+    private final int limit;
+    private final long windowSeconds;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int capacity;
+    private final ConcurrentHashMap<Long, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param limit    每个周期允许的请求数（平均速率）
+     * @param period   周期
+     * @param unit     周期单位
+     * @param capacity 桶容量（允许的突发请求数）
+     */
+    public RateLimiter(int limit, long period, TimeUnit unit, int capacity) {
+        this.limit = Math.max(1, limit);
+        this.windowSeconds = unit.toSeconds(period);
+        this.emissionIntervalNanos = unit.toNanos(period) / this.limit;
+        this.capacity = Math.max(1, capacity);
+        this.burstToleranceNanos = emissionIntervalNanos * this.capacity;
+    }
+
+    /**
+     * 尝试取一个令牌
+     */
+    public Decision tryAcquire(long key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    Decision tryAcquire(long key, long now) {
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long tat = bucket.get();
+            long start = Math.max(tat, now);
+            long newTat = start + emissionIntervalNanos;
+            long backlog = newTat - now;
+            if (backlog > burstToleranceNanos) {
+                // 令牌不足：距离下一个令牌可用的时间
+                return new Decision(false, 0, backlog - burstToleranceNanos, start - now);
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                int remaining = (int) ((burstToleranceNanos - backlog) / emissionIntervalNanos);
+                return new Decision(true, remaining, 0, backlog);
+            }
+        }
+    }
+
+    /**
+     * 清理已补满的空闲桶
+     *
+     * @return 清理数量
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * 每个周期允许的请求数（平均速率）
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * 周期长度（秒）
+     */
+    public long windowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * 桶容量（允许的突发请求数）
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 限流结果
+     *
+     * @param allowed          是否放行
+     * @param remaining        剩余令牌数
+     * @param retryAfterNanos  被拒绝时，距离下一个令牌可用的时间
+     * @param resetNanos       距离令牌补满的时间
+     */
+    public record Decision(boolean allowed, int remaining, long retryAfterNanos, long resetNanos) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.tripservice.util;
+
+import java.util.Locale;
+
+/**
+ * 请求级耗时统计
+ *
+ * 每个线程复用一个实例，由 ServerTimingFilter 在请求开始时激活、结束时关闭；
+ * 服务层通过静态方法 {@link #start(Stage)} / {@link #stop(Stage, long)} 累加各阶段耗时，
+ * 不在请求线程上（如后台线程）或未激活时为空操作。记录过程不分配对象。
+ *
+ * 同一阶段嵌套时只统计最外层，例如 repository 调用内部触发的 Hibernate flush 不会重复计入 db。
+ */
+public final class RequestTimings {
+
+    /**
+     * 统计阶段，名称即 Server-Timing 中的指标名
+     */
+    public enum Stage {
+        LLM("llm"),
+        GEOCODE("geocode"),
+        DB("db"),
+        BUILD("build");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final ThreadLocal<RequestTimings> CURRENT = ThreadLocal.withInitial(RequestTimings::new);
+
+    private final long[] nanos = new long[STAGES.length];
+    private final int[] counts = new int[STAGES.length];
+    private final int[] depths = new int[STAGES.length];
+    private final long[] outerStarts = new long[STAGES.length];
+    private long requestStart;
+    private boolean active;
+
+    private RequestTimings() {
+    }
+
+    /**
+     * 在当前线程开始统计一个请求
+     */
+    public static RequestTimings begin() {
+        RequestTimings timings = CURRENT.get();
+        for (int i = 0; i < STAGES.length; i++) {
+            timings.nanos[i] = 0;
+            timings.counts[i] = 0;
+            timings.depths[i] = 0;
+        }
+        timings.requestStart = System.nanoTime();
+        timings.active = true;
+        return timings;
+    }
+
+    /**
+     * 当前线程上正在统计的请求，没有时返回 null
+     */
+    public static RequestTimings current() {
+        RequestTimings timings = CURRENT.get();
+        return timings.active ? timings : null;
+    }
+
+    public void end() {
+        active = false;
+    }
+
+    /**
+     * 进入一个阶段
+     *
+     * @return 传给 {@link #stop(Stage, long)} 的起始时刻
+     */
+    public static long start(Stage stage) {
+        long now = System.nanoTime();
+        RequestTimings timings = CURRENT.get();
+        if (timings.active && timings.depths[stage.ordinal()]++ == 0) {
+            timings.outerStarts[stage.ordinal()] = now;
+        }
+        return now;
+    }
+
+    public static void stop(Stage stage, long startNanos) {
+        RequestTimings timings = CURRENT.get();
+        int index = stage.ordinal();
+        if (timings.active && timings.depths[index] > 0 && --timings.depths[index] == 0) {
+            timings.nanos[index] += System.nanoTime() - timings.outerStarts[index];
+            timings.counts[index]++;
+        }
+    }
+
+    public long getStageNanos(Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    public int getStageCount(Stage stage) {
+        return counts[stage.ordinal()];
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - requestStart;
+    }
+
+    /**
+     * Server-Timing 响应头，例如 {@code llm;dur=1532.1, geocode;dur=5610.4;desc="15", db;dur=38.2;desc="9", app;dur=12.0, total;dur=7192.7}
+     * app 为未归入任何阶段的耗时（框架、序列化、业务逻辑）
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(128);
+        long elapsed = getElapsedNanos();
+        long accounted = 0;
+        for (Stage stage : STAGES) {
+            int index = stage.ordinal();
+            if (counts[index] == 0) {
+                continue;
+            }
+            accounted += nanos[index];
+            header.append(stage.getMetricName()).append(";dur=").append(millis(nanos[index]));
+            if (counts[index] > 1) {
+                header.append(";desc=\"").append(counts[index]).append('"');
+            }
+            header.append(", ");
+        }
+        header.append("app;dur=").append(millis(Math.max(0, elapsed - accounted)));
+        header.append(", total;dur=").append(millis(elapsed));
+        return header.toString();
+    }
+
+    /**
+     * 结构化日志字段，例如 {@code total_ms=7192.7 llm_ms=1532.1 llm_count=1 geocode_ms=5610.4 geocode_count=15}
+     */
+    public String toLogFields() {
+        StringBuilder fields = new StringBuilder(128);
+        fields.append("total_ms=").append(millis(getElapsedNanos()));
+        for (Stage stage : STAGES) {
+            int index = stage.ordinal();
+            fields.append(' ').append(stage.getMetricName()).append("_ms=").append(millis(nanos[index]))
+                    .append(' ').append(stage.getMetricName()).append("_count=").append(counts[index]);
+        }
+        return fields.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.tripservice.util;
+
+/**
+ * 路线顺序优化器
+ * 在给定的距离矩阵上求解开放路径的近似最短访问顺序：
+ * 先用最近邻构造初始路径，再用 2-opt 反转消除交叉。
+ *
+ * 距离矩阵使用行优先展开的 double[]，避免装箱与多级数组寻址，
+ * 10 个点以内的单日行程可在微秒级完成。
+ */
+public final class RouteOptimizer {
+
+    private static final double EPSILON = 1e-9;
+
+    private RouteOptimizer() {
+    }
+
+    /**
+     * 求解访问顺序
+     *
+     * @param dist       n×n 对称距离矩阵，dist[i * n + j]
+     * @param n          点数
+     * @param fixedStart 为 true 时点 0 固定为起点
+     * @param fixedEnd   为 true 时点 n-1 固定为终点
+     * @return 访问顺序（点下标）
+     */
+    public static int[] solve(double[] dist, int n, boolean fixedStart, boolean fixedEnd) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        if (n <= 2 || (n == 3 && fixedStart && fixedEnd)) {
+            return order;
+        }
+
+        if (fixedStart) {
+            nearestNeighbour(dist, n, 0, fixedEnd, order);
+        } else {
+            // 起点不固定时逐个尝试起点，点数很少，开销可以忽略
+            int[] candidate = new int[n];
+            double best = Double.MAX_VALUE;
+            int lastStart = fixedEnd ? n - 1 : n;
+            for (int start = 0; start < lastStart; start++) {
+                nearestNeighbour(dist, n, start, fixedEnd, candidate);
+                double length = pathLength(dist, n, candidate);
+                if (length < best - EPSILON) {
+                    best = length;
+                    System.arraycopy(candidate, 0, order, 0, n);
+                }
+            }
+        }
+
+        twoOpt(dist, n, order, fixedStart, fixedEnd);
+        return order;
+    }
+
+    /**
+     * 计算路径总长度
+     */
+    public static double pathLength(double[] dist, int n, int[] order) {
+        double length = 0;
+        for (int i = 1; i < order.length; i++) {
+            length += dist[order[i - 1] * n + order[i]];
+        }
+        return length;
+    }
+
+    /**
+     * 最近邻构造：从 start 出发，每次走向最近的未访问点
+     */
+    private static void nearestNeighbour(double[] dist, int n, int start, boolean fixedEnd, int[] out) {
+        boolean[] visited = new boolean[n];
+        int count = fixedEnd ? n - 1 : n;
+        if (fixedEnd) {
+            visited[n - 1] = true;
+            out[n - 1] = n - 1;
+        }
+
+        int current = start;
+        visited[current] = true;
+        out[0] = current;
+
+        for (int pos = 1; pos < count; pos++) {
+            int next = -1;
+            double nearest = Double.MAX_VALUE;
+            int row = current * n;
+            for (int j = 0; j < n; j++) {
+                if (!visited[j] && dist[row + j] < nearest) {
+                    nearest = dist[row + j];
+                    next = j;
+                }
+            }
+            visited[next] = true;
+            out[pos] = next;
+            current = next;
+        }
+    }
+
+    /**
+     * 2-opt 局部优化：反转 order[i..j]，直到没有可改进的反转
+     * 固定的起点/终点不参与反转；开放端点没有相邻边，不计入增量
+     */
+    private static void twoOpt(double[] dist, int n, int[] order, boolean fixedStart, boolean fixedEnd) {
+        int lo = fixedStart ? 1 : 0;
+        int hi = fixedEnd ? n - 2 : n - 1;
+
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = lo; i < hi; i++) {
+                for (int j = i + 1; j <= hi; j++) {
+                    double delta = 0;
+                    if (i > 0) {
+                        int prev = order[i - 1];
+                        delta += dist[prev * n + order[j]] - dist[prev * n + order[i]];
+                    }
+                    if (j < n - 1) {
+                        int next = order[j + 1];
+                        delta += dist[order[i] * n + next] - dist[order[j] * n + next];
+                    }
+                    if (delta < -EPSILON) {
+                        reverse(order, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] order, int i, int j) {
+        while (i < j) {
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+            i++;
+            j--;
+        }
+    }
+}
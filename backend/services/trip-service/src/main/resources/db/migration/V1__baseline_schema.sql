@@ -0,0 +1,47 @@
+-- 基线表结构
+-- 与此前 ddl-auto: update 生成的结构一致；已有数据库上重复执行不会改变现有表
+
+CREATE TABLE IF NOT EXISTS users (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email         VARCHAR(255) NOT NULL UNIQUE,
+    password_hash VARCHAR(255) NOT NULL,
+    display_name  VARCHAR(255),
+    auth_provider VARCHAR(255),
+    preferences   TEXT,
+    created_at    TIMESTAMP(6),
+    updated_at    TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS trips (
+    id           BIGINT PRIMARY KEY,
+    user_id      BIGINT       NOT NULL,
+    title        VARCHAR(200) NOT NULL,
+    destination  VARCHAR(255) NOT NULL,
+    start_date   DATE         NOT NULL,
+    end_date     DATE         NOT NULL,
+    participants INTEGER      NOT NULL,
+    preferences  TEXT,
+    budget       NUMERIC(38, 2),
+    status       VARCHAR(50),
+    raw_input    TEXT,
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
+
+-- 软删除列（早期库可能没有）
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6);
+
+CREATE TABLE IF NOT EXISTS itinerary_items (
+    id             BIGINT PRIMARY KEY,
+    trip_id        BIGINT       NOT NULL,
+    day_index      INTEGER      NOT NULL,
+    start_time     TIME(6),
+    end_time       TIME(6),
+    title          VARCHAR(200) NOT NULL,
+    type           VARCHAR(50),
+    location       VARCHAR(255),
+    description    TEXT,
+    estimated_cost NUMERIC(38, 2),
+    coordinates    TEXT,
+    notes          TEXT
+);
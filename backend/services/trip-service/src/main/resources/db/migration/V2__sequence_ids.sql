@@ -0,0 +1,7 @@
+-- 行程与行程项使用序列主键（pooled 优化器，每次预取 50 个），以便 Hibernate 批量插入
+CREATE SEQUENCE IF NOT EXISTS trips_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS itinerary_items_seq INCREMENT BY 50;
+
+-- 从 IDENTITY 主键迁移时，将序列推进到现有最大 id 之后，避免主键冲突
+SELECT setval('trips_seq', (SELECT COALESCE(MAX(id), 0) FROM trips) + 50);
+SELECT setval('itinerary_items_seq', (SELECT COALESCE(MAX(id), 0) FROM itinerary_items) + 50);
@@ -0,0 +1,67 @@
+-- 热点查询索引与外键
+-- 每个索引对应 repository 中的查询，见注释
+
+-- ItineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc：等值 + 排序一次完成
+-- ItineraryItemRepository.sumEstimatedCostByTripIds：INCLUDE 费用列，列表页汇总走 index-only scan
+-- ItineraryItemRepository.deleteByTripId / deleteByTripIdIn：按 trip_id 前缀定位
+CREATE INDEX IF NOT EXISTS idx_itinerary_items_trip_day_time
+    ON itinerary_items (trip_id, day_index, start_time) INCLUDE (estimated_cost);
+
+-- TripRepository.findByUserIdAndDeletedAtIsNullOrderByCreatedAtDesc：只索引未删除的行程
+CREATE INDEX IF NOT EXISTS idx_trips_user_created
+    ON trips (user_id, created_at DESC) WHERE deleted_at IS NULL;
+
+-- TripRepository.findSoftDeletedIds：后台清理只扫描已标记删除的少量行
+CREATE INDEX IF NOT EXISTS idx_trips_deleted_at
+    ON trips (deleted_at) WHERE deleted_at IS NOT NULL;
+
+-- users.email 的唯一约束已自带索引，早期 init.sql 额外建的索引是重复的
+DROP INDEX IF EXISTS idx_users_email;
+
+-- 外键：历史遗留的孤儿数据不删除，移入隔离表并在迁移日志中输出条数，由人工核对后处理
+-- 先隔离没有所属用户的行程，其行程项随后作为孤儿行程项一并隔离
+CREATE TABLE IF NOT EXISTS quarantine_trips (LIKE trips);
+ALTER TABLE quarantine_trips ADD COLUMN IF NOT EXISTS quarantined_at TIMESTAMP NOT NULL DEFAULT now();
+CREATE TABLE IF NOT EXISTS quarantine_itinerary_items (LIKE itinerary_items);
+ALTER TABLE quarantine_itinerary_items ADD COLUMN IF NOT EXISTS quarantined_at TIMESTAMP NOT NULL DEFAULT now();
+
+DO $$
+DECLARE
+    orphan_trips INTEGER;
+    orphan_items INTEGER;
+BEGIN
+    WITH moved AS (
+        DELETE FROM trips t
+        WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = t.user_id)
+        RETURNING t.*
+    )
+    INSERT INTO quarantine_trips SELECT moved.*, now() FROM moved;
+    GET DIAGNOSTICS orphan_trips = ROW_COUNT;
+
+    WITH moved AS (
+        DELETE FROM itinerary_items i
+        WHERE NOT EXISTS (SELECT 1 FROM trips t WHERE t.id = i.trip_id)
+        RETURNING i.*
+    )
+    INSERT INTO quarantine_itinerary_items SELECT moved.*, now() FROM moved;
+    GET DIAGNOSTICS orphan_items = ROW_COUNT;
+
+    IF orphan_trips > 0 OR orphan_items > 0 THEN
+        RAISE WARNING '已将 % 个孤儿行程移入 quarantine_trips，% 个孤儿行程项移入 quarantine_itinerary_items，请核对',
+            orphan_trips, orphan_items;
+    END IF;
+END $$;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk_itinerary_items_trip') THEN
+        ALTER TABLE itinerary_items
+            ADD CONSTRAINT fk_itinerary_items_trip
+            FOREIGN KEY (trip_id) REFERENCES trips (id) ON DELETE CASCADE;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk_trips_user') THEN
+        ALTER TABLE trips
+            ADD CONSTRAINT fk_trips_user
+            FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE;
+    END IF;
+END $$;
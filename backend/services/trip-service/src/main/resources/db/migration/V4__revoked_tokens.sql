@@ -0,0 +1,14 @@
+-- 访问令牌吊销记录（登出等），令牌过期后由 TokenRevocationService 清理
+
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    jti        VARCHAR(64)  PRIMARY KEY,
+    user_id    BIGINT       NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    revoked_at TIMESTAMP(6) NOT NULL
+);
+
+-- RevokedTokenRepository.findJtisRevokedSince：布隆过滤器增量刷新
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at);
+
+-- RevokedTokenRepository.findActiveJtis / deleteExpired
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
@@ -0,0 +1,15 @@
+-- 大模型响应缓存：相同模型、参数与提示词的生成结果，过期或超出条数上限后由 LlmResponseCache 清理
+
+CREATE TABLE IF NOT EXISTS llm_response_cache (
+    cache_key  VARCHAR(64)  PRIMARY KEY,
+    model      VARCHAR(64)  NOT NULL,
+    response   TEXT         NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
+
+-- LlmResponseCacheRepository.deleteExpired
+CREATE INDEX IF NOT EXISTS idx_llm_response_cache_expires_at ON llm_response_cache (expires_at);
+
+-- LlmResponseCacheRepository.findCreatedAtNewestFirst / deleteCreatedUpTo：按条数上限淘汰最旧的记录
+CREATE INDEX IF NOT EXISTS idx_llm_response_cache_created_at ON llm_response_cache (created_at);
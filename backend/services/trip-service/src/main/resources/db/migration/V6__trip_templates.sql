@@ -0,0 +1,17 @@
+-- 行程模板：按目的地、天数、人数档、预算档与偏好归一化的、与日期无关的逐日行程，由 TripTemplateService 维护
+
+CREATE TABLE IF NOT EXISTS trip_templates (
+    template_key VARCHAR(64)  PRIMARY KEY,
+    shape        TEXT         NOT NULL,
+    destination  VARCHAR(255) NOT NULL,
+    days         INTEGER      NOT NULL,
+    plan         TEXT         NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    expires_at   TIMESTAMP(6) NOT NULL
+);
+
+-- TripTemplateRepository.deleteExpired
+CREATE INDEX IF NOT EXISTS idx_trip_templates_expires_at ON trip_templates (expires_at);
+
+-- TripRepository.findTemplateCandidates：模板预热统计最近生成的行程
+CREATE INDEX IF NOT EXISTS idx_trips_created_at ON trips (created_at);
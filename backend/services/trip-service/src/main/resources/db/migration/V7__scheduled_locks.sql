@@ -0,0 +1,8 @@
+-- 定时任务锁：多实例部署时同一个任务同一时刻只在一个实例上执行，见 ScheduledJobLock
+
+CREATE TABLE IF NOT EXISTS scheduled_locks (
+    name         VARCHAR(64)  PRIMARY KEY,
+    locked_until TIMESTAMP(6) NOT NULL,
+    locked_at    TIMESTAMP(6) NOT NULL,
+    locked_by    VARCHAR(255) NOT NULL
+);
@@ -0,0 +1,322 @@
+package com.example.tripservice.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 热点查询执行计划检查
+ *
+ * 在 PostgreSQL 上执行 Flyway 迁移，按接近生产的数据量灌入数据并 VACUUM ANALYZE，
+ * 然后逐个调用 repository 方法，记录 Hibernate 实际发出的 SQL 与绑定参数，用同样的参数执行 EXPLAIN (FORMAT JSON)，
+ * 在下面的业务表上出现 Seq Scan 时测试失败。只 EXPLAIN 不加 ANALYZE，DELETE / UPDATE 语句不会再执行一遍。
+ *
+ * 不检查的语句：RevokedTokenRepository.findActiveJtis 是布隆过滤器全量重建，本来就读取表中大部分记录；
+ * scheduled_locks 每个定时任务只有一行，全表扫描就是最优计划。
+ *
+ * 运行：mvn verify -Pquery-plan（见 pom.xml 中的说明）
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false",
+        "spring.flyway.baseline-on-migrate=true",
+        "spring.flyway.baseline-version=0"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryPlanIT {
+
+    private static final Set<String> CHECKED_TABLES = Set.of("users", "trips", "itinerary_items",
+            "revoked_tokens", "llm_response_cache", "trip_templates");
+
+    private static final int USERS = 20_000;
+    private static final int TRIPS_PER_USER = 5;
+    private static final int ITEMS_PER_TRIP = 8;
+    private static final int REVOKED_TOKENS = 50_000;
+    private static final int CACHE_ENTRIES = 25_000;
+    private static final int CACHE_MAX_ENTRIES = 20_000;
+    private static final int TEMPLATES = 2_000;
+
+    private static final StatementRecorder RECORDER = new StatementRecorder();
+
+    private static PostgreSQLContainer<?> postgres;
+    private static boolean seeded;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private ItineraryItemRepository itineraryItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private LlmResponseCacheRepository llmResponseCacheRepository;
+
+    @Autowired
+    private TripTemplateRepository tripTemplateRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        String url = System.getProperty("query-plan.jdbc-url");
+        if (url == null || url.isBlank()) {
+            postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+            postgres.start();
+            registry.add("spring.datasource.url", postgres::getJdbcUrl);
+            registry.add("spring.datasource.username", postgres::getUsername);
+            registry.add("spring.datasource.password", postgres::getPassword);
+        } else {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getProperty("query-plan.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("query-plan.password", ""));
+        }
+    }
+
+    @BeforeEach
+    void seed() throws Exception {
+        if (seeded) {
+            return;
+        }
+        // 测试方法在回滚的事务中执行，数据用独立的自动提交连接写入
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE itinerary_items, trips, users, revoked_tokens, llm_response_cache, "
+                    + "trip_templates RESTART IDENTITY");
+            statement.execute("INSERT INTO users (id, email, password_hash, display_name, created_at) "
+                    + "SELECT g, 'user' || g || '@example.com', 'x', 'user' || g, now() "
+                    + "FROM generate_series(1, " + USERS + ") g");
+            // 创建时间分布在一年内，0.5% 已软删除，少量带自然语言描述
+            statement.execute("INSERT INTO trips (id, user_id, title, destination, start_date, end_date, "
+                    + "participants, budget, status, raw_input, created_at, deleted_at) "
+                    + "SELECT g, (g % " + USERS + ") + 1, 'trip ' || g, '杭州', current_date, current_date + 3, 2, "
+                    + "5000, 'generated', CASE WHEN g % 10 = 0 THEN '想去杭州玩' END, "
+                    + "now() - (g * 5 || ' minutes')::interval, CASE WHEN g % 200 = 0 THEN now() END "
+                    + "FROM generate_series(1, " + USERS * TRIPS_PER_USER + ") g");
+            statement.execute("INSERT INTO itinerary_items (id, trip_id, day_index, start_time, end_time, "
+                    + "title, type, estimated_cost) "
+                    + "SELECT g, ((g - 1) / " + ITEMS_PER_TRIP + ") + 1, (g % 4) + 1, "
+                    + "time '08:00' + ((g % 6) || ' hours')::interval, time '09:00' + ((g % 6) || ' hours')::interval, "
+                    + "'item ' || g, 'attraction', 100 "
+                    + "FROM generate_series(1, " + USERS * TRIPS_PER_USER * ITEMS_PER_TRIP + ") g");
+            // 吊销记录：最近 24 小时内吊销，1% 已过期待清理
+            statement.execute("INSERT INTO revoked_tokens (jti, user_id, revoked_at, expires_at) "
+                    + "SELECT md5(g::text), (g % " + USERS + ") + 1, now() - (g % 86400 || ' seconds')::interval, "
+                    + "CASE WHEN g % 100 = 0 THEN now() - interval '1 minute' ELSE now() + interval '1 day' END "
+                    + "FROM generate_series(1, " + REVOKED_TOKENS + ") g");
+            statement.execute("INSERT INTO llm_response_cache (cache_key, model, response, created_at, expires_at) "
+                    + "SELECT md5(g::text), 'qwen-plus', '{}', now() - (g || ' seconds')::interval, "
+                    + "CASE WHEN g % 100 = 0 THEN now() - interval '1 minute' ELSE now() + interval '7 days' END "
+                    + "FROM generate_series(1, " + CACHE_ENTRIES + ") g");
+            statement.execute("INSERT INTO trip_templates (template_key, shape, destination, days, plan, "
+                    + "created_at, expires_at) "
+                    + "SELECT md5(g::text), 'shape ' || g, '杭州', 3, '{}', now(), "
+                    + "CASE WHEN g % 100 = 0 THEN now() - interval '1 minute' ELSE now() + interval '7 days' END "
+                    + "FROM generate_series(1, " + TEMPLATES + ") g");
+            statement.execute("VACUUM ANALYZE");
+        }
+        seeded = true;
+    }
+
+    @Test
+    void tripQueries() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        assertIndexed("TripRepository.findById", () -> tripRepository.findById(4242L));
+        assertIndexed("TripRepository.findByUserIdAndDeletedAtIsNullOrderByCreatedAtDesc",
+                () -> tripRepository.findByUserIdAndDeletedAtIsNullOrderByCreatedAtDesc(777L));
+        assertIndexed("TripRepository.findOwnedTrips",
+                () -> tripRepository.findOwnedTrips(List.of(4242L, 4243L, 4244L), 777L));
+        assertIndexed("TripRepository.findSoftDeletedIds",
+                () -> tripRepository.findSoftDeletedIds(PageRequest.of(0, 100)));
+        assertIndexed("TripRepository.findTemplateCandidates",
+                () -> tripRepository.findTemplateCandidates(now.minusDays(7)));
+    }
+
+    @Test
+    void itineraryItemQueries() throws Exception {
+        List<Long> tripIds = LongStream.rangeClosed(11, 30).boxed().toList();
+        assertIndexed("ItineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc",
+                () -> itineraryItemRepository.findByTripIdOrderByDayIndexAscStartTimeAsc(4242L));
+        assertIndexed("ItineraryItemRepository.sumEstimatedCostByTripIds",
+                () -> itineraryItemRepository.sumEstimatedCostByTripIds(tripIds));
+        assertIndexed("ItineraryItemRepository.deleteByTripId",
+                () -> itineraryItemRepository.deleteByTripId(4242L));
+        assertIndexed("ItineraryItemRepository.deleteByTripIdAndDayIndex",
+                () -> itineraryItemRepository.deleteByTripIdAndDayIndex(4243L, 2));
+        assertIndexed("ItineraryItemRepository.deleteByTripIdIn",
+                () -> itineraryItemRepository.deleteByTripIdIn(tripIds));
+    }
+
+    @Test
+    void userQueries() throws Exception {
+        assertIndexed("UserRepository.findByEmail", () -> userRepository.findByEmail("user777@example.com"));
+        assertIndexed("UserRepository.existsByEmail", () -> userRepository.existsByEmail("user777@example.com"));
+        assertIndexed("UserRepository.updatePasswordHash", () -> userRepository.updatePasswordHash(777L, "y"));
+    }
+
+    @Test
+    void revokedTokenQueries() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        assertIndexed("RevokedTokenRepository.findJtisRevokedSince",
+                () -> revokedTokenRepository.findJtisRevokedSince(now.minusSeconds(35)));
+        assertIndexed("RevokedTokenRepository.deleteExpired", () -> revokedTokenRepository.deleteExpired(now));
+    }
+
+    @Test
+    void llmResponseCacheQueries() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        assertIndexed("LlmResponseCacheRepository.findResponse",
+                () -> llmResponseCacheRepository.findResponse("c4ca4238a0b923820dcc509a6f75849b", now));
+        assertIndexed("LlmResponseCacheRepository.replaceExpired",
+                () -> llmResponseCacheRepository.replaceExpired("c4ca4238a0b923820dcc509a6f75849b", "qwen-plus",
+                        "{}", now, now.plusDays(7)));
+        assertIndexed("LlmResponseCacheRepository.deleteExpired",
+                () -> llmResponseCacheRepository.deleteExpired(now));
+        assertIndexed("LlmResponseCacheRepository.findCreatedAtNewestFirst",
+                () -> llmResponseCacheRepository.findCreatedAtNewestFirst(PageRequest.of(CACHE_MAX_ENTRIES, 1)));
+        assertIndexed("LlmResponseCacheRepository.deleteCreatedUpTo",
+                () -> llmResponseCacheRepository.deleteCreatedUpTo(now.minusSeconds(CACHE_MAX_ENTRIES)));
+    }
+
+    @Test
+    void tripTemplateQueries() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        assertIndexed("TripTemplateRepository.findPlan",
+                () -> tripTemplateRepository.findPlan("c4ca4238a0b923820dcc509a6f75849b", now));
+        assertIndexed("TripTemplateRepository.existsByTemplateKeyAndExpiresAtAfter",
+                () -> tripTemplateRepository.existsByTemplateKeyAndExpiresAtAfter(
+                        "c4ca4238a0b923820dcc509a6f75849b", now));
+        assertIndexed("TripTemplateRepository.deleteExpired", () -> tripTemplateRepository.deleteExpired(now));
+    }
+
+    /**
+     * 调用 repository 方法，对它执行的每条语句检查执行计划
+     */
+    private void assertIndexed(String name, Runnable call) throws Exception {
+        List<RecordedStatement> statements = RECORDER.record(call);
+        assertThat(statements).as("%s 没有执行 SQL", name).isNotEmpty();
+        for (RecordedStatement statement : statements) {
+            JsonNode plan = explain(statement);
+            List<String> seqScans = new ArrayList<>();
+            collectSeqScans(plan, seqScans);
+            assertThat(seqScans)
+                    .as("%s 出现全表扫描%nSQL: %s%n执行计划: %s", name, statement.sql(), plan.toPrettyString())
+                    .isEmpty();
+        }
+    }
+
+    private JsonNode explain(RecordedStatement statement) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + statement.sql())) {
+            for (ParameterSetOperation parameter : statement.parameters()) {
+                parameter.getMethod().invoke(explain, parameter.getArgs());
+            }
+            try (ResultSet resultSet = explain.executeQuery()) {
+                resultSet.next();
+                return objectMapper.readTree(resultSet.getString(1)).path(0).path("Plan");
+            }
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> out) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())
+                && CHECKED_TABLES.contains(node.path("Relation Name").asText())) {
+            out.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, out);
+        }
+    }
+
+    record RecordedStatement(String sql, List<ParameterSetOperation> parameters) {
+    }
+
+    /**
+     * 记录调用期间经过数据源的语句与绑定参数
+     */
+    static final class StatementRecorder implements QueryExecutionListener {
+
+        private final List<RecordedStatement> statements = new ArrayList<>();
+        private boolean recording;
+
+        synchronized List<RecordedStatement> record(Runnable call) {
+            statements.clear();
+            recording = true;
+            try {
+                call.run();
+            } finally {
+                recording = false;
+            }
+            return List.copyOf(statements);
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            if (!recording) {
+                return;
+            }
+            for (QueryInfo query : queryInfoList) {
+                List<List<ParameterSetOperation>> parameters = query.getParametersList();
+                statements.add(new RecordedStatement(query.getQuery(),
+                        parameters.isEmpty() ? List.of() : parameters.get(0)));
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingDataSourceConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                        return ProxyDataSourceBuilder.create(dataSource).listener(RECORDER).build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -2,6 +2,28 @@ import axios from 'axios';
 
 const API_URL = 'http://localhost:8081/api/v1';
 
+/**
+ * 读己之写：写请求响应中的 X-Write-LSN 在之后的请求中原样带回，
+ * 后端据此避开还没有同步到该写入的只读副本
+ */
+const WRITE_LSN_HEADER = 'X-Write-LSN';
+
+axios.interceptors.request.use((config) => {
+  const lsn = sessionStorage.getItem(WRITE_LSN_HEADER);
+  if (lsn && config.url?.startsWith(API_URL)) {
+    config.headers.set(WRITE_LSN_HEADER, lsn);
+  }
+  return config;
+});
+
+axios.interceptors.response.use((response) => {
+  const lsn = response.headers[WRITE_LSN_HEADER.toLowerCase()];
+  if (lsn) {
+    sessionStorage.setItem(WRITE_LSN_HEADER, String(lsn));
+  }
+  return response;
+});
+
 export interface CreateTripRequest {
   destination: string;
   startDate: string;
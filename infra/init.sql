@@ -1,5 +1,7 @@
 -- AI Travel Planner Database Schema
--- This script can be run manually if needed, but JPA will auto-create tables
+-- 完整的表结构、序列与索引由 trip-service 的 Flyway 迁移脚本管理：
+-- backend/services/trip-service/src/main/resources/db/migration
+-- 此脚本仅用于本地开发库的初始化
 
 -- Create users table
 CREATE TABLE IF NOT EXISTS users (
@@ -13,8 +15,5 @@ CREATE TABLE IF NOT EXISTS users (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
--- Create index on email for faster lookups
-CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
-
 -- Check if there are any existing users
 SELECT COUNT(*) as user_count FROM users;